@@ -0,0 +1,31 @@
+package com.gpstracking.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+// Les services sont construits sans contexte Spring : les valeurs @Value et @PostConstruct sont appliquées à la main
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void invoke(Object target, String name) {
+        try {
+            Method method = target.getClass().getDeclaredMethod(name);
+            method.setAccessible(true);
+            method.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.gpstracking.benchmark;
+
+import com.gpstracking.security.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Génération et validation des jetons ; "cold" désactive le cache des jetons déjà vérifiés
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtServiceBenchmark {
+    private static final String SECRET = "votreCleSecreteTresLongueEtSecuriseeQuiDoitEtreChangeeEnProduction";
+
+    private JwtService cachedService;
+    private JwtService uncachedService;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cachedService = createService(300_000);
+        uncachedService = createService(0);
+        user = new User("driver@example.com", "unused", List.of());
+        token = cachedService.generateToken(user);
+    }
+
+    private static JwtService createService(long cacheTtlMs) {
+        JwtService service = new JwtService(new SimpleMeterRegistry());
+        BenchmarkSupport.setField(service, "secretKey", SECRET);
+        BenchmarkSupport.setField(service, "jwtExpiration", 86_400_000L);
+        BenchmarkSupport.setField(service, "cacheTtlMs", cacheTtlMs);
+        BenchmarkSupport.setField(service, "cacheMaxEntries", 10_000);
+        BenchmarkSupport.invoke(service, "init");
+        return service;
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachedService.generateToken(user);
+    }
+
+    @Benchmark
+    public String validateTokenCached() {
+        return cachedService.validateToken(token);
+    }
+
+    @Benchmark
+    public String validateTokenCold() {
+        return uncachedService.validateToken(token);
+    }
+}
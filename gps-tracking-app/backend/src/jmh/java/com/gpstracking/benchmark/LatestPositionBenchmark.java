@@ -0,0 +1,53 @@
+package com.gpstracking.benchmark;
+
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.service.LatestPositionStore;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Lecture des dernières positions : un véhicule, puis une flotte de 500 véhicules
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatestPositionBenchmark {
+
+    @Param({"10000", "100000"})
+    private int vehicleCount;
+
+    private LatestPositionStore store;
+    private List<Long> fleet;
+
+    @Setup
+    public void setup() {
+        store = new LatestPositionStore(null);
+        LocalDateTime now = LocalDateTime.now();
+        for (long vehicleId = 1; vehicleId <= vehicleCount; vehicleId++) {
+            TrackingData data = new TrackingData();
+            data.setLatitude(48.0 + vehicleId * 1e-5);
+            data.setLongitude(2.0 + vehicleId * 1e-5);
+            data.setSpeed(30.0);
+            data.setTimestamp(now);
+            store.onTrackingData(vehicleId, data);
+        }
+        fleet = new ArrayList<>(500);
+        for (int i = 0; i < 500; i++) {
+            fleet.add(ThreadLocalRandom.current().nextLong(1, vehicleCount + 1));
+        }
+    }
+
+    @Benchmark
+    public LatestPosition getOne() {
+        return store.get(ThreadLocalRandom.current().nextLong(1, vehicleCount + 1));
+    }
+
+    @Benchmark
+    public List<LatestPosition> getFleet() {
+        return store.getAll(fleet);
+    }
+}
@@ -0,0 +1,114 @@
+package com.gpstracking.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.service.DeviceIngestCounters;
+import com.gpstracking.service.DeviceRegistryService;
+import com.gpstracking.service.LatestPositionStore;
+import com.gpstracking.service.NotecardEventDecoder;
+import com.gpstracking.service.NotecardEventDecoder.DecodedBatch;
+import com.gpstracking.service.NotecardEventDecoder.NotecardEvent;
+import com.gpstracking.service.NotecardService;
+import com.gpstracking.service.NotecardService.WebhookResult;
+import com.gpstracking.service.RecentEventWindow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Analyse d'un webhook Notecard : décodeur typé en flux comparé à l'ancien chemin JSON -> Map -> TrackingData.
+// Le dispositif n'est pas enregistré, le point n'est donc pas transmis à l'ingestion.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotecardWebhookBenchmark {
+    private static final TypeReference<Map<String, Object>> PAYLOAD = new TypeReference<>() {};
+    private static final TypeReference<List<Map<String, Object>>> BATCH = new TypeReference<>() {};
+    private static final int BATCH_SIZE = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private NotecardEventDecoder decoder;
+    private NotecardService notecardService;
+    private byte[] rawPayload;
+    private byte[] rawBatch;
+
+    @Setup
+    public void setup() {
+        decoder = new NotecardEventDecoder(objectMapper);
+        notecardService = new NotecardService(null, new DeviceRegistryService(null, null),
+            new LatestPositionStore(null), null, new DeviceIngestCounters(), new RecentEventWindow(64),
+            decoder, new SimpleMeterRegistry());
+        rawPayload = event(0).getBytes(StandardCharsets.UTF_8);
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.append(i == 0 ? "" : ",").append(event(i));
+        }
+        rawBatch = batch.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String event(int i) {
+        return "{\"event\":\"a1b2c3d4-0000-0000-0000-0000000000" + (10 + i) + "\",\"device\":\"dev:864475040000000\"," +
+            "\"file\":\"track.qo\",\"when\":" + (1729240000 + i) + ",\"received\":" + (1729240003.25 + i) + "," +
+            "\"where_lat\":48.8566,\"where_lon\":2.3522,\"where_when\":" + (1729239990 + i) + "," +
+            "\"body\":{\"lat\":48.856613,\"lon\":2.352222,\"speed\":42.5,\"alt\":35.2,\"bat\":87.5," +
+            "\"sig\":\"-71\",\"temp\":21.5}}";
+    }
+
+    // Référence : chemin d'avant le décodeur (arbre Map puis conversions par cast)
+    @Benchmark
+    public TrackingData mapPath() throws Exception {
+        return fromMap(objectMapper.readValue(rawPayload, PAYLOAD));
+    }
+
+    @Benchmark
+    public TrackingData typedPath() throws Exception {
+        return decoder.decode(rawPayload).events().get(0).toTrackingData();
+    }
+
+    @Benchmark
+    public void mapPathBatch(Blackhole blackhole) throws Exception {
+        for (Map<String, Object> payload : objectMapper.readValue(rawBatch, BATCH)) {
+            blackhole.consume(fromMap(payload));
+        }
+    }
+
+    @Benchmark
+    public void typedPathBatch(Blackhole blackhole) throws Exception {
+        DecodedBatch batch = decoder.decode(rawBatch);
+        for (NotecardEvent event : batch.events()) {
+            blackhole.consume(event.toTrackingData());
+        }
+    }
+
+    // Chemin complet du service : décodage, résolution du dispositif, métriques
+    @Benchmark
+    public WebhookResult handleWebhook() throws Exception {
+        return notecardService.handleWebhook(new ByteArrayInputStream(rawPayload));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TrackingData fromMap(Map<String, Object> payload) {
+        Map<String, Object> body = (Map<String, Object>) payload.get("body");
+        TrackingData trackingData = new TrackingData();
+        trackingData.setLatitude((Double) body.get("lat"));
+        trackingData.setLongitude((Double) body.get("lon"));
+        trackingData.setSpeed((Double) body.get("speed"));
+        trackingData.setAltitude((Double) body.get("alt"));
+        trackingData.setBatteryLevel((Double) body.get("bat"));
+        trackingData.setSignalStrength((String) body.get("sig"));
+        trackingData.setTemperature((Double) body.get("temp"));
+        trackingData.setTimestamp(LocalDateTime.ofInstant(
+            Instant.ofEpochSecond(((Number) payload.get("when")).longValue()), ZoneId.systemDefault()));
+        trackingData.setEventId((String) payload.get("event"));
+        return trackingData;
+    }
+}
@@ -0,0 +1,47 @@
+package com.gpstracking.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.service.VehicleService.TrackingDataRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Corps de POST /api/vehicles/{id}/tracking : désérialisation de TrackingDataRequest puis conversion en entité
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrackingDataMappingBenchmark {
+    private ObjectReader requestReader;
+    private byte[] rawRequest;
+    private TrackingDataRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        requestReader = objectMapper.readerFor(TrackingDataRequest.class);
+        rawRequest = ("{\"latitude\":48.856613,\"longitude\":2.352222,\"speed\":42.5,\"altitude\":35.2," +
+            "\"batteryLevel\":87.5,\"signalStrength\":\"-71\",\"temperature\":21.5," +
+            "\"timestamp\":\"2024-10-18T09:30:00\"}").getBytes(StandardCharsets.UTF_8);
+        request = new TrackingDataRequest(48.856613, 2.352222, 42.5, 35.2, 87.5, "-71", 21.5,
+            LocalDateTime.of(2024, 10, 18, 9, 30));
+    }
+
+    @Benchmark
+    public TrackingData mapRequest() {
+        return request.toTrackingData();
+    }
+
+    @Benchmark
+    public TrackingData readAndMapRequest() throws Exception {
+        TrackingDataRequest parsed = requestReader.readValue(rawRequest);
+        return parsed.toTrackingData();
+    }
+}
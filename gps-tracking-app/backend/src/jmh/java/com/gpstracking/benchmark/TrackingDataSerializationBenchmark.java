@@ -0,0 +1,57 @@
+package com.gpstracking.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.gpstracking.model.TrackingData;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Sérialisation JSON d'une page d'historique telle que renvoyée par GET /api/vehicles/{id}/tracking/history.
+// Le véhicule n'est pas renseigné : seul le coût des points est mesuré.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrackingDataSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Page<TrackingData> page;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        List<TrackingData> content = new ArrayList<>(pageSize);
+        LocalDateTime timestamp = LocalDateTime.of(2024, 10, 18, 9, 30);
+        for (int i = 0; i < pageSize; i++) {
+            TrackingData data = new TrackingData();
+            data.setId((long) i);
+            data.setLatitude(48.856613 + i * 1e-4);
+            data.setLongitude(2.352222 + i * 1e-4);
+            data.setSpeed(40.0 + i % 20);
+            data.setAltitude(35.2);
+            data.setBatteryLevel(87.5);
+            data.setSignalStrength("-71");
+            data.setTemperature(21.5);
+            data.setTimestamp(timestamp.minusSeconds(i * 10L));
+            content.add(data);
+        }
+        page = new PageImpl<>(content, PageRequest.of(0, pageSize), pageSize * 50L);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
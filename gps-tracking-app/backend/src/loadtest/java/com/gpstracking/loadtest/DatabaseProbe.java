@@ -0,0 +1,52 @@
+package com.gpstracking.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Compteurs PostgreSQL relevés avant et après la mesure : volume de WAL et lignes écrites
+final class DatabaseProbe {
+    private final String url;
+    private final String user;
+    private final String password;
+
+    DatabaseProbe(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    Snapshot snapshot() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Statement statement = connection.createStatement()) {
+            // Les statistiques cumulées sont lues hors cache de transaction
+            statement.execute("SELECT pg_stat_clear_snapshot()");
+            long walBytes = queryLong(statement, "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint");
+            long trackingRows = queryLong(statement,
+                "SELECT COALESCE(SUM(n_tup_ins), 0) FROM pg_stat_user_tables WHERE relname LIKE 'tracking_data%'");
+            long rowWrites = queryLong(statement,
+                "SELECT COALESCE(SUM(n_tup_ins + n_tup_upd + n_tup_del), 0) FROM pg_stat_user_tables");
+            long relationBytes = queryLong(statement,
+                "SELECT COALESCE(SUM(pg_total_relation_size(c.oid)), 0) FROM pg_class c " +
+                "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                "WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p')");
+            return new Snapshot(walBytes, trackingRows, rowWrites, relationBytes);
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    record Snapshot(long walBytes, long trackingRows, long rowWrites, long relationBytes) {
+        Snapshot minus(Snapshot before) {
+            return new Snapshot(walBytes - before.walBytes, trackingRows - before.trackingRows,
+                rowWrites - before.rowWrites, relationBytes - before.relationBytes);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.gpstracking.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Statistiques d'un point d'accès : latences mesurées depuis l'instant d'envoi prévu,
+// pour que les retards du client ne masquent pas ceux du serveur
+final class EndpointStats {
+    private final String name;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void record(long intendedNanos, int status) {
+        latencies.record((System.nanoTime() - intendedNanos) / 1_000);
+        if (status == 503) {
+            rejected.incrementAndGet();
+        } else if (status < 200 || status >= 300) {
+            errors.incrementAndGet();
+        }
+    }
+
+    void recordFailure(long intendedNanos) {
+        latencies.record((System.nanoTime() - intendedNanos) / 1_000);
+        errors.incrementAndGet();
+    }
+
+    long successes() {
+        return latencies.count() - rejected.get() - errors.get();
+    }
+
+    Map<String, Object> toMap(double seconds) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("requests", latencies.count());
+        map.put("requestsPerSecond", latencies.count() / seconds);
+        map.put("rejected503", rejected.get());
+        map.put("errors", errors.get());
+        map.put("meanMs", latencies.mean() / 1_000);
+        map.put("p50Ms", latencies.percentile(50) / 1_000.0);
+        map.put("p99Ms", latencies.percentile(99) / 1_000.0);
+        map.put("p999Ms", latencies.percentile(99.9) / 1_000.0);
+        map.put("maxMs", latencies.max() / 1_000.0);
+        return map;
+    }
+}
@@ -0,0 +1,423 @@
+package com.gpstracking.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Rejoue une flotte simulée contre un backend local : chaque dispositif émet une position par seconde
+// (webhook Notecard ou API REST) pendant que des tableaux de bord interrogent /tracking/latest et l'historique.
+// Paramètres : propriétés système loadtest.* (voir la tâche Gradle loadTest).
+public final class FleetSimulator {
+    private static final int TICKS_PER_SECOND = 10;
+    private static final DateTimeFormatter FILE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    // Inclut le context-path du backend (server.servlet.context-path=/api)
+    private final String baseUrl = System.getProperty("loadtest.base-url", "http://localhost:8080/api");
+    private final int deviceCount = Integer.getInteger("loadtest.devices", 2000);
+    private final double webhookShare = Double.parseDouble(System.getProperty("loadtest.webhook-share", "0.5"));
+    private final int dashboardCount = Integer.getInteger("loadtest.dashboards", 50);
+    private final int vehiclesPerDashboard = Integer.getInteger("loadtest.vehicles-per-dashboard", 50);
+    private final long dashboardIntervalMs = Long.getLong("loadtest.dashboard-interval-ms", 2000);
+    private final int historyEvery = Integer.getInteger("loadtest.history-every", 5);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 30);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 300);
+    private final int drainSeconds = Integer.getInteger("loadtest.drain-seconds", 5);
+    private final int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 1024);
+    private final String outputDir = System.getProperty("loadtest.output-dir", "build/results/loadtest");
+    // Sans URL JDBC (-Ploadtest.jdbc-url=), les mesures côté base sont omises
+    private final String jdbcUrl = System.getProperty("loadtest.jdbc-url", "jdbc:postgresql://localhost:5432/gps_tracking");
+    private final DatabaseProbe databaseProbe = jdbcUrl.isBlank() ? null : new DatabaseProbe(jdbcUrl,
+        System.getProperty("loadtest.jdbc-user", "postgres"),
+        System.getProperty("loadtest.jdbc-password", "postgres"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final Semaphore inFlight = new Semaphore(maxInFlight);
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private String token;
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+
+    // Les statistiques de la période de chauffe sont écartées
+    private volatile Stats stats = new Stats();
+
+    public static void main(String[] args) throws Exception {
+        new FleetSimulator().run();
+    }
+
+    private void run() throws Exception {
+        log("Préparation : %d dispositifs (%.0f %% webhook), %d tableaux de bord contre %s",
+            deviceCount, webhookShare * 100, dashboardCount, baseUrl);
+        authenticate();
+        provision();
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, r -> {
+            Thread thread = new Thread(r, "fleet-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicLong tick = new AtomicLong();
+        scheduler.scheduleAtFixedRate(() -> emitTick(tick.getAndIncrement()),
+            0, 1000 / TICKS_PER_SECOND, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < dashboardCount; i++) {
+            Dashboard dashboard = new Dashboard(i);
+            scheduler.scheduleAtFixedRate(dashboard::poll,
+                i * dashboardIntervalMs / Math.max(1, dashboardCount), dashboardIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        log("Chauffe pendant %d s", warmupSeconds);
+        Thread.sleep(warmupSeconds * 1000L);
+        DatabaseProbe.Snapshot before = databaseProbe == null ? null : databaseProbe.snapshot();
+        Stats measured = new Stats();
+        stats = measured;
+        scheduler.scheduleAtFixedRate(measured::sampleSecond, 1, 1, TimeUnit.SECONDS);
+
+        log("Mesure pendant %d s", durationSeconds);
+        long start = System.nanoTime();
+        Thread.sleep(durationSeconds * 1000L);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        scheduler.shutdownNow();
+
+        // Attente des réponses en cours puis de l'écriture asynchrone des files d'ingestion
+        inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS);
+        Thread.sleep(drainSeconds * 1000L);
+        DatabaseProbe.Snapshot delta = databaseProbe == null ? null : databaseProbe.snapshot().minus(before);
+
+        writeReport(measured, seconds, delta);
+    }
+
+    private void authenticate() throws Exception {
+        String email = "loadtest-" + runId + "@example.com";
+        Map<String, Object> request = Map.of(
+            "email", email,
+            "password", "loadtest-" + runId,
+            "phoneNumber", "0600000000",
+            "idCardNumber", "LT" + runId,
+            "fullName", "Load Test " + runId);
+        JsonNode response = postJson("/api/auth/register/simple", request);
+        token = response.get("token").asText();
+    }
+
+    private void provision() throws Exception {
+        Random random = new Random(42);
+        Semaphore permits = new Semaphore(32);
+        List<CompletableFuture<SimulatedDevice>> pending = new ArrayList<>(deviceCount);
+        for (int i = 0; i < deviceCount; i++) {
+            boolean viaWebhook = i < deviceCount * webhookShare;
+            String deviceUid = "dev:sim-" + runId + "-" + i;
+            double latitude = 48.70 + random.nextDouble() * 0.35;
+            double longitude = 2.15 + random.nextDouble() * 0.45;
+            long seed = random.nextLong();
+            permits.acquire();
+            pending.add(sendJson("POST", "/api/vehicles", Map.of("name", "Simulé " + i))
+                .thenCompose(vehicle -> {
+                    long vehicleId = vehicle.get("id").asLong();
+                    CompletableFuture<JsonNode> registration = viaWebhook
+                        ? sendJson("POST", "/api/vehicles/" + vehicleId + "/devices", Map.of("deviceUid", deviceUid))
+                        : CompletableFuture.completedFuture(null);
+                    return registration.thenApply(ignored ->
+                        new SimulatedDevice(vehicleId, deviceUid, viaWebhook, latitude, longitude, seed));
+                })
+                .whenComplete((device, error) -> permits.release()));
+        }
+        for (CompletableFuture<SimulatedDevice> future : pending) {
+            devices.add(future.join());
+        }
+        log("%d véhicules créés", devices.size());
+    }
+
+    // Chaque dispositif émet une fois par seconde, les envois étant répartis sur les dixièmes de seconde
+    private void emitTick(long tick) {
+        long intended = System.nanoTime();
+        int slot = (int) (tick % TICKS_PER_SECOND);
+        for (int i = slot; i < devices.size(); i += TICKS_PER_SECOND) {
+            SimulatedDevice device = devices.get(i);
+            SimulatedDevice.Position position = device.step();
+            try {
+                if (device.viaWebhook) {
+                    sendPoint(stats.webhook, "/api/notecard/webhook", webhookPayload(device, position), intended);
+                } else {
+                    sendPoint(stats.rest, "/api/vehicles/" + device.vehicleId + "/tracking",
+                        restPayload(position), intended);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private Map<String, Object> webhookPayload(SimulatedDevice device, SimulatedDevice.Position position) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("lat", position.latitude());
+        body.put("lon", position.longitude());
+        body.put("speed", position.speed());
+        body.put("alt", position.altitude());
+        body.put("bat", position.battery());
+        body.put("sig", position.signal());
+        body.put("temp", position.temperature());
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("event", UUID.randomUUID().toString());
+        payload.put("device", device.deviceUid);
+        payload.put("file", "track.qo");
+        payload.put("when", System.currentTimeMillis() / 1000);
+        payload.put("body", body);
+        return payload;
+    }
+
+    private Map<String, Object> restPayload(SimulatedDevice.Position position) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("latitude", position.latitude());
+        payload.put("longitude", position.longitude());
+        payload.put("speed", position.speed());
+        payload.put("altitude", position.altitude());
+        payload.put("batteryLevel", position.battery());
+        payload.put("signalStrength", position.signal());
+        payload.put("temperature", position.temperature());
+        payload.put("timestamp", LocalDateTime.now().toString());
+        return payload;
+    }
+
+    private void sendPoint(EndpointStats endpoint, String path, Object payload, long intended) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(payload);
+        Stats current = stats;
+        if (!inFlight.tryAcquire()) {
+            // Le client est le goulot d'étranglement : la mesure n'est plus représentative
+            current.clientSaturated.incrementAndGet();
+            return;
+        }
+        current.payloadBytes.addAndGet(body.length);
+        HttpRequest request = authorized(path)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    endpoint.recordFailure(intended);
+                    return;
+                }
+                endpoint.record(intended, response.statusCode());
+                if (response.statusCode() / 100 == 2) {
+                    current.pointsAccepted.incrementAndGet();
+                }
+            });
+    }
+
+    private void get(EndpointStats endpoint, String path) {
+        long intended = System.nanoTime();
+        if (!inFlight.tryAcquire()) {
+            stats.clientSaturated.incrementAndGet();
+            return;
+        }
+        httpClient.sendAsync(authorized(path).GET().build(), HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    endpoint.recordFailure(intended);
+                } else {
+                    endpoint.record(intended, response.statusCode());
+                }
+            });
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(30));
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+
+    private JsonNode postJson(String path, Object payload) {
+        return sendJson("POST", path, payload).join();
+    }
+
+    private CompletableFuture<JsonNode> sendJson(String method, String path, Object payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = authorized(path)
+            .header("Content-Type", "application/json")
+            .method(method, HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() / 100 != 2) {
+                throw new IllegalStateException(method + " " + path + " : HTTP " + response.statusCode()
+                    + " " + response.body());
+            }
+            try {
+                return objectMapper.readTree(response.body());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private void writeReport(Stats measured, double seconds, DatabaseProbe.Snapshot delta) throws IOException {
+        long accepted = measured.pointsAccepted.get();
+        Map<String, Object> ingest = new LinkedHashMap<>();
+        ingest.put("pointsAccepted", accepted);
+        ingest.put("acceptedPerSecond", accepted / seconds);
+        ingest.put("lowest10sAcceptedPerSecond", measured.lowestWindowRate(10));
+        ingest.put("clientSaturated", measured.clientSaturated.get());
+
+        Map<String, Object> database = null;
+        if (delta != null) {
+            long persisted = Math.max(1, delta.trackingRows());
+            ingest.put("pointsPersisted", delta.trackingRows());
+            ingest.put("persistedPerSecond", delta.trackingRows() / seconds);
+            database = new LinkedHashMap<>();
+            database.put("walBytes", delta.walBytes());
+            database.put("walBytesPerPoint", (double) delta.walBytes() / persisted);
+            database.put("walBytesPerPayloadByte", (double) delta.walBytes() / Math.max(1, measured.payloadBytes.get()));
+            database.put("rowWrites", delta.rowWrites());
+            database.put("rowWritesPerPoint", (double) delta.rowWrites() / persisted);
+            database.put("relationGrowthBytes", delta.relationBytes());
+            database.put("relationGrowthBytesPerPoint", (double) delta.relationBytes() / persisted);
+        }
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (EndpointStats endpoint : measured.all()) {
+            endpoints.put(endpoint.name(), endpoint.toMap(seconds));
+        }
+
+        Map<String, Object> configuration = new LinkedHashMap<>();
+        configuration.put("baseUrl", baseUrl);
+        configuration.put("devices", deviceCount);
+        configuration.put("webhookShare", webhookShare);
+        configuration.put("dashboards", dashboardCount);
+        configuration.put("dashboardIntervalMs", dashboardIntervalMs);
+        configuration.put("durationSeconds", durationSeconds);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("runId", runId);
+        report.put("configuration", configuration);
+        report.put("ingest", ingest);
+        report.put("database", database);
+        report.put("endpoints", endpoints);
+
+        File directory = new File(outputDir);
+        directory.mkdirs();
+        File file = new File(directory, "loadtest-" + LocalDateTime.now().format(FILE_SUFFIX) + ".json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+
+        log("Ingestion : %.0f points/s acceptés (min. sur 10 s : %.0f)", accepted / seconds, measured.lowestWindowRate(10));
+        if (database != null) {
+            log("Base : %.0f points/s écrits, %.0f octets de WAL et %.2f lignes écrites par point",
+                ingest.get("persistedPerSecond"), database.get("walBytesPerPoint"), database.get("rowWritesPerPoint"));
+        }
+        log("%-12s %10s %8s %8s %10s %10s %10s", "endpoint", "requêtes", "503", "erreurs", "p50 ms", "p99 ms", "p99.9 ms");
+        for (EndpointStats endpoint : measured.all()) {
+            Map<String, Object> values = endpoint.toMap(seconds);
+            log("%-12s %10d %8d %8d %10.1f %10.1f %10.1f", endpoint.name(), values.get("requests"),
+                values.get("rejected503"), values.get("errors"), values.get("p50Ms"), values.get("p99Ms"),
+                values.get("p999Ms"));
+        }
+        if (measured.clientSaturated.get() > 0) {
+            log("Attention : %d envois abandonnés côté client (augmenter loadtest.max-in-flight)",
+                measured.clientSaturated.get());
+        }
+        log("Rapport écrit dans %s", file);
+    }
+
+    private static void log(String format, Object... args) {
+        System.out.println(String.format(format, args));
+    }
+
+    // Tableau de bord simulé : positions courantes de sa flotte, et de temps en temps l'historique d'un véhicule
+    private final class Dashboard {
+        private final Random random;
+        private final List<SimulatedDevice> fleet;
+        private final String latestPath;
+        private long polls;
+
+        Dashboard(int index) {
+            random = new Random(index);
+            fleet = new ArrayList<>(vehiclesPerDashboard);
+            for (int i = 0; i < vehiclesPerDashboard && !devices.isEmpty(); i++) {
+                fleet.add(devices.get(random.nextInt(devices.size())));
+            }
+            latestPath = "/api/vehicles/tracking/latest?vehicleIds=" + fleet.stream()
+                .map(device -> Long.toString(device.vehicleId))
+                .collect(Collectors.joining(","));
+        }
+
+        synchronized void poll() {
+            if (fleet.isEmpty()) {
+                return;
+            }
+            get(stats.latest, latestPath);
+            if (historyEvery > 0 && ++polls % historyEvery == 0) {
+                SimulatedDevice device = fleet.get(random.nextInt(fleet.size()));
+                LocalDateTime end = LocalDateTime.now();
+                get(stats.history, "/api/vehicles/" + device.vehicleId + "/tracking/history?startDate="
+                    + end.minusMinutes(15) + "&endDate=" + end + "&size=100");
+            }
+        }
+    }
+
+    private static final class Stats {
+        final EndpointStats webhook = new EndpointStats("webhook");
+        final EndpointStats rest = new EndpointStats("rest");
+        final EndpointStats latest = new EndpointStats("latest");
+        final EndpointStats history = new EndpointStats("history");
+        final AtomicLong pointsAccepted = new AtomicLong();
+        final AtomicLong payloadBytes = new AtomicLong();
+        final AtomicLong clientSaturated = new AtomicLong();
+        private final List<Long> acceptedPerSecond = new ArrayList<>();
+        private long lastAccepted;
+
+        List<EndpointStats> all() {
+            return List.of(webhook, rest, latest, history);
+        }
+
+        synchronized void sampleSecond() {
+            long accepted = pointsAccepted.get();
+            acceptedPerSecond.add(accepted - lastAccepted);
+            lastAccepted = accepted;
+        }
+
+        synchronized double lowestWindowRate(int windowSeconds) {
+            if (acceptedPerSecond.size() < windowSeconds) {
+                return acceptedPerSecond.stream().mapToLong(Long::longValue).average().orElse(0);
+            }
+            long window = 0;
+            for (int i = 0; i < windowSeconds; i++) {
+                window += acceptedPerSecond.get(i);
+            }
+            long lowest = window;
+            for (int i = windowSeconds; i < acceptedPerSecond.size(); i++) {
+                window += acceptedPerSecond.get(i) - acceptedPerSecond.get(i - windowSeconds);
+                lowest = Math.min(lowest, window);
+            }
+            return (double) lowest / windowSeconds;
+        }
+    }
+}
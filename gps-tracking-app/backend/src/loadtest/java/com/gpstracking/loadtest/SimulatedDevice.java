@@ -0,0 +1,56 @@
+package com.gpstracking.loadtest;
+
+import java.util.Random;
+
+// Véhicule simulé : alternance de trajets et d'arrêts, virages progressifs, un pas par seconde
+final class SimulatedDevice {
+    private static final double EARTH_RADIUS_M = 6_371_000;
+
+    final long vehicleId;
+    final String deviceUid;
+    final boolean viaWebhook;
+
+    private final Random random;
+    private double latitude;
+    private double longitude;
+    private double heading;
+    private double speedKmh;
+    private int stopSeconds;
+    private double battery = 100;
+
+    SimulatedDevice(long vehicleId, String deviceUid, boolean viaWebhook, double latitude, double longitude, long seed) {
+        this.vehicleId = vehicleId;
+        this.deviceUid = deviceUid;
+        this.viaWebhook = viaWebhook;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.random = new Random(seed);
+        this.heading = random.nextDouble() * 360;
+        this.speedKmh = 20 + random.nextDouble() * 50;
+    }
+
+    // Avance d'une seconde ; appelé par un seul thread à la fois pour un véhicule donné
+    synchronized Position step() {
+        if (stopSeconds > 0) {
+            stopSeconds--;
+            speedKmh = 0;
+        } else {
+            if (random.nextDouble() < 0.002) {
+                stopSeconds = 30 + random.nextInt(300);
+            }
+            double target = 15 + random.nextDouble() * 90;
+            speedKmh = Math.max(0, speedKmh + Math.signum(target - speedKmh) * random.nextDouble() * 3);
+            heading = (heading + random.nextGaussian() * 4 + 360) % 360;
+            double distance = speedKmh / 3.6;
+            double radians = Math.toRadians(heading);
+            latitude += Math.toDegrees(distance * Math.cos(radians) / EARTH_RADIUS_M);
+            longitude += Math.toDegrees(distance * Math.sin(radians) / (EARTH_RADIUS_M * Math.cos(Math.toRadians(latitude))));
+        }
+        battery = Math.max(5, battery - 0.0005);
+        return new Position(latitude, longitude, speedKmh, 35 + random.nextDouble() * 5, battery,
+            String.valueOf(-60 - random.nextInt(40)), 18 + random.nextDouble() * 6);
+    }
+
+    record Position(double latitude, double longitude, double speed, double altitude,
+                    double battery, String signal, double temperature) {}
+}
@@ -2,8 +2,10 @@ package com.gpstracking;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GpsTrackingApplication {
     public static void main(String[] args) {
         SpringApplication.run(GpsTrackingApplication.class, args);
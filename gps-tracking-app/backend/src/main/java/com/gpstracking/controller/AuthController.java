@@ -1,11 +1,16 @@
 package com.gpstracking.controller;
 
+import com.gpstracking.security.PasswordHashingService.HashingSaturatedException;
 import com.gpstracking.service.AuthenticationService;
 import com.gpstracking.service.AuthenticationService.*;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 @CrossOrigin(origins = "http://localhost:8000")
@@ -16,27 +21,36 @@ public class AuthController {
         this.authenticationService = authenticationService;
     }
 
+    // Réponses asynchrones : le thread de requête est libéré pendant le hachage
     @PostMapping("/register/business")
-    public ResponseEntity<AuthResponse> registerBusinessUser(
+    public CompletableFuture<ResponseEntity<AuthResponse>> registerBusinessUser(
             @Valid @RequestBody BusinessUserRequest request) {
-        return ResponseEntity.ok(authenticationService.registerBusinessUser(request));
+        return authenticationService.registerBusinessUser(request).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/register/simple")
-    public ResponseEntity<AuthResponse> registerSimpleUser(
+    public CompletableFuture<ResponseEntity<AuthResponse>> registerSimpleUser(
             @Valid @RequestBody SimpleUserRequest request) {
-        return ResponseEntity.ok(authenticationService.registerSimpleUser(request));
+        return authenticationService.registerSimpleUser(request).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(
             @Valid @RequestBody LoginRequest request) {
-        return ResponseEntity.ok(authenticationService.authenticate(request));
+        return authenticationService.authenticate(request).thenApply(ResponseEntity::ok);
     }
 
     // DTOs pour la validation des requêtes
     public record RegisterResponse(String message) {}
 
+    @ExceptionHandler(HashingSaturatedException.class)
+    public ResponseEntity<String> handleHashingSaturated(HashingSaturatedException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleException(Exception e) {
         return ResponseEntity
@@ -0,0 +1,66 @@
+package com.gpstracking.controller;
+
+import com.gpstracking.model.Device;
+import com.gpstracking.model.User;
+import com.gpstracking.service.DeviceRegistryService;
+import com.gpstracking.service.VehicleService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/vehicles/{vehicleId}/devices")
+@CrossOrigin(origins = "http://localhost:8000")
+public class DeviceController {
+    private final DeviceRegistryService deviceRegistryService;
+    private final VehicleService vehicleService;
+
+    public DeviceController(DeviceRegistryService deviceRegistryService, VehicleService vehicleService) {
+        this.deviceRegistryService = deviceRegistryService;
+        this.vehicleService = vehicleService;
+    }
+
+    @GetMapping
+    public ResponseEntity<Set<String>> getDevices(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId) {
+        vehicleService.getVehicle(vehicleId, user.getId());
+        return ResponseEntity.ok(deviceRegistryService.findDeviceUids(vehicleId));
+    }
+
+    @PostMapping
+    public ResponseEntity<DeviceResponse> registerDevice(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestBody DeviceRequest request) {
+        if (request.deviceUid() == null || request.deviceUid().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Device device = deviceRegistryService.registerDevice(vehicleId, user.getId(), request.deviceUid());
+        return ResponseEntity.ok(new DeviceResponse(device.getDeviceUid(), vehicleId, device.getRegisteredAt()));
+    }
+
+    @DeleteMapping("/{deviceUid}")
+    public ResponseEntity<Void> unregisterDevice(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @PathVariable String deviceUid) {
+        deviceRegistryService.unregisterDevice(vehicleId, user.getId(), deviceUid);
+        return ResponseEntity.ok().build();
+    }
+
+    // DTOs pour les dispositifs
+    public record DeviceRequest(String deviceUid) {}
+
+    public record DeviceResponse(String deviceUid, Long vehicleId, LocalDateTime registeredAt) {}
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<String> handleException(Exception e) {
+        return ResponseEntity
+                .badRequest()
+                .body(e.getMessage());
+    }
+}
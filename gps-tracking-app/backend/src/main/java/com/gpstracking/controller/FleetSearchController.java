@@ -0,0 +1,71 @@
+package com.gpstracking.controller;
+
+import com.gpstracking.model.User;
+import com.gpstracking.service.VehicleSpatialIndex;
+import com.gpstracking.service.VehicleSpatialIndex.NearbyVehicle;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Recherches spatiales sur les positions courantes de la flotte de l'utilisateur
+@RestController
+@RequestMapping("/api/vehicles/search")
+@CrossOrigin(origins = "http://localhost:8000")
+public class FleetSearchController {
+    private static final int MAX_NEAREST = 1000;
+
+    private final VehicleSpatialIndex vehicleSpatialIndex;
+
+    public FleetSearchController(VehicleSpatialIndex vehicleSpatialIndex) {
+        this.vehicleSpatialIndex = vehicleSpatialIndex;
+    }
+
+    @GetMapping("/bbox")
+    public ResponseEntity<List<NearbyVehicle>> findInBoundingBox(
+            @AuthenticationPrincipal User user,
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(required = false) Integer maxAgeMinutes) {
+        return ResponseEntity.ok(vehicleSpatialIndex.findInBoundingBox(
+            user.getId(), minLat, minLon, maxLat, maxLon, freshSince(maxAgeMinutes)));
+    }
+
+    @GetMapping("/radius")
+    public ResponseEntity<List<NearbyVehicle>> findWithinRadius(
+            @AuthenticationPrincipal User user,
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam double radiusKm,
+            @RequestParam(required = false) Integer maxAgeMinutes) {
+        return ResponseEntity.ok(vehicleSpatialIndex.findWithinRadius(
+            user.getId(), lat, lon, radiusKm, freshSince(maxAgeMinutes)));
+    }
+
+    // maxAgeMinutes écarte les véhicules sans position récente (hors service)
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearbyVehicle>> findNearest(
+            @AuthenticationPrincipal User user,
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(required = false) Integer maxAgeMinutes) {
+        return ResponseEntity.ok(vehicleSpatialIndex.findNearest(
+            user.getId(), lat, lon, Math.min(k, MAX_NEAREST), freshSince(maxAgeMinutes)));
+    }
+
+    private static LocalDateTime freshSince(Integer maxAgeMinutes) {
+        return maxAgeMinutes == null ? null : LocalDateTime.now().minusMinutes(maxAgeMinutes);
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<String> handleException(Exception e) {
+        return ResponseEntity
+                .badRequest()
+                .body(e.getMessage());
+    }
+}
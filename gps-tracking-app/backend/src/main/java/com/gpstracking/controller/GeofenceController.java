@@ -0,0 +1,69 @@
+package com.gpstracking.controller;
+
+import com.gpstracking.model.GeofenceEvent;
+import com.gpstracking.model.User;
+import com.gpstracking.service.GeofenceService;
+import com.gpstracking.service.GeofenceService.GeofenceRequest;
+import com.gpstracking.service.GeofenceService.GeofenceResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/geofences")
+@CrossOrigin(origins = "http://localhost:8000")
+public class GeofenceController {
+    private final GeofenceService geofenceService;
+
+    public GeofenceController(GeofenceService geofenceService) {
+        this.geofenceService = geofenceService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<GeofenceResponse>> getGeofences(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(geofenceService.getUserGeofences(user.getId()));
+    }
+
+    @PostMapping
+    public ResponseEntity<GeofenceResponse> createGeofence(
+            @AuthenticationPrincipal User user,
+            @RequestBody GeofenceRequest request) {
+        return ResponseEntity.ok(geofenceService.createGeofence(user, request));
+    }
+
+    @PutMapping("/{geofenceId}")
+    public ResponseEntity<GeofenceResponse> updateGeofence(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long geofenceId,
+            @RequestBody GeofenceRequest request) {
+        return ResponseEntity.ok(geofenceService.updateGeofence(geofenceId, user.getId(), request));
+    }
+
+    @DeleteMapping("/{geofenceId}")
+    public ResponseEntity<Void> deleteGeofence(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long geofenceId) {
+        geofenceService.deleteGeofence(geofenceId, user.getId());
+        return ResponseEntity.ok().build();
+    }
+
+    // Entrées et sorties de zone des véhicules de l'utilisateur, les plus récentes d'abord
+    @GetMapping("/events")
+    public ResponseEntity<List<GeofenceEvent>> getEvents(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) LocalDateTime since,
+            @RequestParam(defaultValue = "200") int limit) {
+        LocalDateTime from = since != null ? since : LocalDateTime.now().minusHours(24);
+        return ResponseEntity.ok(geofenceService.getRecentEvents(user.getId(), from, limit));
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<String> handleException(Exception e) {
+        return ResponseEntity
+                .badRequest()
+                .body(e.getMessage());
+    }
+}
@@ -0,0 +1,21 @@
+package com.gpstracking.controller;
+
+import com.gpstracking.service.TrackingIngestionService;
+import com.gpstracking.service.TrackingIngestionService.IngestionStats;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/ingestion")
+public class IngestionController {
+    private final TrackingIngestionService trackingIngestionService;
+
+    public IngestionController(TrackingIngestionService trackingIngestionService) {
+        this.trackingIngestionService = trackingIngestionService;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<IngestionStats> getStats() {
+        return ResponseEntity.ok(trackingIngestionService.getStats());
+    }
+}
@@ -1,9 +1,22 @@
 package com.gpstracking.controller;
 
+import com.gpstracking.model.DeviceCommand;
+import com.gpstracking.model.User;
+import com.gpstracking.service.NotecardCommandDispatcher;
+import com.gpstracking.service.NotecardCommandDispatcher.BatchStatus;
+import com.gpstracking.service.NotecardCommandDispatcher.FanOutResult;
 import com.gpstracking.service.NotecardService;
+import com.gpstracking.service.NotecardService.WebhookResult;
+import com.gpstracking.service.TrackingIngestionService.IngestionRejectedException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -11,33 +24,75 @@ import java.util.Map;
 public class NotecardWebhookController {
     
     private final NotecardService notecardService;
+    private final NotecardCommandDispatcher commandDispatcher;
 
-    public NotecardWebhookController(NotecardService notecardService) {
+    public NotecardWebhookController(NotecardService notecardService, NotecardCommandDispatcher commandDispatcher) {
         this.notecardService = notecardService;
+        this.commandDispatcher = commandDispatcher;
     }
 
+    // Corps lu en flux (événement seul ou lot) ; 200 même avec des refus, que Notehub ne doit pas renvoyer
     @PostMapping("/webhook")
-    public ResponseEntity<Void> handleWebhook(@RequestBody Map<String, Object> payload) {
-        notecardService.handleNotecardWebhook(payload);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<WebhookResult> handleWebhook(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(notecardService.handleWebhook(request.getInputStream()));
     }
 
     @PostMapping("/command/{deviceId}")
-    public ResponseEntity<Void> sendCommand(
+    public ResponseEntity<DeviceCommand> sendCommand(
+            @AuthenticationPrincipal User user,
             @PathVariable String deviceId,
             @RequestBody Map<String, String> commandRequest) {
         String command = commandRequest.get("command");
-        if (command == null || command.isEmpty()) {
+        if (command == null || command.isBlank()) {
             return ResponseEntity.badRequest().build();
         }
-        
-        notecardService.sendCommandToDevice(deviceId, command);
-        return ResponseEntity.ok().build();
+
+        // Accepté : l'envoi se fait en arrière-plan, l'état se suit via /commands/{id}
+        return ResponseEntity.accepted()
+                .body(notecardService.sendCommandToDevice(user.getId(), deviceId, command, commandRequest.get("key")));
+    }
+
+    @PostMapping("/commands/fleet")
+    public ResponseEntity<FanOutResult> sendFleetCommand(
+            @AuthenticationPrincipal User user,
+            @RequestBody FleetCommandRequest request) {
+        if (request.command() == null || request.command().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.accepted().body(
+            commandDispatcher.enqueueFleet(user.getId(), request.vehicleIds(), request.command(), request.key()));
+    }
+
+    @GetMapping("/commands/{commandId}")
+    public ResponseEntity<DeviceCommand> getCommand(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long commandId) {
+        return ResponseEntity.ok(commandDispatcher.getCommand(commandId, user.getId()));
+    }
+
+    @GetMapping("/commands/batches/{batchId}")
+    public ResponseEntity<BatchStatus> getBatchStatus(
+            @AuthenticationPrincipal User user,
+            @PathVariable String batchId) {
+        return ResponseEntity.ok(commandDispatcher.getBatchStatus(batchId, user.getId()));
     }
 
     @GetMapping("/data/{deviceId}")
-    public ResponseEntity<Object> getLastKnownData(@PathVariable String deviceId) {
-        return ResponseEntity.ok(notecardService.getLastKnownData(deviceId));
+    public ResponseEntity<Object> getLastKnownData(
+            @AuthenticationPrincipal User user,
+            @PathVariable String deviceId) {
+        return ResponseEntity.ok(notecardService.getLastKnownData(user.getId(), deviceId));
+    }
+
+    public record FleetCommandRequest(String command, String key, List<Long> vehicleIds) {}
+
+    // Notehub réessaie les webhooks en échec : on lui signale la saturation
+    @ExceptionHandler(IngestionRejectedException.class)
+    public ResponseEntity<String> handleIngestionRejected(IngestionRejectedException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
     }
 
     @ExceptionHandler(Exception.class)
@@ -1,28 +1,71 @@
 package com.gpstracking.controller;
 
+import com.gpstracking.model.TrackPoint;
 import com.gpstracking.model.TrackingData;
 import com.gpstracking.model.User;
 import com.gpstracking.model.Vehicle;
+import com.gpstracking.model.VehiclePurge;
+import com.gpstracking.model.VehicleRollup.Granularity;
+import com.gpstracking.service.BulkTrackingImportService;
+import com.gpstracking.service.BulkTrackingImportService.BulkImportResult;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import com.gpstracking.service.LivePositionService;
+import com.gpstracking.service.TrackPointCodec;
+import com.gpstracking.service.TrackingExportService;
+import com.gpstracking.service.TrackingExportService.ExportFormat;
+import com.gpstracking.service.TrackingIngestionService.IngestionRejectedException;
+import com.gpstracking.service.TripService;
+import com.gpstracking.service.TripService.TripDetail;
+import com.gpstracking.service.TripService.TripTimeline;
+import com.gpstracking.service.VehicleRollupService;
+import com.gpstracking.service.VehicleRollupService.VehicleMetrics;
 import com.gpstracking.service.VehicleService;
 import com.gpstracking.service.VehicleService.*;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/vehicles")
-@CrossOrigin(origins = "http://localhost:8000")
+@CrossOrigin(origins = "http://localhost:8000", exposedHeaders = {"X-Point-Count", "X-Source-Points", "X-Has-Next"})
 public class VehicleController {
     private final VehicleService vehicleService;
+    private final BulkTrackingImportService bulkTrackingImportService;
+    private final LivePositionService livePositionService;
+    private final TrackingExportService trackingExportService;
+    private final VehicleRollupService vehicleRollupService;
+    private final TripService tripService;
 
-    public VehicleController(VehicleService vehicleService) {
+    public VehicleController(
+            VehicleService vehicleService,
+            BulkTrackingImportService bulkTrackingImportService,
+            LivePositionService livePositionService,
+            TrackingExportService trackingExportService,
+            VehicleRollupService vehicleRollupService,
+            TripService tripService) {
         this.vehicleService = vehicleService;
+        this.bulkTrackingImportService = bulkTrackingImportService;
+        this.livePositionService = livePositionService;
+        this.trackingExportService = trackingExportService;
+        this.vehicleRollupService = vehicleRollupService;
+        this.tripService = tripService;
     }
 
     @PostMapping
@@ -34,11 +77,12 @@ public class VehicleController {
         return ResponseEntity.ok(vehicleService.addVehicle(vehicle, user));
     }
 
+    // Vue d'ensemble du tableau de bord : véhicules et dernière position, sans entités ni second appel
     @GetMapping
-    public ResponseEntity<Page<Vehicle>> getUserVehicles(
+    public ResponseEntity<Page<VehicleOverview>> getUserVehicles(
             @AuthenticationPrincipal User user,
             Pageable pageable) {
-        return ResponseEntity.ok(vehicleService.getUserVehicles(user.getId(), pageable));
+        return ResponseEntity.ok(vehicleService.getFleetOverview(user.getId(), pageable));
     }
 
     @GetMapping("/{vehicleId}")
@@ -48,54 +92,228 @@ public class VehicleController {
         return ResponseEntity.ok(vehicleService.getVehicle(vehicleId, user.getId()));
     }
 
+    // La suppression est immédiate pour le client ; l'historique est purgé en arrière-plan
     @DeleteMapping("/{vehicleId}")
     public ResponseEntity<Void> deleteVehicle(
             @AuthenticationPrincipal User user,
             @PathVariable Long vehicleId) {
         vehicleService.deleteVehicle(vehicleId, user.getId());
-        return ResponseEntity.ok().build();
+        return ResponseEntity.accepted().build();
+    }
+
+    // Avancement des purges d'historique des véhicules supprimés
+    @GetMapping("/purges")
+    public ResponseEntity<List<VehiclePurge>> getVehiclePurges(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(vehicleService.getVehiclePurges(user.getId()));
     }
 
     @PostMapping("/{vehicleId}/tracking")
     public ResponseEntity<TrackingData> addTrackingData(
             @PathVariable Long vehicleId,
             @Valid @RequestBody TrackingDataRequest request) {
-        TrackingData trackingData = new TrackingData();
-        trackingData.setLatitude(request.latitude());
-        trackingData.setLongitude(request.longitude());
-        trackingData.setSpeed(request.speed());
-        trackingData.setAltitude(request.altitude());
-        trackingData.setBatteryLevel(request.batteryLevel());
-        trackingData.setSignalStrength(request.signalStrength());
-        trackingData.setTemperature(request.temperature());
-        
-        return ResponseEntity.ok(vehicleService.addTrackingData(vehicleId, trackingData));
+        return ResponseEntity.accepted().body(vehicleService.addTrackingData(vehicleId, request.toTrackingData()));
     }
 
+    @PostMapping(
+        value = "/{vehicleId}/tracking/batch",
+        consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public ResponseEntity<BulkImportResult> addTrackingDataBatch(
+            @PathVariable Long vehicleId,
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(bulkTrackingImportService.importTrackingData(vehicleId, request.getInputStream()));
+    }
+
+    // Avec tolerance (mètres), maxPoints ou zoom, la trajectoire complète est renvoyée simplifiée au lieu d'être paginée,
+    // plafonnée même sans maxPoints (voir VehicleService.getSimplifiedTrackingHistory)
     @GetMapping("/{vehicleId}/tracking/history")
-    public ResponseEntity<Page<TrackingData>> getVehicleTrackingHistory(
+    public ResponseEntity<?> getVehicleTrackingHistory(
+            @AuthenticationPrincipal User user,
             @PathVariable Long vehicleId,
             @RequestParam LocalDateTime startDate,
             @RequestParam LocalDateTime endDate,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) Integer zoom,
             Pageable pageable) {
+        if (tolerance != null || maxPoints != null || zoom != null) {
+            return ResponseEntity.ok(vehicleService.getSimplifiedTrackingHistory(
+                vehicleId, user.getId(), startDate, endDate, tolerance, maxPoints, zoom));
+        }
         return ResponseEntity.ok(
-            vehicleService.getVehicleTrackingHistory(vehicleId, startDate, endDate, pageable)
+            vehicleService.getVehicleTrackingHistory(vehicleId, user.getId(), startDate, endDate, pageable)
         );
     }
 
+    // Même historique au format binaire compact (Accept: application/vnd.gpstracking.track)
+    @GetMapping(value = "/{vehicleId}/tracking/history", produces = TrackPointCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getVehicleTrackingHistoryCompact(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestParam LocalDateTime startDate,
+            @RequestParam LocalDateTime endDate,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) Integer zoom,
+            Pageable pageable) {
+        if (tolerance != null || maxPoints != null || zoom != null) {
+            SimplifiedHistory history = vehicleService.getSimplifiedTrackingHistory(
+                vehicleId, user.getId(), startDate, endDate, tolerance, maxPoints, zoom);
+            return compact(history.points())
+                    .header("X-Source-Points", String.valueOf(history.sourcePoints()))
+                    .body(TrackPointCodec.encode(history.points()));
+        }
+        Slice<TrackPoint> page = vehicleService.getVehicleTrackPoints(vehicleId, user.getId(), startDate, endDate, pageable);
+        return compact(page.getContent())
+                .header("X-Has-Next", String.valueOf(page.hasNext()))
+                .body(TrackPointCodec.encode(page.getContent()));
+    }
+
+    @GetMapping("/{vehicleId}/tracking/history/cursor")
+    public ResponseEntity<CursorPage> getVehicleTrackingHistoryPage(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestParam LocalDateTime startDate,
+            @RequestParam LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "500") int size) {
+        return ResponseEntity.ok(
+            vehicleService.getTrackingHistoryPage(vehicleId, user.getId(), startDate, endDate, cursor, size)
+        );
+    }
+
+    @GetMapping("/{vehicleId}/tracking/export")
+    public ResponseEntity<StreamingResponseBody> exportTrackingHistory(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestParam LocalDateTime startDate,
+            @RequestParam LocalDateTime endDate,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        // Vérifié avant l'envoi des en-têtes : le corps est écrit plus tard, hors de ce thread
+        vehicleService.getVehicle(vehicleId, user.getId());
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                trackingExportService.export(vehicleId, startDate, endDate, format, compressed);
+                compressed.finish();
+            } else {
+                trackingExportService.export(vehicleId, startDate, endDate, format, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"vehicle-" + vehicleId + "." + format.getExtension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/{vehicleId}/tracking/recent")
     public ResponseEntity<List<TrackingData>> getRecentTrackingData(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestParam LocalDateTime since) {
+        return ResponseEntity.ok(vehicleService.getRecentTrackingData(vehicleId, user.getId(), since));
+    }
+
+    @GetMapping(value = "/{vehicleId}/tracking/recent", produces = TrackPointCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getRecentTrackingDataCompact(
+            @AuthenticationPrincipal User user,
             @PathVariable Long vehicleId,
             @RequestParam LocalDateTime since) {
-        return ResponseEntity.ok(vehicleService.getRecentTrackingData(vehicleId, since));
+        List<TrackPoint> points = vehicleService.getRecentTrackPoints(vehicleId, user.getId(), since);
+        return compact(points).body(TrackPointCodec.encode(points));
+    }
+
+    // Métriques lues uniquement depuis les agrégats ; par défaut les dernières 24 heures par heure
+    @GetMapping("/{vehicleId}/metrics")
+    public ResponseEntity<VehicleMetrics> getVehicleMetrics(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestParam(required = false) LocalDateTime startDate,
+            @RequestParam(required = false) LocalDateTime endDate,
+            @RequestParam(required = false) Granularity granularity) {
+        LocalDateTime end = endDate != null ? endDate : LocalDateTime.now();
+        LocalDateTime start = startDate != null ? startDate : end.minusHours(24);
+        if (granularity == null) {
+            granularity = Duration.between(start, end).toDays() > 7 ? Granularity.DAY : Granularity.HOUR;
+        }
+        return ResponseEntity.ok(vehicleRollupService.getMetrics(vehicleId, user.getId(), start, end, granularity));
+    }
+
+    @PostMapping("/{vehicleId}/metrics/rebuild")
+    public ResponseEntity<Void> rebuildVehicleMetrics(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId) {
+        vehicleRollupService.rebuild(vehicleId, user.getId());
+        return ResponseEntity.ok().build();
+    }
+
+    // Trajets et arrêts lus depuis les résumés ; par défaut les 30 derniers jours
+    @GetMapping("/{vehicleId}/trips")
+    public ResponseEntity<TripTimeline> getVehicleTrips(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @RequestParam(required = false) LocalDateTime startDate,
+            @RequestParam(required = false) LocalDateTime endDate) {
+        LocalDateTime end = endDate != null ? endDate : LocalDateTime.now();
+        LocalDateTime start = startDate != null ? startDate : end.minusDays(30);
+        return ResponseEntity.ok(tripService.getTrips(vehicleId, user.getId(), start, end));
+    }
+
+    @GetMapping("/{vehicleId}/trips/{tripId}")
+    public ResponseEntity<TripDetail> getVehicleTrip(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId,
+            @PathVariable Long tripId,
+            @RequestParam(required = false) Integer maxPoints) {
+        return ResponseEntity.ok(tripService.getTrip(vehicleId, user.getId(), tripId, maxPoints));
+    }
+
+    @PostMapping("/{vehicleId}/trips/rebuild")
+    public ResponseEntity<Void> rebuildVehicleTrips(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long vehicleId) {
+        tripService.rebuild(vehicleId, user.getId());
+        return ResponseEntity.ok().build();
     }
 
     @GetMapping("/tracking/latest")
-    public ResponseEntity<List<TrackingData>> getLatestTrackingData(
+    public ResponseEntity<List<LatestPosition>> getLatestTrackingData(
             @RequestParam List<Long> vehicleIds) {
         return ResponseEntity.ok(vehicleService.getLatestTrackingData(vehicleIds));
     }
 
+    // Flux SSE des positions : remplace l'interrogation périodique de /tracking/latest
+    @GetMapping(value = "/tracking/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLatestPositions(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) List<Long> vehicleIds) {
+        List<Long> owned = new ArrayList<>(vehicleService.getUserVehicleIds(user.getId()));
+        if (vehicleIds != null) {
+            owned.retainAll(vehicleIds);
+        }
+        return livePositionService.subscribe(user.getId(), owned);
+    }
+
+    private static ResponseEntity.BodyBuilder compact(List<TrackPoint> points) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TrackPointCodec.MEDIA_TYPE))
+                .header("X-Point-Count", String.valueOf(points.size()));
+    }
+
+    @ExceptionHandler(IngestionRejectedException.class)
+    public ResponseEntity<String> handleIngestionRejected(IngestionRejectedException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleException(Exception e) {
         return ResponseEntity
@@ -7,6 +7,8 @@ import jakarta.validation.constraints.NotBlank;
 @Entity
 @Table(name = "business_users")
 public class BusinessUser extends User {
+    private static final long serialVersionUID = 1L;
+
     @NotBlank
     private String companyName;
 
@@ -0,0 +1,132 @@
+package com.gpstracking.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// File persistante des commandes sortantes vers les Notecards
+@Entity
+@Table(name = "device_commands", indexes = {
+    @Index(name = "idx_device_commands_dispatch", columnList = "status, hub, next_attempt_at"),
+    @Index(name = "idx_device_commands_device_key", columnList = "device_uid, coalesce_key"),
+    @Index(name = "idx_device_commands_batch", columnList = "batch_id")
+})
+public class DeviceCommand {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_uid", nullable = false)
+    private String deviceUid;
+
+    @Column(nullable = false)
+    private String hub;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String command;
+
+    // Une commande en attente est remplacée par une plus récente de même clé pour le même dispositif
+    @Column(name = "coalesce_key", nullable = false)
+    private String coalesceKey;
+
+    // Identifiant commun aux commandes d'un même envoi groupé
+    @Column(name = "batch_id", length = 36)
+    private String batchId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    // Bail de l'instance qui envoie la commande (statut SENDING) : une autre instance ne la reprend
+    // qu'une fois le bail expiré
+    @Column(name = "claimed_by", length = 36)
+    private String claimedBy;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    public enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED,
+        SUPERSEDED
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDeviceUid() {
+        return deviceUid;
+    }
+
+    public String getHub() {
+        return hub;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getCoalesceKey() {
+        return coalesceKey;
+    }
+
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public LocalDateTime getClaimedAt() {
+        return claimedAt;
+    }
+}
@@ -0,0 +1,137 @@
+package com.gpstracking.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+@Entity
+@Table(name = "geofences", indexes = @Index(name = "idx_geofences_user_id", columnList = "user_id"))
+public class Geofence {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @NotBlank
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Shape shape;
+
+    // Zone circulaire : centre et rayon en mètres
+    @Column(name = "center_latitude")
+    private Double centerLatitude;
+
+    @Column(name = "center_longitude")
+    private Double centerLongitude;
+
+    @Column(name = "radius_meters")
+    private Double radiusMeters;
+
+    // Polygone : sommets "lat,lon" séparés par des ";"
+    @Column(columnDefinition = "TEXT")
+    private String polygon;
+
+    @ElementCollection
+    @CollectionTable(
+        name = "geofence_vehicles",
+        joinColumns = @JoinColumn(name = "geofence_id"),
+        indexes = @Index(name = "idx_geofence_vehicles_vehicle_id", columnList = "vehicle_id")
+    )
+    @Column(name = "vehicle_id", nullable = false)
+    private Set<Long> vehicleIds = new HashSet<>();
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Shape {
+        CIRCLE,
+        POLYGON
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public void setShape(Shape shape) {
+        this.shape = shape;
+    }
+
+    public Double getCenterLatitude() {
+        return centerLatitude;
+    }
+
+    public void setCenterLatitude(Double centerLatitude) {
+        this.centerLatitude = centerLatitude;
+    }
+
+    public Double getCenterLongitude() {
+        return centerLongitude;
+    }
+
+    public void setCenterLongitude(Double centerLongitude) {
+        this.centerLongitude = centerLongitude;
+    }
+
+    public Double getRadiusMeters() {
+        return radiusMeters;
+    }
+
+    public void setRadiusMeters(Double radiusMeters) {
+        this.radiusMeters = radiusMeters;
+    }
+
+    public String getPolygon() {
+        return polygon;
+    }
+
+    public void setPolygon(String polygon) {
+        this.polygon = polygon;
+    }
+
+    public Set<Long> getVehicleIds() {
+        return vehicleIds;
+    }
+
+    public void setVehicleIds(Set<Long> vehicleIds) {
+        this.vehicleIds = vehicleIds;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
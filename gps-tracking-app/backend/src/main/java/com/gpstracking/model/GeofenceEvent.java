@@ -0,0 +1,65 @@
+package com.gpstracking.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Entrée ou sortie d'un véhicule dans une zone
+@Entity
+@Table(name = "geofence_events", indexes = {
+    @Index(name = "idx_geofence_events_vehicle_timestamp", columnList = "vehicle_id, timestamp"),
+    @Index(name = "idx_geofence_events_geofence_timestamp", columnList = "geofence_id, timestamp")
+})
+public class GeofenceEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "geofence_id", nullable = false)
+    private Long geofenceId;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Long vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Transition transition;
+
+    private Double latitude;
+    private Double longitude;
+
+    @Column(nullable = false)
+    private LocalDateTime timestamp;
+
+    public enum Transition {
+        ENTER,
+        EXIT
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getGeofenceId() {
+        return geofenceId;
+    }
+
+    public Long getVehicleId() {
+        return vehicleId;
+    }
+
+    public Transition getTransition() {
+        return transition;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+}
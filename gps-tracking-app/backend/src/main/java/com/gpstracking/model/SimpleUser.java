@@ -7,6 +7,8 @@ import jakarta.validation.constraints.NotBlank;
 @Entity
 @Table(name = "simple_users")
 public class SimpleUser extends User {
+    private static final long serialVersionUID = 1L;
+
     @NotBlank
     private String idCardNumber;
 
@@ -0,0 +1,16 @@
+package com.gpstracking.model;
+
+import java.time.LocalDateTime;
+
+// Vue légère et immuable d'un point de suivi, sans le graphe Vehicle/User de l'entité
+public record TrackPoint(
+    Long id,
+    Double latitude,
+    Double longitude,
+    Double speed,
+    Double altitude,
+    LocalDateTime timestamp,
+    Double batteryLevel,
+    String signalStrength,
+    Double temperature
+) {}
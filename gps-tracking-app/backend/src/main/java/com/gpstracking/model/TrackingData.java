@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tracking_data")
+@Table(name = "tracking_data", indexes = @Index(name = "idx_tracking_data_vehicle_timestamp_id", columnList = "vehicle_id, timestamp, id"))
 public class TrackingData {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,6 +27,10 @@ public class TrackingData {
     private String signalStrength; // force du signal cellulaire
     private Double temperature;    // température en Celsius
 
+    // Identifiant de l'événement Notehub ; unique par véhicule et horodatage (voir schema.sql)
+    @Column(name = "event_id", length = 64)
+    private String eventId;
+
     public Long getId() {
         return id;
     }
@@ -106,4 +110,12 @@ public class TrackingData {
     public void setTemperature(Double temperature) {
         this.temperature = temperature;
     }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
 }
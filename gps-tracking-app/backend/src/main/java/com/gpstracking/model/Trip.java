@@ -0,0 +1,99 @@
+package com.gpstracking.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Résumé d'un trajet, maintenu à l'ingestion ; le trajet en cours est enregistré avec in_progress = true
+@Entity
+@Table(
+    name = "trips",
+    uniqueConstraints = @UniqueConstraint(name = "uk_trips_vehicle_start", columnNames = {"vehicle_id", "start_time"})
+)
+public class Trip {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Long vehicleId;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(name = "start_latitude", nullable = false)
+    private double startLatitude;
+
+    @Column(name = "start_longitude", nullable = false)
+    private double startLongitude;
+
+    // Dernier point en mouvement : l'attente avant clôture n'en fait pas partie
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+
+    @Column(name = "end_latitude", nullable = false)
+    private double endLatitude;
+
+    @Column(name = "end_longitude", nullable = false)
+    private double endLongitude;
+
+    // Distance haversine cumulée entre points consécutifs, en km
+    @Column(name = "distance_km", nullable = false)
+    private double distanceKm;
+
+    @Column(name = "max_speed")
+    private Double maxSpeed;
+
+    @Column(name = "point_count", nullable = false)
+    private int pointCount;
+
+    @Column(name = "in_progress", nullable = false)
+    private boolean inProgress;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVehicleId() {
+        return vehicleId;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public double getStartLatitude() {
+        return startLatitude;
+    }
+
+    public double getStartLongitude() {
+        return startLongitude;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public double getEndLatitude() {
+        return endLatitude;
+    }
+
+    public double getEndLongitude() {
+        return endLongitude;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    public Double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public boolean isInProgress() {
+        return inProgress;
+    }
+}
@@ -1,15 +1,24 @@
 package com.gpstracking.model;
 
+import com.gpstracking.security.UserCacheEvictionListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Entity
 @Table(name = "users")
 @Inheritance(strategy = InheritanceType.JOINED)
-public abstract class User {
+@EntityListeners(UserCacheEvictionListener.class)
+public abstract class User implements UserDetails {
+    private static final long serialVersionUID = 1L;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,6 +35,10 @@ public abstract class User {
     @NotBlank
     private String password;
 
+    // Durée de conservation des données de suivi, en jours ; null = valeur par défaut
+    @Column(name = "retention_days")
+    private Integer retentionDays;
+
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private Set<Vehicle> vehicles = new HashSet<>();
 
@@ -53,6 +66,7 @@ public abstract class User {
         this.email = email;
     }
 
+    @Override
     public String getPassword() {
         return password;
     }
@@ -61,6 +75,14 @@ public abstract class User {
         this.password = password;
     }
 
+    public Integer getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(Integer retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+
     public Set<Vehicle> getVehicles() {
         return vehicles;
     }
@@ -68,4 +90,35 @@ public abstract class User {
     public void setVehicles(Set<Vehicle> vehicles) {
         this.vehicles = vehicles;
     }
+
+    // L'adresse e-mail sert d'identifiant de connexion (sujet du JWT)
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of();
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
 }
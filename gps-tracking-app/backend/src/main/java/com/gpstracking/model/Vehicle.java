@@ -1,12 +1,18 @@
 package com.gpstracking.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "vehicles")
+@Table(name = "vehicles", indexes = @Index(name = "idx_vehicles_user_name", columnList = "user_id, name, id"))
+// Un véhicule supprimé reste en base jusqu'à la fin de la purge de son historique, invisible des requêtes
+@SQLRestriction("deleted_at IS NULL")
 public class Vehicle {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -15,13 +21,21 @@ public class Vehicle {
     @NotBlank
     private String name;
 
+    // Jamais sérialisés : le propriétaire et l'historique ne font pas partie des réponses véhicule
+    @JsonIgnore
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @OneToMany(mappedBy = "vehicle", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Pas de cascade : l'historique est purgé par lots par VehiclePurgeService
+    @JsonIgnore
+    @OneToMany(mappedBy = "vehicle", fetch = FetchType.LAZY)
     private List<TrackingData> trackingHistory = new ArrayList<>();
 
+    @JsonIgnore
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     public Long getId() {
         return id;
     }
@@ -53,4 +67,12 @@ public class Vehicle {
     public void setTrackingHistory(List<TrackingData> trackingHistory) {
         this.trackingHistory = trackingHistory;
     }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
 }
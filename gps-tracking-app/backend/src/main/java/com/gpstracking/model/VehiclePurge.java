@@ -0,0 +1,62 @@
+package com.gpstracking.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Suivi de la purge de l'historique d'un véhicule supprimé ; reprise au redémarrage tant que completed_at est nul
+@Entity
+@Table(name = "vehicle_purges", indexes = @Index(name = "idx_vehicle_purges_user", columnList = "user_id, requested_at"))
+public class VehiclePurge {
+    @Id
+    @Column(name = "vehicle_id")
+    private Long vehicleId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "requested_at", nullable = false)
+    private LocalDateTime requestedAt;
+
+    // Compté au premier passage ; nul tant que la purge n'a pas démarré
+    @Column(name = "total_points")
+    private Long totalPoints;
+
+    @Column(name = "deleted_points", nullable = false)
+    private long deletedPoints;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    protected VehiclePurge() {
+    }
+
+    public VehiclePurge(Long vehicleId, Long userId, LocalDateTime requestedAt) {
+        this.vehicleId = vehicleId;
+        this.userId = userId;
+        this.requestedAt = requestedAt;
+    }
+
+    public Long getVehicleId() {
+        return vehicleId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getRequestedAt() {
+        return requestedAt;
+    }
+
+    public Long getTotalPoints() {
+        return totalPoints;
+    }
+
+    public long getDeletedPoints() {
+        return deletedPoints;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+}
@@ -0,0 +1,152 @@
+package com.gpstracking.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// Agrégats horaires et journaliers par véhicule, maintenus à l'ingestion
+@Entity
+@Table(
+    name = "vehicle_rollups",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_vehicle_rollups_bucket",
+        columnNames = {"vehicle_id", "granularity", "bucket_start"}
+    )
+)
+public class VehicleRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Long vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Granularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "point_count", nullable = false)
+    private long pointCount;
+
+    // Distance haversine cumulée entre points consécutifs, en km
+    @Column(name = "distance_km", nullable = false)
+    private double distanceKm;
+
+    @Column(name = "max_speed")
+    private Double maxSpeed;
+
+    @Column(name = "speed_sum", nullable = false)
+    private double speedSum;
+
+    @Column(name = "speed_count", nullable = false)
+    private long speedCount;
+
+    // Somme des baisses de niveau entre points consécutifs (les recharges ne compensent pas)
+    @Column(name = "battery_drain", nullable = false)
+    private double batteryDrain;
+
+    @Column(name = "min_battery")
+    private Double minBattery;
+
+    @Column(name = "max_battery")
+    private Double maxBattery;
+
+    @Column(name = "min_temperature")
+    private Double minTemperature;
+
+    @Column(name = "max_temperature")
+    private Double maxTemperature;
+
+    @Column(name = "first_timestamp")
+    private LocalDateTime firstTimestamp;
+
+    @Column(name = "last_timestamp")
+    private LocalDateTime lastTimestamp;
+
+    public enum Granularity {
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        public LocalDateTime truncate(LocalDateTime timestamp) {
+            return timestamp.truncatedTo(unit);
+        }
+
+        // Unité attendue par date_trunc
+        public String getSqlUnit() {
+            return this == HOUR ? "hour" : "day";
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVehicleId() {
+        return vehicleId;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public long getPointCount() {
+        return pointCount;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    public Double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public double getSpeedSum() {
+        return speedSum;
+    }
+
+    public long getSpeedCount() {
+        return speedCount;
+    }
+
+    public double getBatteryDrain() {
+        return batteryDrain;
+    }
+
+    public Double getMinBattery() {
+        return minBattery;
+    }
+
+    public Double getMaxBattery() {
+        return maxBattery;
+    }
+
+    public Double getMinTemperature() {
+        return minTemperature;
+    }
+
+    public Double getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    public LocalDateTime getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public LocalDateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+}
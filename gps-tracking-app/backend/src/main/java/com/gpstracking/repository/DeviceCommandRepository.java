@@ -0,0 +1,34 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.DeviceCommand;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeviceCommandRepository extends JpaRepository<DeviceCommand, Long> {
+
+    // Limitées aux dispositifs des véhicules de l'utilisateur : les identifiants sont séquentiels
+    @Query("SELECT c FROM DeviceCommand c WHERE c.id = :id AND c.deviceUid IN (" +
+           "SELECT d.deviceUid FROM Device d WHERE d.vehicle.user.id = :userId)")
+    Optional<DeviceCommand> findOwned(@Param("id") Long id, @Param("userId") Long userId);
+
+    @Query("SELECT c.status AS status, COUNT(c) AS count FROM DeviceCommand c " +
+           "WHERE c.batchId = :batchId AND c.deviceUid IN (" +
+           "SELECT d.deviceUid FROM Device d WHERE d.vehicle.user.id = :userId) GROUP BY c.status")
+    List<StatusCount> countOwnedByBatchId(@Param("batchId") String batchId, @Param("userId") Long userId);
+
+    // Hubs ayant des commandes à envoyer ou en cours d'envoi (bail éventuellement expiré)
+    @Query("SELECT DISTINCT c.hub FROM DeviceCommand c WHERE c.status IN (" +
+           "com.gpstracking.model.DeviceCommand.Status.PENDING, com.gpstracking.model.DeviceCommand.Status.SENDING)")
+    List<String> findActiveHubs();
+
+    interface StatusCount {
+        DeviceCommand.Status getStatus();
+        long getCount();
+    }
+}
@@ -0,0 +1,29 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.Device;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeviceRepository extends JpaRepository<Device, Long> {
+    Optional<Device> findByDeviceUid(String deviceUid);
+
+    // Projection légère utilisée pour charger l'index en mémoire au démarrage
+    @Query("SELECT d.deviceUid AS deviceUid, d.vehicle.id AS vehicleId FROM Device d")
+    List<DeviceMapping> findAllMappings();
+
+    @Modifying
+    @Query("DELETE FROM Device d WHERE d.vehicle.id = :vehicleId")
+    int deleteByVehicleId(@Param("vehicleId") Long vehicleId);
+
+    interface DeviceMapping {
+        String getDeviceUid();
+        Long getVehicleId();
+    }
+}
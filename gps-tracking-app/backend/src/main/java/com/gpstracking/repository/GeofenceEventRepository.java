@@ -0,0 +1,33 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.GeofenceEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface GeofenceEventRepository extends JpaRepository<GeofenceEvent, Long> {
+
+    @Query("SELECT e FROM GeofenceEvent e WHERE e.vehicleId IN :vehicleIds " +
+           "AND e.timestamp >= :since " +
+           "ORDER BY e.timestamp DESC, e.id DESC")
+    List<GeofenceEvent> findRecentEvents(
+        @Param("vehicleIds") List<Long> vehicleIds,
+        @Param("since") LocalDateTime since,
+        Pageable pageable
+    );
+
+    @Modifying
+    @Query("DELETE FROM GeofenceEvent e WHERE e.geofenceId = :geofenceId")
+    int deleteByGeofenceId(@Param("geofenceId") Long geofenceId);
+
+    @Modifying
+    @Query("DELETE FROM GeofenceEvent e WHERE e.vehicleId = :vehicleId")
+    int deleteByVehicleId(@Param("vehicleId") Long vehicleId);
+}
@@ -0,0 +1,28 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.Geofence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GeofenceRepository extends JpaRepository<Geofence, Long> {
+
+    @Query("SELECT DISTINCT g FROM Geofence g LEFT JOIN FETCH g.vehicleIds WHERE g.user.id = :userId")
+    List<Geofence> findByUserIdWithVehicles(@Param("userId") Long userId);
+
+    Optional<Geofence> findByIdAndUserId(Long id, Long userId);
+
+    // Chargement complet pour l'index du moteur de géorepérage
+    @Query("SELECT DISTINCT g FROM Geofence g LEFT JOIN FETCH g.vehicleIds")
+    List<Geofence> findAllWithVehicles();
+
+    @Modifying
+    @Query(value = "DELETE FROM geofence_vehicles WHERE vehicle_id = :vehicleId", nativeQuery = true)
+    int unassignVehicle(@Param("vehicleId") Long vehicleId);
+}
@@ -1,15 +1,23 @@
 package com.gpstracking.repository;
 
+import com.gpstracking.model.TrackPoint;
 import com.gpstracking.model.TrackingData;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface TrackingDataRepository extends JpaRepository<TrackingData, Long> {
@@ -24,6 +32,64 @@ public interface TrackingDataRepository extends JpaRepository<TrackingData, Long
         Pageable pageable
     );
 
+    // Variante sans entités ni COUNT pour les réponses compactes
+    @Query("SELECT new com.gpstracking.model.TrackPoint(td.id, td.latitude, td.longitude, td.speed, td.altitude, " +
+           "td.timestamp, td.batteryLevel, td.signalStrength, td.temperature) " +
+           "FROM TrackingData td WHERE td.vehicle.id = :vehicleId " +
+           "AND td.timestamp BETWEEN :startDate AND :endDate " +
+           "ORDER BY td.timestamp DESC")
+    Slice<TrackPoint> findVehicleTrackPoints(
+        @Param("vehicleId") Long vehicleId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate,
+        Pageable pageable
+    );
+
+    // Parcours en avant par curseur serveur, sans entités gérées : mémoire constante quelle que soit la plage
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.gpstracking.model.TrackPoint(td.id, td.latitude, td.longitude, td.speed, td.altitude, " +
+           "td.timestamp, td.batteryLevel, td.signalStrength, td.temperature) " +
+           "FROM TrackingData td WHERE td.vehicle.id = :vehicleId " +
+           "AND td.timestamp BETWEEN :startDate AND :endDate " +
+           "ORDER BY td.timestamp ASC, td.id ASC")
+    Stream<TrackPoint> streamVehicleTrackPoints(
+        @Param("vehicleId") Long vehicleId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+
+    // Pagination par clé (timestamp, id) décroissante : ni COUNT ni OFFSET
+    @Query("SELECT new com.gpstracking.model.TrackPoint(td.id, td.latitude, td.longitude, td.speed, td.altitude, " +
+           "td.timestamp, td.batteryLevel, td.signalStrength, td.temperature) " +
+           "FROM TrackingData td WHERE td.vehicle.id = :vehicleId " +
+           "AND td.timestamp BETWEEN :startDate AND :endDate " +
+           "ORDER BY td.timestamp DESC, td.id DESC")
+    List<TrackPoint> findFirstTrackPoints(
+        @Param("vehicleId") Long vehicleId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate,
+        Pageable pageable
+    );
+
+    // La borne "timestamp <= :afterTimestamp" fait démarrer le parcours d'index au curseur ;
+    // la condition sur id ne départage que les points de même horodatage
+    @Query("SELECT new com.gpstracking.model.TrackPoint(td.id, td.latitude, td.longitude, td.speed, td.altitude, " +
+           "td.timestamp, td.batteryLevel, td.signalStrength, td.temperature) " +
+           "FROM TrackingData td WHERE td.vehicle.id = :vehicleId " +
+           "AND td.timestamp >= :startDate AND td.timestamp <= :afterTimestamp " +
+           "AND (td.timestamp < :afterTimestamp OR (td.timestamp = :afterTimestamp AND td.id < :afterId)) " +
+           "ORDER BY td.timestamp DESC, td.id DESC")
+    List<TrackPoint> findTrackPointsAfter(
+        @Param("vehicleId") Long vehicleId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("afterTimestamp") LocalDateTime afterTimestamp,
+        @Param("afterId") Long afterId,
+        Pageable pageable
+    );
+
     @Query("SELECT td FROM TrackingData td WHERE td.vehicle.id = :vehicleId " +
            "AND td.timestamp >= :since " +
            "ORDER BY td.timestamp DESC")
@@ -32,14 +98,24 @@ public interface TrackingDataRepository extends JpaRepository<TrackingData, Long
         @Param("since") LocalDateTime since
     );
 
-    @Query("SELECT td FROM TrackingData td " +
-           "WHERE td.vehicle.id IN :vehicleIds " +
-           "AND td.id IN (SELECT MAX(td2.id) FROM TrackingData td2 " +
-           "WHERE td2.vehicle.id IN :vehicleIds GROUP BY td2.vehicle.id)")
-    List<TrackingData> findLatestTrackingDataForVehicles(
-        @Param("vehicleIds") List<Long> vehicleIds
+    @Query("SELECT new com.gpstracking.model.TrackPoint(td.id, td.latitude, td.longitude, td.speed, td.altitude, " +
+           "td.timestamp, td.batteryLevel, td.signalStrength, td.temperature) " +
+           "FROM TrackingData td WHERE td.vehicle.id = :vehicleId " +
+           "AND td.timestamp >= :since " +
+           "ORDER BY td.timestamp DESC")
+    List<TrackPoint> findRecentTrackPoints(
+        @Param("vehicleId") Long vehicleId,
+        @Param("since") LocalDateTime since
     );
 
+    // Utilisée uniquement au démarrage pour reconstruire le LatestPositionStore ; ignore les véhicules en cours de purge
+    @Query(value = "SELECT DISTINCT ON (vehicle_id) vehicle_id AS vehicleId, latitude, longitude, speed, " +
+           "altitude, timestamp, battery_level AS batteryLevel, signal_strength AS signalStrength, temperature " +
+           "FROM tracking_data WHERE vehicle_id NOT IN (SELECT id FROM vehicles WHERE deleted_at IS NOT NULL) " +
+           "ORDER BY vehicle_id, timestamp DESC, id DESC",
+           nativeQuery = true)
+    List<LatestPositionView> findLatestPositionPerVehicle();
+
     @Query("SELECT COUNT(td) FROM TrackingData td " +
            "WHERE td.vehicle.id = :vehicleId " +
            "AND td.timestamp BETWEEN :startDate AND :endDate")
@@ -48,4 +124,16 @@ public interface TrackingDataRepository extends JpaRepository<TrackingData, Long
         @Param("startDate") LocalDateTime startDate,
         @Param("endDate") LocalDateTime endDate
     );
+
+    interface LatestPositionView {
+        Long getVehicleId();
+        Double getLatitude();
+        Double getLongitude();
+        Double getSpeed();
+        Double getAltitude();
+        LocalDateTime getTimestamp();
+        Double getBatteryLevel();
+        String getSignalStrength();
+        Double getTemperature();
+    }
 }
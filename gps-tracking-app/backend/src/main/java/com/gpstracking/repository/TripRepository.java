@@ -0,0 +1,42 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.Trip;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TripRepository extends JpaRepository<Trip, Long> {
+
+    // Trajets chevauchant la période ; parcours de l'index unique (vehicle_id, start_time)
+    @Query("SELECT t FROM Trip t WHERE t.vehicleId = :vehicleId " +
+           "AND t.endTime >= :startDate AND t.startTime < :endDate " +
+           "ORDER BY t.startTime ASC")
+    List<Trip> findTrips(
+        @Param("vehicleId") Long vehicleId,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+
+    Optional<Trip> findByIdAndVehicleId(Long id, Long vehicleId);
+
+    List<Trip> findByInProgressTrue();
+
+    // Dernier trajet clos commencé avant la date : point de reprise d'une reconstruction
+    Optional<Trip> findFirstByVehicleIdAndInProgressFalseAndStartTimeBeforeOrderByStartTimeDesc(
+        Long vehicleId, LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM Trip t WHERE t.vehicleId = :vehicleId")
+    int deleteByVehicleId(@Param("vehicleId") Long vehicleId);
+
+    @Modifying
+    @Query("DELETE FROM Trip t WHERE t.vehicleId = :vehicleId AND t.startTime >= :from")
+    int deleteFrom(@Param("vehicleId") Long vehicleId, @Param("from") LocalDateTime from);
+}
@@ -0,0 +1,13 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+// Requête polymorphe sur la table users : le sous-type (JOINED) est résolu en une seule requête
+@Repository
+public interface UserRepository extends JpaRepository<User, Long> {
+    Optional<User> findByEmail(String email);
+}
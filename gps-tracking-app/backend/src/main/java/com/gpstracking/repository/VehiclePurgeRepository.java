@@ -0,0 +1,16 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.VehiclePurge;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface VehiclePurgeRepository extends JpaRepository<VehiclePurge, Long> {
+    List<VehiclePurge> findByUserIdOrderByRequestedAtDesc(Long userId);
+
+    @Query("SELECT p.vehicleId FROM VehiclePurge p WHERE p.completedAt IS NULL ORDER BY p.requestedAt")
+    List<Long> findPendingVehicleIds();
+}
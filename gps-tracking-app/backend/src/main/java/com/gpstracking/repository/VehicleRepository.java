@@ -26,7 +26,39 @@ public interface VehicleRepository extends JpaRepository<Vehicle, Long> {
     );
     
     boolean existsByIdAndUserId(Long id, Long userId);
+
+    @Query("SELECT v.id FROM Vehicle v WHERE v.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
     
+    @Query("SELECT v.user.id FROM Vehicle v WHERE v.id = :vehicleId")
+    Optional<Long> findUserIdById(@Param("vehicleId") Long vehicleId);
+
+    // Projection légère utilisée pour charger l'index spatial au démarrage
+    @Query("SELECT v.id AS vehicleId, v.user.id AS userId FROM Vehicle v")
+    List<VehicleOwnership> findAllOwnerships();
+
     @Query("SELECT COUNT(v) FROM Vehicle v WHERE v.user.id = :userId")
     long countByUserId(@Param("userId") Long userId);
+
+    // Vue d'ensemble de la flotte : une page et son total en une seule requête sur l'index (user_id, name, id)
+    // Requête native : le filtre des véhicules supprimés n'est pas ajouté automatiquement
+    @Query(value = "SELECT v.id AS id, v.name AS name, COUNT(*) OVER () AS total FROM vehicles v " +
+           "WHERE v.user_id = :userId AND v.deleted_at IS NULL ORDER BY v.name, v.id LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<VehicleOverviewRow> findOverviewRows(
+        @Param("userId") Long userId,
+        @Param("limit") int limit,
+        @Param("offset") long offset
+    );
+
+    interface VehicleOverviewRow {
+        Long getId();
+        String getName();
+        long getTotal();
+    }
+
+    interface VehicleOwnership {
+        Long getVehicleId();
+        Long getUserId();
+    }
 }
@@ -0,0 +1,31 @@
+package com.gpstracking.repository;
+
+import com.gpstracking.model.VehicleRollup;
+import com.gpstracking.model.VehicleRollup.Granularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VehicleRollupRepository extends JpaRepository<VehicleRollup, Long> {
+
+    @Query("SELECT r FROM VehicleRollup r WHERE r.vehicleId = :vehicleId " +
+           "AND r.granularity = :granularity " +
+           "AND r.bucketStart >= :startDate AND r.bucketStart < :endDate " +
+           "ORDER BY r.bucketStart ASC")
+    List<VehicleRollup> findBuckets(
+        @Param("vehicleId") Long vehicleId,
+        @Param("granularity") Granularity granularity,
+        @Param("startDate") LocalDateTime startDate,
+        @Param("endDate") LocalDateTime endDate
+    );
+
+    @Modifying
+    @Query("DELETE FROM VehicleRollup r WHERE r.vehicleId = :vehicleId")
+    int deleteByVehicleId(@Param("vehicleId") Long vehicleId);
+}
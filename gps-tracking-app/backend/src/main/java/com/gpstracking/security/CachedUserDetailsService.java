@@ -0,0 +1,44 @@
+package com.gpstracking.security;
+
+import com.gpstracking.model.User;
+import com.gpstracking.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+// Utilisateurs authentifiés gardés en mémoire : une requête authentifiée n'accède pas à la base
+@Service
+public class CachedUserDetailsService implements UserDetailsService {
+    private final UserRepository userRepository;
+    private final ExpiringCache<String, User> users;
+
+    @Value("${security.user-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    public CachedUserDetailsService(
+            UserRepository userRepository,
+            MeterRegistry meterRegistry,
+            @Value("${security.user-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.users = new ExpiringCache<String, User>(maxEntries).bindTo(meterRegistry, "users");
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String email) {
+        User user = users.get(email);
+        if (user == null) {
+            user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            users.put(email, user, System.currentTimeMillis() + ttlMs);
+        }
+        return user;
+    }
+
+    // Appelée à chaque modification ou suppression d'un utilisateur (adresse changée comprise)
+    public void evict(User user) {
+        users.removeIf((email, cached) -> email.equals(user.getEmail()) || cached.getId().equals(user.getId()));
+    }
+}
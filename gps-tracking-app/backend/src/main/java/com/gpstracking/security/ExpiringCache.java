@@ -0,0 +1,84 @@
+package com.gpstracking.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+// Cache borné à expiration : au-delà de maxEntries, les entrées expirées puis les plus anciennes sont retirées
+final class ExpiringCache<K, V> {
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ExpiringCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    // Mêmes noms que les caches instrumentés par Micrometer : cache.gets{result=hit|miss} et cache.size
+    ExpiringCache<K, V> bindTo(MeterRegistry registry, String name) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+        Gauge.builder("cache.size", entries, Map::size)
+                .tag("cache", name)
+                .register(registry);
+        return this;
+    }
+
+    V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    void put(K key, V value, long expiresAt) {
+        if (entries.size() >= maxEntries) {
+            prune();
+        }
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    void remove(K key) {
+        entries.remove(key);
+    }
+
+    void removeIf(BiPredicate<K, V> predicate) {
+        entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue().value()));
+    }
+
+    private synchronized void prune() {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        // Toujours plein : on libère un dixième du cache, dans l'ordre d'itération
+        Iterator<K> keys = entries.keySet().iterator();
+        int excess = entries.size() - maxEntries * 9 / 10;
+        while (excess-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {}
+}
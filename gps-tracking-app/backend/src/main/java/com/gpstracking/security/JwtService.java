@@ -1,9 +1,14 @@
 package com.gpstracking.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -12,10 +17,12 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
+    private final MeterRegistry meterRegistry;
 
     @Value("${jwt.secret}")
     private String secretKey;
@@ -23,6 +30,67 @@ public class JwtService {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    // Durée pendant laquelle un jeton déjà vérifié n'est pas revérifié (bornée par son expiration)
+    @Value("${jwt.cache.ttl-ms:300000}")
+    private long cacheTtlMs;
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    // Clé et parseur construits une fois : le parseur est sans état et partagé entre threads
+    private Key signingKey;
+    private JwtParser parser;
+    private ExpiringCache<String, String> validatedTokens;
+    private Timer validTimer;
+    private Timer invalidTimer;
+
+    public JwtService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        validatedTokens = new ExpiringCache<String, String>(cacheMaxEntries).bindTo(meterRegistry, "jwt.tokens");
+        validTimer = validationTimer("valid");
+        invalidTimer = validationTimer("invalid");
+    }
+
+    private Timer validationTimer(String outcome) {
+        return Timer.builder("security.jwt.validation")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Vérifie signature et expiration en une seule analyse ; renvoie le sujet ou null si le jeton est invalide
+    public String validateToken(String token) {
+        long start = System.nanoTime();
+        String subject = parseSubject(token);
+        (subject != null ? validTimer : invalidTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return subject;
+    }
+
+    private String parseSubject(String token) {
+        String subject = validatedTokens.get(token);
+        if (subject != null) {
+            return subject;
+        }
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        subject = claims.getSubject();
+        if (subject != null) {
+            long expiresAt = claims.getExpiration() == null ? Long.MAX_VALUE : claims.getExpiration().getTime();
+            validatedTokens.put(token, subject, Math.min(expiresAt, System.currentTimeMillis() + cacheTtlMs));
+        }
+        return subject;
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -43,34 +111,17 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        final String username = validateToken(token);
+        return username != null && username.equals(userDetails.getUsername());
     }
 
+    // L'analyse échoue déjà sur un jeton expiré ou mal signé
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+        return parser.parseClaimsJws(token).getBody();
     }
 }
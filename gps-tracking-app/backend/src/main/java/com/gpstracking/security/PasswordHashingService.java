@@ -0,0 +1,85 @@
+package com.gpstracking.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Hachage des mots de passe sur un pool dédié et borné : un afflux de connexions
+// ne consomme pas les threads Tomcat du reste de l'API
+@Service
+public class PasswordHashingService {
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${security.password.hash-threads:2}")
+    private int threads;
+
+    @Value("${security.password.queue-capacity:256}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    // Comparé quand l'utilisateur n'existe pas, pour un temps de réponse identique
+    private String dummyHash;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @PostConstruct
+    void start() {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "password-hashing");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        dummyHash = passwordEncoder.encode("dummy-password");
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+    }
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    // Vérifie le mot de passe et, si le hachage stocké utilise des paramètres dépassés, en calcule un nouveau
+    public CompletableFuture<Verification> verify(String rawPassword, String encodedPassword) {
+        return submit(() -> {
+            String encoded = encodedPassword != null ? encodedPassword : dummyHash;
+            boolean matches = passwordEncoder.matches(rawPassword, encoded) && encodedPassword != null;
+            String upgradedHash = matches && passwordEncoder.upgradeEncoding(encoded)
+                ? passwordEncoder.encode(rawPassword)
+                : null;
+            return new Verification(matches, upgradedHash);
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            throw new HashingSaturatedException();
+        }
+    }
+
+    public record Verification(boolean matches, String upgradedHash) {}
+
+    public static class HashingSaturatedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public HashingSaturatedException() {
+            super("Too many concurrent logins, retry shortly");
+        }
+    }
+}
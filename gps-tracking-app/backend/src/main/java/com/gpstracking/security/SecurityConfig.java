@@ -1,5 +1,7 @@
 package com.gpstracking.security;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -33,7 +35,11 @@ public class SecurityConfig {
             .cors().and()
             .csrf().disable()
             .authorizeHttpRequests(auth -> auth
+                // Les redispatchs asynchrones (flux SSE) ont déjà été authentifiés
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**").permitAll()
+                // Sonde de santé et collecte Prometheus ; les autres endpoints Actuator restent authentifiés
+                .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
                 .anyRequest().authenticated()
             )
             .sessionManagement()
@@ -44,9 +50,10 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // Augmenter le coût fait migrer chaque hachage à la connexion suivante de l'utilisateur
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
@@ -0,0 +1,23 @@
+package com.gpstracking.security;
+
+import com.gpstracking.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+// Écouteur JPA de l'entité User : invalide le cache des utilisateurs authentifiés
+@Component
+public class UserCacheEvictionListener {
+    private final CachedUserDetailsService userDetailsService;
+
+    public UserCacheEvictionListener(@Lazy CachedUserDetailsService userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        userDetailsService.evict(user);
+    }
+}
@@ -5,72 +5,105 @@ import com.gpstracking.model.SimpleUser;
 import com.gpstracking.model.User;
 import com.gpstracking.repository.BusinessUserRepository;
 import com.gpstracking.repository.SimpleUserRepository;
+import com.gpstracking.repository.UserRepository;
 import com.gpstracking.security.JwtService;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import com.gpstracking.security.PasswordHashingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Le hachage s'exécute sur le pool de PasswordHashingService ; l'enregistrement en base et la signature du jeton
+// reprennent sur un pool distinct, pour que les threads de hachage ne fassent que du BCrypt
 @Service
 public class AuthenticationService {
     private final BusinessUserRepository businessUserRepository;
     private final SimpleUserRepository simpleUserRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final UserRepository userRepository;
+    private final PasswordHashingService passwordHashingService;
     private final JwtService jwtService;
-    private final AuthenticationManager authenticationManager;
+
+    @Value("${security.auth.completion-threads:8}")
+    private int completionThreads;
+
+    private ExecutorService completion;
 
     public AuthenticationService(
             BusinessUserRepository businessUserRepository,
             SimpleUserRepository simpleUserRepository,
-            PasswordEncoder passwordEncoder,
-            JwtService jwtService,
-            AuthenticationManager authenticationManager) {
+            UserRepository userRepository,
+            PasswordHashingService passwordHashingService,
+            JwtService jwtService) {
         this.businessUserRepository = businessUserRepository;
         this.simpleUserRepository = simpleUserRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
         this.jwtService = jwtService;
-        this.authenticationManager = authenticationManager;
     }
 
-    public AuthResponse registerBusinessUser(BusinessUserRequest request) {
+    @PostConstruct
+    void start() {
+        completion = Executors.newFixedThreadPool(completionThreads, r -> {
+            Thread thread = new Thread(r, "auth-completion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        completion.shutdown();
+    }
+
+    public CompletableFuture<AuthResponse> registerBusinessUser(BusinessUserRequest request) {
         BusinessUser user = new BusinessUser();
-        user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        user.setPhoneNumber(request.getPhoneNumber());
-        user.setCompanyName(request.getCompanyName());
-        user.setRegistrationNumber(request.getRegistrationNumber());
-        user.setManagerFullName(request.getManagerFullName());
-
-        businessUserRepository.save(user);
-        String token = jwtService.generateToken(user);
-        return new AuthResponse(token);
+        user.setEmail(request.email());
+        user.setPhoneNumber(request.phoneNumber());
+        user.setCompanyName(request.companyName());
+        user.setRegistrationNumber(request.registrationNumber());
+        user.setManagerFullName(request.managerFullName());
+
+        return passwordHashingService.encode(request.password()).thenApplyAsync(hash -> {
+            user.setPassword(hash);
+            businessUserRepository.save(user);
+            return new AuthResponse(jwtService.generateToken(user));
+        }, completion);
     }
 
-    public AuthResponse registerSimpleUser(SimpleUserRequest request) {
+    public CompletableFuture<AuthResponse> registerSimpleUser(SimpleUserRequest request) {
         SimpleUser user = new SimpleUser();
-        user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
-        user.setPhoneNumber(request.getPhoneNumber());
-        user.setIdCardNumber(request.getIdCardNumber());
-        user.setFullName(request.getFullName());
-
-        simpleUserRepository.save(user);
-        String token = jwtService.generateToken(user);
-        return new AuthResponse(token);
-    }
+        user.setEmail(request.email());
+        user.setPhoneNumber(request.phoneNumber());
+        user.setIdCardNumber(request.idCardNumber());
+        user.setFullName(request.fullName());
 
-    public AuthResponse authenticate(LoginRequest request) {
-        authenticationManager.authenticate(
-            new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
-        );
+        return passwordHashingService.encode(request.password()).thenApplyAsync(hash -> {
+            user.setPassword(hash);
+            simpleUserRepository.save(user);
+            return new AuthResponse(jwtService.generateToken(user));
+        }, completion);
+    }
 
-        User user = businessUserRepository.findByEmail(request.getEmail())
-                .map(User.class::cast)
-                .orElseGet(() -> simpleUserRepository.findByEmail(request.getEmail())
-                        .orElseThrow(() -> new RuntimeException("User not found")));
+    // Une seule requête sur users résout le sous-type ; le mot de passe est vérifié hors du thread de requête
+    public CompletableFuture<AuthResponse> authenticate(LoginRequest request) {
+        User user = userRepository.findByEmail(request.email()).orElse(null);
+        String encodedPassword = user == null ? null : user.getPassword();
 
-        String token = jwtService.generateToken(user);
-        return new AuthResponse(token);
+        return passwordHashingService.verify(request.password(), encodedPassword).thenApplyAsync(verification -> {
+            if (user == null || !verification.matches()) {
+                throw new BadCredentialsException("Invalid email or password");
+            }
+            if (verification.upgradedHash() != null) {
+                user.setPassword(verification.upgradedHash());
+                userRepository.save(user);
+            }
+            return new AuthResponse(jwtService.generateToken(user));
+        }, completion);
     }
 
     // Classes DTO internes
@@ -0,0 +1,110 @@
+package com.gpstracking.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.service.VehicleService.TrackingDataRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class BulkTrackingImportService {
+    private final ObjectMapper objectMapper;
+    private final VehicleRepository vehicleRepository;
+    private final TrackingIngestionService trackingIngestionService;
+
+    @Value("${tracking.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    public BulkTrackingImportService(
+            ObjectMapper objectMapper,
+            VehicleRepository vehicleRepository,
+            TrackingIngestionService trackingIngestionService) {
+        this.objectMapper = objectMapper;
+        this.vehicleRepository = vehicleRepository;
+        this.trackingIngestionService = trackingIngestionService;
+    }
+
+    // Lit un tableau JSON ou un flux NDJSON enregistrement par enregistrement et écrit par blocs
+    public BulkImportResult importTrackingData(Long vehicleId, InputStream body) throws IOException {
+        if (!vehicleRepository.existsById(vehicleId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+
+        List<ChunkResult> chunks = new ArrayList<>();
+        List<TrackingData> pending = new ArrayList<>(chunkSize);
+        int rejected = 0;
+        String error = null;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            // Un tableau racine est parcouru élément par élément ; sinon, suite d'objets (NDJSON)
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_OBJECT) {
+                    TrackingData trackingData = toTrackingData(parser.readValueAsTree());
+                    if (trackingData == null) {
+                        rejected++;
+                    } else {
+                        pending.add(trackingData);
+                    }
+                } else {
+                    parser.skipChildren();
+                    rejected++;
+                }
+                if (pending.size() + rejected >= chunkSize) {
+                    chunks.add(writeChunk(chunks.size(), vehicleId, pending, rejected));
+                    pending.clear();
+                    rejected = 0;
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            // Corps mal formé : les blocs déjà écrits sont conservés et rapportés
+            error = e.getOriginalMessage();
+        }
+
+        if (!pending.isEmpty() || rejected > 0) {
+            chunks.add(writeChunk(chunks.size(), vehicleId, pending, rejected));
+        }
+
+        int totalAccepted = chunks.stream().mapToInt(ChunkResult::accepted).sum();
+        int totalRejected = chunks.stream().mapToInt(ChunkResult::rejected).sum();
+        return new BulkImportResult(totalAccepted, totalRejected, chunks, error);
+    }
+
+    private ChunkResult writeChunk(int index, Long vehicleId, List<TrackingData> points, int invalid) {
+        int written = points.isEmpty() ? 0 : trackingIngestionService.writeNow(vehicleId, points);
+        return new ChunkResult(index, written, invalid + points.size() - written);
+    }
+
+    private TrackingData toTrackingData(JsonNode node) {
+        TrackingDataRequest request;
+        try {
+            request = objectMapper.treeToValue(node, TrackingDataRequest.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (request.latitude() == null || request.longitude() == null || request.timestamp() == null
+                || Math.abs(request.latitude()) > 90 || Math.abs(request.longitude()) > 180) {
+            return null;
+        }
+        return request.toTrackingData();
+    }
+
+    public record ChunkResult(int index, int accepted, int rejected) {}
+
+    public record BulkImportResult(int accepted, int rejected, List<ChunkResult> chunks, String error) {}
+}
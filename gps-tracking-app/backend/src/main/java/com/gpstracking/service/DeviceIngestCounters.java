@@ -0,0 +1,38 @@
+package com.gpstracking.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Points reçus par dispositif depuis le démarrage, exposés par /actuator/deviceingest.
+// Un compteur par dispositif ferait exploser le nombre de séries Prometheus : ils restent hors du registre.
+// Les identifiants de tous les clients y figurent : endpoint servi sur le seul port de management (management.server.port).
+@Component
+@Endpoint(id = "deviceingest")
+public class DeviceIngestCounters {
+    // Seuls les dispositifs enregistrés sont comptés : la taille est bornée par le registre
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    void increment(String deviceUid) {
+        counts.computeIfAbsent(deviceUid, uid -> new LongAdder()).increment();
+    }
+
+    @ReadOperation
+    public Map<String, Long> counts() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counts.forEach((deviceUid, count) -> snapshot.put(deviceUid, count.sum()));
+        return snapshot;
+    }
+
+    @ReadOperation
+    public Long count(@Selector String deviceUid) {
+        LongAdder count = counts.get(deviceUid);
+        return count == null ? 0L : count.sum();
+    }
+}
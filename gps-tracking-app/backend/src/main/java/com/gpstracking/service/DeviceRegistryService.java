@@ -0,0 +1,133 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.Device;
+import com.gpstracking.model.Vehicle;
+import com.gpstracking.repository.DeviceRepository;
+import com.gpstracking.repository.DeviceRepository.DeviceMapping;
+import com.gpstracking.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class DeviceRegistryService {
+    private final DeviceRepository deviceRepository;
+    private final VehicleRepository vehicleRepository;
+
+    // Index en mémoire : UID Notecard -> véhicule, et véhicule -> UIDs
+    private final Map<String, Long> vehicleByDevice = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> devicesByVehicle = new ConcurrentHashMap<>();
+
+    public DeviceRegistryService(DeviceRepository deviceRepository, VehicleRepository vehicleRepository) {
+        this.deviceRepository = deviceRepository;
+        this.vehicleRepository = vehicleRepository;
+    }
+
+    @PostConstruct
+    void loadIndex() {
+        for (DeviceMapping mapping : deviceRepository.findAllMappings()) {
+            index(mapping.getDeviceUid(), mapping.getVehicleId());
+        }
+    }
+
+    // Résolution sans accès à la base, appelée pour chaque webhook
+    public Long findVehicleId(String deviceUid) {
+        return deviceUid == null ? null : vehicleByDevice.get(deviceUid);
+    }
+
+    public Set<String> findDeviceUids(Long vehicleId) {
+        Set<String> devices = devicesByVehicle.get(vehicleId);
+        return devices == null ? Collections.emptySet() : Collections.unmodifiableSet(devices);
+    }
+
+    @Transactional
+    public Device registerDevice(Long vehicleId, Long userId, String deviceUid) {
+        Vehicle vehicle = vehicleRepository.findByIdAndUserId(vehicleId, userId)
+                .orElseThrow(() -> new UsernameNotFoundException("Vehicle not found"));
+        Long current = vehicleByDevice.get(deviceUid);
+        if (current != null && !current.equals(vehicleId)) {
+            throw new IllegalStateException("Device already registered to another vehicle");
+        }
+
+        Device device = deviceRepository.findByDeviceUid(deviceUid).orElseGet(Device::new);
+        device.setDeviceUid(deviceUid);
+        device.setVehicle(vehicle);
+        if (device.getRegisteredAt() == null) {
+            device.setRegisteredAt(LocalDateTime.now());
+        }
+        Device saved = deviceRepository.save(device);
+        afterCommit(() -> index(deviceUid, vehicleId));
+        return saved;
+    }
+
+    @Transactional
+    public void unregisterDevice(Long vehicleId, Long userId, String deviceUid) {
+        if (!vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        Device device = deviceRepository.findByDeviceUid(deviceUid)
+                .filter(d -> d.getVehicle().getId().equals(vehicleId))
+                .orElseThrow(() -> new IllegalArgumentException("Device not found"));
+        deviceRepository.delete(device);
+        afterCommit(() -> unindex(deviceUid));
+    }
+
+    // Appelée lors de la suppression d'un véhicule, dans la transaction de l'appelant
+    @Transactional
+    public void unregisterVehicle(Long vehicleId) {
+        deviceRepository.deleteByVehicleId(vehicleId);
+        afterCommit(() -> unindexVehicle(vehicleId));
+    }
+
+    private synchronized void index(String deviceUid, Long vehicleId) {
+        Long previous = vehicleByDevice.put(deviceUid, vehicleId);
+        if (previous != null && !previous.equals(vehicleId)) {
+            removeFromVehicle(previous, deviceUid);
+        }
+        devicesByVehicle.computeIfAbsent(vehicleId, id -> ConcurrentHashMap.newKeySet()).add(deviceUid);
+    }
+
+    private synchronized void unindex(String deviceUid) {
+        Long vehicleId = vehicleByDevice.remove(deviceUid);
+        if (vehicleId != null) {
+            removeFromVehicle(vehicleId, deviceUid);
+        }
+    }
+
+    private synchronized void unindexVehicle(Long vehicleId) {
+        Set<String> devices = devicesByVehicle.remove(vehicleId);
+        if (devices != null) {
+            devices.forEach(uid -> vehicleByDevice.remove(uid, vehicleId));
+        }
+    }
+
+    private void removeFromVehicle(Long vehicleId, String deviceUid) {
+        devicesByVehicle.computeIfPresent(vehicleId, (id, devices) -> {
+            devices.remove(deviceUid);
+            return devices.isEmpty() ? null : devices;
+        });
+    }
+
+    // L'index n'est modifié qu'une fois l'écriture validée en base
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.gpstracking.service;
+
+// Distance orthodromique (haversine) sur une Terre sphérique, partagée par les cumuls, les trajets,
+// la recherche de proximité et le géorepérage
+final class GeoDistance {
+    static final double EARTH_RADIUS_KM = 6371.0;
+    static final double EARTH_RADIUS_M = EARTH_RADIUS_KM * 1000;
+
+    private GeoDistance() {
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.pow(Math.sin(dLat / 2), 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+
+    static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        return haversineKm(lat1, lon1, lat2, lon2) * 1000;
+    }
+}
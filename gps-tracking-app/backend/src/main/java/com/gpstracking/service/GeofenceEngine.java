@@ -0,0 +1,314 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.Geofence;
+import com.gpstracking.model.GeofenceEvent.Transition;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.GeofenceRepository;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Évaluation en flux des zones : chaque point stocké est confronté aux zones de sa cellule,
+// et seul un changement de l'état dedans/dehors du véhicule produit un événement
+@Service
+public class GeofenceEngine implements TrackingDataListener {
+    private static final Logger log = LoggerFactory.getLogger(GeofenceEngine.class);
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final GeofenceRepository geofenceRepository;
+    private final LatestPositionStore latestPositionStore;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${tracking.geofence.cell-degrees:0.05}")
+    private double cellDegrees;
+
+    // Au-delà, une zone est testée pour chaque point plutôt qu'inscrite dans toutes ses cellules
+    @Value("${tracking.geofence.max-cells-per-fence:4096}")
+    private int maxCellsPerFence;
+
+    // Index immuable remplacé en bloc à chaque modification des zones : lecture sans verrou
+    private volatile FenceIndex index = new FenceIndex(Map.of(), new CompiledFence[0], Map.of());
+    private final Map<Long, VehicleState> states = new ConcurrentHashMap<>();
+    private final Queue<Object[]> pendingEvents = new ConcurrentLinkedQueue<>();
+
+    public GeofenceEngine(
+            GeofenceRepository geofenceRepository,
+            LatestPositionStore latestPositionStore,
+            JdbcTemplate jdbcTemplate) {
+        this.geofenceRepository = geofenceRepository;
+        this.latestPositionStore = latestPositionStore;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void start() {
+        reload();
+        // État initial depuis la dernière position connue : pas d'événement au redémarrage
+        for (LatestPosition position : latestPositionStore.snapshot()) {
+            if (position.latitude() != null && position.longitude() != null) {
+                states.put(position.vehicleId(), new VehicleState(position.timestamp(),
+                    index.containing(position.vehicleId(), position.latitude(), position.longitude())));
+            }
+        }
+    }
+
+    // Appelée après chaque modification des zones ou de leurs affectations
+    public synchronized void reload() {
+        List<CompiledFence> fences = new ArrayList<>();
+        for (Geofence geofence : geofenceRepository.findAllWithVehicles()) {
+            try {
+                fences.add(CompiledFence.of(geofence));
+            } catch (IllegalArgumentException e) {
+                log.warn("Zone {} ignorée : {}", geofence.getId(), e.getMessage());
+            }
+        }
+        index = buildIndex(fences);
+        log.info("{} zones chargées dans le moteur de géorepérage", fences.size());
+    }
+
+    public void forgetVehicle(Long vehicleId) {
+        states.remove(vehicleId);
+    }
+
+    @Override
+    public void onTrackingData(Long vehicleId, TrackingData trackingData) {
+        Double latitude = trackingData.getLatitude();
+        Double longitude = trackingData.getLongitude();
+        LocalDateTime timestamp = trackingData.getTimestamp();
+        if (latitude == null || longitude == null || timestamp == null) {
+            return;
+        }
+        FenceIndex current = index;
+        states.compute(vehicleId, (id, state) -> {
+            // Un point arrivé en retard ne modifie pas l'état
+            if (state != null && timestamp.isBefore(state.timestamp())) {
+                return state;
+            }
+            Set<Long> inside = current.containing(vehicleId, latitude, longitude);
+            Set<Long> previous = state == null ? Set.of() : state.inside();
+            for (Long fenceId : inside) {
+                if (!previous.contains(fenceId)) {
+                    record(fenceId, vehicleId, Transition.ENTER, latitude, longitude, timestamp);
+                }
+            }
+            for (Long fenceId : previous) {
+                // Zone supprimée ou désaffectée entre-temps : pas de sortie à signaler
+                if (!inside.contains(fenceId) && current.applies(fenceId, vehicleId)) {
+                    record(fenceId, vehicleId, Transition.EXIT, latitude, longitude, timestamp);
+                }
+            }
+            return new VehicleState(timestamp, inside);
+        });
+    }
+
+    private void record(Long fenceId, Long vehicleId, Transition transition,
+                        double latitude, double longitude, LocalDateTime timestamp) {
+        pendingEvents.add(new Object[] {
+            fenceId, vehicleId, transition.name(), latitude, longitude, Timestamp.valueOf(timestamp)
+        });
+    }
+
+    // Appelée après la suppression d'une zone et le rechargement de l'index. Sous le même verrou que
+    // l'écriture : un lot en cours, filtré sur l'ancien index, est validé avant le nettoyage
+    public synchronized void forgetFence(Long fenceId) {
+        pendingEvents.removeIf(event -> fenceId.equals(event[0]));
+        jdbcTemplate.update("DELETE FROM geofence_events WHERE geofence_id = ?", fenceId);
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.geofence.flush-interval-ms:1000}")
+    public synchronized void flushEvents() {
+        FenceIndex current = index;
+        List<Object[]> batch = new ArrayList<>();
+        Object[] event;
+        while ((event = pendingEvents.poll()) != null) {
+            // Zone supprimée depuis la détection : l'événement n'est pas écrit
+            if (current.exists((Long) event[0])) {
+                batch.add(event);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO geofence_events (geofence_id, vehicle_id, transition, latitude, longitude, timestamp) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", batch);
+        } catch (DataAccessException e) {
+            // Événements remis en file pour la prochaine écriture
+            log.error("Erreur lors de l'écriture de {} événements de zone", batch.size(), e);
+            pendingEvents.addAll(batch);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flushEvents();
+    }
+
+    private FenceIndex buildIndex(List<CompiledFence> fences) {
+        Map<Long, List<CompiledFence>> cells = new HashMap<>();
+        List<CompiledFence> large = new ArrayList<>();
+        Map<Long, Set<Long>> vehiclesByFence = new HashMap<>();
+        for (CompiledFence fence : fences) {
+            vehiclesByFence.put(fence.id(), fence.vehicleIds());
+            int fromLat = cellIndex(fence.minLat(), 90);
+            int toLat = cellIndex(fence.maxLat(), 90);
+            int fromLon = cellIndex(fence.minLon(), 180);
+            int toLon = cellIndex(fence.maxLon(), 180);
+            long cellCount = (long) (toLat - fromLat + 1) * (toLon - fromLon + 1);
+            if (cellCount > maxCellsPerFence) {
+                large.add(fence);
+                continue;
+            }
+            for (int lat = fromLat; lat <= toLat; lat++) {
+                for (int lon = fromLon; lon <= toLon; lon++) {
+                    cells.computeIfAbsent(cellKey(lat, lon), key -> new ArrayList<>()).add(fence);
+                }
+            }
+        }
+        Map<Long, CompiledFence[]> frozen = new HashMap<>(cells.size() * 2);
+        cells.forEach((key, list) -> frozen.put(key, list.toArray(new CompiledFence[0])));
+        return new FenceIndex(frozen, large.toArray(new CompiledFence[0]), vehiclesByFence);
+    }
+
+    private int cellIndex(double value, double offset) {
+        return (int) Math.floor((value + offset) / cellDegrees);
+    }
+
+    private static long cellKey(int latIndex, int lonIndex) {
+        return ((long) latIndex << 32) | (lonIndex & 0xFFFFFFFFL);
+    }
+
+    private final class FenceIndex {
+        private final Map<Long, CompiledFence[]> cells;
+        private final CompiledFence[] large;
+        private final Map<Long, Set<Long>> vehiclesByFence;
+
+        private FenceIndex(Map<Long, CompiledFence[]> cells, CompiledFence[] large, Map<Long, Set<Long>> vehiclesByFence) {
+            this.cells = cells;
+            this.large = large;
+            this.vehiclesByFence = vehiclesByFence;
+        }
+
+        Set<Long> containing(Long vehicleId, double latitude, double longitude) {
+            Set<Long> inside = null;
+            CompiledFence[] candidates = cells.get(cellKey(cellIndex(latitude, 90), cellIndex(longitude, 180)));
+            if (candidates != null) {
+                inside = collect(candidates, vehicleId, latitude, longitude, inside);
+            }
+            inside = collect(large, vehicleId, latitude, longitude, inside);
+            return inside == null ? Set.of() : inside;
+        }
+
+        private Set<Long> collect(CompiledFence[] fences, Long vehicleId, double latitude, double longitude, Set<Long> inside) {
+            for (CompiledFence fence : fences) {
+                if (fence.vehicleIds().contains(vehicleId) && fence.contains(latitude, longitude)) {
+                    if (inside == null) {
+                        inside = new HashSet<>();
+                    }
+                    inside.add(fence.id());
+                }
+            }
+            return inside;
+        }
+
+        boolean exists(Long fenceId) {
+            return vehiclesByFence.containsKey(fenceId);
+        }
+
+        boolean applies(Long fenceId, Long vehicleId) {
+            Set<Long> vehicles = vehiclesByFence.get(fenceId);
+            return vehicles != null && vehicles.contains(vehicleId);
+        }
+    }
+
+    private record VehicleState(LocalDateTime timestamp, Set<Long> inside) {}
+
+    // Zone précompilée : rectangle englobant pour le filtrage, puis test exact
+    private record CompiledFence(
+        Long id,
+        Set<Long> vehicleIds,
+        double minLat,
+        double minLon,
+        double maxLat,
+        double maxLon,
+        double centerLat,
+        double centerLon,
+        double radiusMeters,
+        double[] lats,
+        double[] lons
+    ) {
+        static CompiledFence of(Geofence geofence) {
+            Set<Long> vehicleIds = Set.copyOf(geofence.getVehicleIds());
+            if (geofence.getShape() == Geofence.Shape.CIRCLE) {
+                if (geofence.getCenterLatitude() == null || geofence.getCenterLongitude() == null
+                        || geofence.getRadiusMeters() == null || geofence.getRadiusMeters() <= 0) {
+                    throw new IllegalArgumentException("Invalid circle");
+                }
+                double lat = geofence.getCenterLatitude();
+                double lon = geofence.getCenterLongitude();
+                double radius = geofence.getRadiusMeters();
+                double dLat = radius / METERS_PER_DEGREE;
+                double dLon = Math.min(180, radius / (METERS_PER_DEGREE * Math.cos(Math.toRadians(Math.min(89.9, Math.abs(lat) + dLat)))));
+                return new CompiledFence(geofence.getId(), vehicleIds, lat - dLat, lon - dLon, lat + dLat, lon + dLon,
+                    lat, lon, radius, null, null);
+            }
+
+            List<double[]> vertices = GeofenceService.parsePolygon(geofence.getPolygon());
+            if (vertices.size() < 3) {
+                throw new IllegalArgumentException("Polygon needs at least 3 vertices");
+            }
+            double[] lats = new double[vertices.size()];
+            double[] lons = new double[vertices.size()];
+            double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE;
+            double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+            for (int i = 0; i < vertices.size(); i++) {
+                lats[i] = vertices.get(i)[0];
+                lons[i] = vertices.get(i)[1];
+                minLat = Math.min(minLat, lats[i]);
+                maxLat = Math.max(maxLat, lats[i]);
+                minLon = Math.min(minLon, lons[i]);
+                maxLon = Math.max(maxLon, lons[i]);
+            }
+            return new CompiledFence(geofence.getId(), vehicleIds, minLat, minLon, maxLat, maxLon, 0, 0, 0, lats, lons);
+        }
+
+        boolean contains(double latitude, double longitude) {
+            if (latitude < minLat || latitude > maxLat || longitude < minLon || longitude > maxLon) {
+                return false;
+            }
+            if (lats == null) {
+                return GeoDistance.haversineMeters(centerLat, centerLon, latitude, longitude) <= radiusMeters;
+            }
+            // Lancer de rayon en coordonnées planes, suffisant à l'échelle d'une zone client
+            boolean inside = false;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if ((lats[i] > latitude) != (lats[j] > latitude)
+                        && longitude < (lons[j] - lons[i]) * (latitude - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+    }
+}
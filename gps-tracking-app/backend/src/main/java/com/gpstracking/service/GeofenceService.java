@@ -0,0 +1,200 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.Geofence;
+import com.gpstracking.model.Geofence.Shape;
+import com.gpstracking.model.GeofenceEvent;
+import com.gpstracking.model.User;
+import com.gpstracking.repository.GeofenceEventRepository;
+import com.gpstracking.repository.GeofenceRepository;
+import com.gpstracking.repository.VehicleRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class GeofenceService {
+    private static final int MAX_EVENTS = 1000;
+
+    private final GeofenceRepository geofenceRepository;
+    private final GeofenceEventRepository geofenceEventRepository;
+    private final VehicleRepository vehicleRepository;
+    private final GeofenceEngine geofenceEngine;
+    private final TransactionTemplate transactionTemplate;
+
+    public GeofenceService(
+            GeofenceRepository geofenceRepository,
+            GeofenceEventRepository geofenceEventRepository,
+            VehicleRepository vehicleRepository,
+            GeofenceEngine geofenceEngine,
+            TransactionTemplate transactionTemplate) {
+        this.geofenceRepository = geofenceRepository;
+        this.geofenceEventRepository = geofenceEventRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.geofenceEngine = geofenceEngine;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public List<GeofenceResponse> getUserGeofences(Long userId) {
+        return geofenceRepository.findByUserIdWithVehicles(userId).stream()
+                .map(GeofenceResponse::of)
+                .collect(Collectors.toList());
+    }
+
+    // Le moteur est rechargé une fois la modification validée
+    public GeofenceResponse createGeofence(User user, GeofenceRequest request) {
+        Geofence geofence = new Geofence();
+        geofence.setUser(user);
+        geofence.setCreatedAt(LocalDateTime.now());
+        apply(geofence, request, user.getId());
+        Geofence saved = transactionTemplate.execute(status -> geofenceRepository.save(geofence));
+        geofenceEngine.reload();
+        return GeofenceResponse.of(saved);
+    }
+
+    public GeofenceResponse updateGeofence(Long geofenceId, Long userId, GeofenceRequest request) {
+        Geofence saved = transactionTemplate.execute(status -> {
+            Geofence geofence = geofenceRepository.findByIdAndUserId(geofenceId, userId)
+                    .orElseThrow(() -> new IllegalArgumentException("Geofence not found"));
+            apply(geofence, request, userId);
+            return geofenceRepository.save(geofence);
+        });
+        geofenceEngine.reload();
+        return GeofenceResponse.of(saved);
+    }
+
+    public void deleteGeofence(Long geofenceId, Long userId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Geofence geofence = geofenceRepository.findByIdAndUserId(geofenceId, userId)
+                    .orElseThrow(() -> new IllegalArgumentException("Geofence not found"));
+            geofenceEventRepository.deleteByGeofenceId(geofenceId);
+            geofenceRepository.delete(geofence);
+        });
+        geofenceEngine.reload();
+        geofenceEngine.forgetFence(geofenceId);
+    }
+
+    public List<GeofenceEvent> getRecentEvents(Long userId, LocalDateTime since, int limit) {
+        List<Long> vehicleIds = vehicleRepository.findIdsByUserId(userId);
+        if (vehicleIds.isEmpty()) {
+            return List.of();
+        }
+        return geofenceEventRepository.findRecentEvents(
+            vehicleIds, since, PageRequest.of(0, Math.max(1, Math.min(limit, MAX_EVENTS))));
+    }
+
+    // Appelée lors de la suppression d'un véhicule, dans la transaction de l'appelant
+    @Transactional
+    public void removeVehicle(Long vehicleId) {
+        geofenceRepository.unassignVehicle(vehicleId);
+        geofenceEventRepository.deleteByVehicleId(vehicleId);
+        geofenceEngine.forgetVehicle(vehicleId);
+    }
+
+    private void apply(Geofence geofence, GeofenceRequest request, Long userId) {
+        if (request.name() == null || request.name().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (request.shape() == null) {
+            throw new IllegalArgumentException("Shape is required");
+        }
+        geofence.setName(request.name());
+        geofence.setShape(request.shape());
+        if (request.shape() == Shape.CIRCLE) {
+            if (request.centerLatitude() == null || request.centerLongitude() == null
+                    || request.radiusMeters() == null || request.radiusMeters() <= 0) {
+                throw new IllegalArgumentException("Circle requires a center and a positive radius");
+            }
+            geofence.setCenterLatitude(request.centerLatitude());
+            geofence.setCenterLongitude(request.centerLongitude());
+            geofence.setRadiusMeters(request.radiusMeters());
+            geofence.setPolygon(null);
+        } else {
+            if (request.polygon() == null || request.polygon().size() < 3) {
+                throw new IllegalArgumentException("Polygon requires at least 3 vertices");
+            }
+            geofence.setPolygon(formatPolygon(request.polygon()));
+            geofence.setCenterLatitude(null);
+            geofence.setCenterLongitude(null);
+            geofence.setRadiusMeters(null);
+        }
+
+        Set<Long> vehicleIds = request.vehicleIds() == null ? Set.of() : request.vehicleIds();
+        if (!new HashSet<>(vehicleRepository.findIdsByUserId(userId)).containsAll(vehicleIds)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        geofence.getVehicleIds().clear();
+        geofence.getVehicleIds().addAll(vehicleIds);
+    }
+
+    private static String formatPolygon(List<List<Double>> vertices) {
+        StringBuilder polygon = new StringBuilder();
+        for (List<Double> vertex : vertices) {
+            if (vertex == null || vertex.size() != 2 || vertex.get(0) == null || vertex.get(1) == null) {
+                throw new IllegalArgumentException("Vertices must be [latitude, longitude] pairs");
+            }
+            if (polygon.length() > 0) {
+                polygon.append(';');
+            }
+            polygon.append(vertex.get(0)).append(',').append(vertex.get(1));
+        }
+        return polygon.toString();
+    }
+
+    static List<double[]> parsePolygon(String polygon) {
+        List<double[]> vertices = new ArrayList<>();
+        if (polygon == null || polygon.isBlank()) {
+            return vertices;
+        }
+        for (String vertex : polygon.split(";")) {
+            String[] parts = vertex.split(",");
+            vertices.add(new double[] {Double.parseDouble(parts[0]), Double.parseDouble(parts[1])});
+        }
+        return vertices;
+    }
+
+    // DTO pour les requêtes : polygon est une liste de paires [latitude, longitude]
+    public record GeofenceRequest(
+        String name,
+        Shape shape,
+        Double centerLatitude,
+        Double centerLongitude,
+        Double radiusMeters,
+        List<List<Double>> polygon,
+        Set<Long> vehicleIds
+    ) {}
+
+    public record GeofenceResponse(
+        Long id,
+        String name,
+        Shape shape,
+        Double centerLatitude,
+        Double centerLongitude,
+        Double radiusMeters,
+        List<double[]> polygon,
+        Set<Long> vehicleIds,
+        LocalDateTime createdAt
+    ) {
+        static GeofenceResponse of(Geofence geofence) {
+            return new GeofenceResponse(
+                geofence.getId(),
+                geofence.getName(),
+                geofence.getShape(),
+                geofence.getCenterLatitude(),
+                geofence.getCenterLongitude(),
+                geofence.getRadiusMeters(),
+                geofence.getShape() == Shape.POLYGON ? parsePolygon(geofence.getPolygon()) : null,
+                Set.copyOf(geofence.getVehicleIds()),
+                geofence.getCreatedAt()
+            );
+        }
+    }
+}
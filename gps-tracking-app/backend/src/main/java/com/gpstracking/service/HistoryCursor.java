@@ -0,0 +1,34 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackPoint;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+// Jeton de continuation opaque encodant la clé (timestamp, id) du dernier point renvoyé
+record HistoryCursor(LocalDateTime timestamp, Long id) {
+
+    static HistoryCursor of(TrackPoint point) {
+        return new HistoryCursor(point.timestamp(), point.id());
+    }
+
+    String encode() {
+        long seconds = timestamp.toEpochSecond(ZoneOffset.UTC);
+        String raw = seconds + ":" + timestamp.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static HistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(
+                Long.parseLong(parts[0]), Integer.parseInt(parts[1]), ZoneOffset.UTC);
+            return new HistoryCursor(timestamp, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
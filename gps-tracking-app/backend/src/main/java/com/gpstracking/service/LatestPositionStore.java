@@ -0,0 +1,103 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.TrackingDataRepository;
+import com.gpstracking.repository.TrackingDataRepository.LatestPositionView;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class LatestPositionStore implements TrackingDataListener {
+    private final TrackingDataRepository trackingDataRepository;
+
+    // Dernière position connue par véhicule ; une entrée par véhicule au plus
+    private final Map<Long, LatestPosition> positions = new ConcurrentHashMap<>();
+
+    public LatestPositionStore(TrackingDataRepository trackingDataRepository) {
+        this.trackingDataRepository = trackingDataRepository;
+    }
+
+    @PostConstruct
+    void rebuild() {
+        for (LatestPositionView view : trackingDataRepository.findLatestPositionPerVehicle()) {
+            update(new LatestPosition(
+                view.getVehicleId(),
+                view.getLatitude(),
+                view.getLongitude(),
+                view.getSpeed(),
+                view.getAltitude(),
+                view.getTimestamp(),
+                view.getBatteryLevel(),
+                view.getSignalStrength(),
+                view.getTemperature()
+            ));
+        }
+    }
+
+    @Override
+    public void onTrackingData(Long vehicleId, TrackingData trackingData) {
+        update(LatestPosition.of(vehicleId, trackingData));
+    }
+
+    public LatestPosition get(Long vehicleId) {
+        return vehicleId == null ? null : positions.get(vehicleId);
+    }
+
+    public List<LatestPosition> getAll(List<Long> vehicleIds) {
+        List<LatestPosition> result = new ArrayList<>(vehicleIds.size());
+        for (Long vehicleId : vehicleIds) {
+            LatestPosition position = positions.get(vehicleId);
+            if (position != null) {
+                result.add(position);
+            }
+        }
+        return result;
+    }
+
+    Collection<LatestPosition> snapshot() {
+        return new ArrayList<>(positions.values());
+    }
+
+    public void remove(Long vehicleId) {
+        positions.remove(vehicleId);
+    }
+
+    // Un point arrivé en retard ne remplace pas une position plus récente
+    private void update(LatestPosition position) {
+        positions.merge(position.vehicleId(), position,
+            (current, candidate) -> candidate.timestamp().isBefore(current.timestamp()) ? current : candidate);
+    }
+
+    public record LatestPosition(
+        Long vehicleId,
+        Double latitude,
+        Double longitude,
+        Double speed,
+        Double altitude,
+        LocalDateTime timestamp,
+        Double batteryLevel,
+        String signalStrength,
+        Double temperature
+    ) {
+        static LatestPosition of(Long vehicleId, TrackingData data) {
+            return new LatestPosition(
+                vehicleId,
+                data.getLatitude(),
+                data.getLongitude(),
+                data.getSpeed(),
+                data.getAltitude(),
+                data.getTimestamp(),
+                data.getBatteryLevel(),
+                data.getSignalStrength(),
+                data.getTemperature()
+            );
+        }
+    }
+}
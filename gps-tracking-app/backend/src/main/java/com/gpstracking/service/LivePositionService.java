@@ -0,0 +1,285 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+public class LivePositionService implements TrackingDataListener {
+    private static final Logger log = LoggerFactory.getLogger(LivePositionService.class);
+
+    private final LatestPositionStore latestPositionStore;
+
+    @Value("${tracking.live.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${tracking.live.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${tracking.live.sender-threads:4}")
+    private int senderThreads;
+
+    // Nombre de ticks pendant lesquels un abonné peut rester bloqué avant d'être déconnecté
+    @Value("${tracking.live.max-lag-ticks:30}")
+    private int maxLagTicks;
+
+    @Value("${tracking.live.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    // Durée d'envoi au-delà de laquelle le client est déconnecté : plus aucun envoi ne lui est planifié.
+    // Le thread bloqué dans l'écriture n'est libéré que par le délai d'écriture du conteneur
+    // (server.tomcat.connection-timeout), une interruption ne débloquant pas une écriture sur socket
+    @Value("${tracking.live.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    @Value("${tracking.live.closer-threads:1}")
+    private int closerThreads;
+
+    // Positions reçues depuis le dernier tick, fusionnées par véhicule
+    private final Map<Long, LatestPosition> dirty = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscription>> subscribersByVehicle = new ConcurrentHashMap<>();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService senders;
+    // Fermeture des abonnés déconnectés sans envoi en cours ; ceux dont un envoi est en cours sont fermés
+    // par le thread d'envoi à la fin de l'écriture, complete() attendant sinon cette écriture
+    private ExecutorService closers;
+
+    public LivePositionService(LatestPositionStore latestPositionStore) {
+        this.latestPositionStore = latestPositionStore;
+    }
+
+    @PostConstruct
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "live-position-ticker"));
+        senders = Executors.newFixedThreadPool(senderThreads, r -> daemon(r, "live-position-sender"));
+        closers = Executors.newFixedThreadPool(closerThreads, r -> daemon(r, "live-position-closer"));
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        ticker.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+        subscriptions.forEach(subscription -> subscription.emitter.complete());
+    }
+
+    @Override
+    public void onTrackingData(Long vehicleId, TrackingData trackingData) {
+        if (subscribersByVehicle.containsKey(vehicleId)) {
+            dirty.merge(vehicleId, LatestPosition.of(vehicleId, trackingData),
+                (current, candidate) -> candidate.timestamp().isBefore(current.timestamp()) ? current : candidate);
+        }
+    }
+
+    public SseEmitter subscribe(Long userId, Collection<Long> vehicleIds) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscription subscription = new Subscription(userId, Set.copyOf(vehicleIds), emitter);
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        emitter.onError(e -> unsubscribe(subscription));
+
+        subscriptions.add(subscription);
+        for (Long vehicleId : subscription.vehicleIds) {
+            subscribersByVehicle.computeIfAbsent(vehicleId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+            // Premier envoi : l'état courant, livré au prochain tick
+            LatestPosition position = latestPositionStore.get(vehicleId);
+            if (position != null) {
+                subscription.pending.put(vehicleId, position);
+            }
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        for (Long vehicleId : subscription.vehicleIds) {
+            subscribersByVehicle.computeIfPresent(vehicleId, (id, subscribers) -> {
+                subscribers.remove(subscription);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    private void tick() {
+        try {
+            Set<Subscription> touched = new HashSet<>();
+            for (Long vehicleId : dirty.keySet()) {
+                LatestPosition position = dirty.remove(vehicleId);
+                Set<Subscription> subscribers = subscribersByVehicle.get(vehicleId);
+                if (position == null || subscribers == null) {
+                    continue;
+                }
+                for (Subscription subscription : subscribers) {
+                    // Tampon par abonné borné par son nombre de véhicules : un client lent ne reçoit que l'état le plus récent
+                    subscription.pending.put(vehicleId, position);
+                    touched.add(subscription);
+                }
+            }
+            long now = System.nanoTime();
+            for (Subscription subscription : subscriptions) {
+                if (isStalled(subscription, now)) {
+                    disconnect(subscription, "envoi bloqué");
+                    touched.remove(subscription);
+                } else if (!subscription.pending.isEmpty()) {
+                    touched.add(subscription);
+                }
+            }
+            for (Subscription subscription : touched) {
+                schedule(subscription);
+            }
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la diffusion des positions en direct", e);
+        }
+    }
+
+    private void schedule(Subscription subscription) {
+        if (subscription.sending.compareAndSet(false, true)) {
+            subscription.lagTicks = 0;
+            submit(subscription, () -> drain(subscription));
+        } else if (++subscription.lagTicks > maxLagTicks) {
+            disconnect(subscription, "trop lent");
+        }
+    }
+
+    // Un seul envoi en cours par abonné ; son début (et non sa mise en file) est noté pour détecter
+    // les écritures bloquées sans pénaliser les abonnés qui attendent un thread libre
+    private void submit(Subscription subscription, Runnable send) {
+        senders.execute(() -> {
+            if (!subscription.disconnected) {
+                subscription.sendStartedAt = System.nanoTime();
+                try {
+                    send.run();
+                } finally {
+                    subscription.sendStartedAt = 0;
+                }
+            } else {
+                subscription.sending.set(false);
+            }
+            // Déconnecté pendant l'envoi : l'écriture est terminée (ou a échoué), la fermeture n'attend plus
+            if (subscription.disconnected) {
+                close(subscription);
+            }
+        });
+    }
+
+    private boolean isStalled(Subscription subscription, long now) {
+        long startedAt = subscription.sendStartedAt;
+        return startedAt != 0 && now - startedAt > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+    }
+
+    // L'abonné ne reçoit plus rien immédiatement. Sans envoi en cours la connexion est fermée hors du ticker ;
+    // sinon le thread d'envoi la ferme quand l'écriture se termine ou échoue sur le délai du conteneur.
+    // disconnected est écrit avant de lire sending, et l'inverse côté envoi : l'un des deux ferme au moins
+    private void disconnect(Subscription subscription, String reason) {
+        if (!subscriptions.contains(subscription)) {
+            return;
+        }
+        unsubscribe(subscription);
+        log.info("Abonné déconnecté ({}, utilisateur {})", reason, subscription.userId);
+        subscription.disconnected = true;
+        if (!subscription.sending.get()) {
+            closers.execute(() -> close(subscription));
+        }
+    }
+
+    private void close(Subscription subscription) {
+        if (!subscription.closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            subscription.emitter.completeWithError(new IOException("Live position subscriber disconnected"));
+        } catch (RuntimeException e) {
+            log.debug("Fermeture d'un abonné déjà terminé: {}", e.getMessage());
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        try {
+            List<LatestPosition> batch = new ArrayList<>(subscription.pending.size());
+            for (Long vehicleId : subscription.pending.keySet()) {
+                LatestPosition position = subscription.pending.remove(vehicleId);
+                if (position != null) {
+                    batch.add(position);
+                }
+            }
+            if (!batch.isEmpty()) {
+                subscription.emitter.send(SseEmitter.event().name("positions").data(batch, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException | IllegalStateException e) {
+            unsubscribe(subscription);
+        } finally {
+            subscription.sending.set(false);
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.sending.compareAndSet(false, true)) {
+                submit(subscription, () -> {
+                    try {
+                        subscription.emitter.send(SseEmitter.event().comment("ping"));
+                    } catch (IOException | IllegalStateException e) {
+                        unsubscribe(subscription);
+                    } finally {
+                        subscription.sending.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Subscription {
+        private final Long userId;
+        private final Set<Long> vehicleIds;
+        private final SseEmitter emitter;
+        private final Map<Long, LatestPosition> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean disconnected;
+        private volatile int lagTicks;
+        private volatile long sendStartedAt;
+
+        private Subscription(Long userId, Set<Long> vehicleIds, SseEmitter emitter) {
+            this.userId = userId;
+            this.vehicleIds = vehicleIds;
+            this.emitter = emitter;
+        }
+    }
+}
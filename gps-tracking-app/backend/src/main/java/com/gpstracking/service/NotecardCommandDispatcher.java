@@ -0,0 +1,316 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.DeviceCommand;
+import com.gpstracking.repository.DeviceCommandRepository;
+import com.gpstracking.repository.DeviceCommandRepository.StatusCount;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.service.NotehubClient.SendResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Envoi asynchrone des commandes Notecard depuis la file persistante device_commands :
+// limite de requêtes simultanées par hub, nouvelles tentatives avec délai exponentiel,
+// et une commande en attente est remplacée par une plus récente de même clé pour le même dispositif.
+@Service
+public class NotecardCommandDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(NotecardCommandDispatcher.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final String OWNED_CLAIM = "WHERE id = ? AND status = 'SENDING' AND claimed_by = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DeviceCommandRepository deviceCommandRepository;
+    private final VehicleRepository vehicleRepository;
+    private final DeviceRegistryService deviceRegistryService;
+    private final NotehubClient notehubClient;
+
+    @Value("${notecard.hub.name}")
+    private String hubName;
+
+    @Value("${notecard.commands.max-concurrency-per-hub:8}")
+    private int maxConcurrencyPerHub;
+
+    @Value("${notecard.commands.poll-interval-ms:250}")
+    private long pollIntervalMs;
+
+    @Value("${notecard.commands.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${notecard.commands.initial-backoff-ms:2000}")
+    private long initialBackoffMs;
+
+    @Value("${notecard.commands.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    @Value("${notecard.commands.insert-chunk-size:1000}")
+    private int insertChunkSize;
+
+    // Durée du bail d'envoi, au-delà de la durée maximale d'une requête Notehub : une commande en SENDING
+    // n'est reprise par une autre instance (ou après redémarrage) qu'une fois son bail expiré
+    @Value("${notecard.commands.lease-ms:60000}")
+    private long leaseMs;
+
+    // Identifie cette instance dans claimed_by : un résultat arrivé après expiration du bail est ignoré
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Semaphore> permitsByHub = new ConcurrentHashMap<>();
+    private ScheduledExecutorService poller;
+
+    public NotecardCommandDispatcher(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            DeviceCommandRepository deviceCommandRepository,
+            VehicleRepository vehicleRepository,
+            DeviceRegistryService deviceRegistryService,
+            NotehubClient notehubClient) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.deviceCommandRepository = deviceCommandRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.deviceRegistryService = deviceRegistryService;
+        this.notehubClient = notehubClient;
+    }
+
+    // Les commandes restées en SENDING après un arrêt sont reprises par dispatchHub à l'expiration
+    // de leur bail : celles qu'une autre instance est en train d'envoyer ne sont pas touchées
+    @PostConstruct
+    void start() {
+        permits(hubName);
+        deviceCommandRepository.findActiveHubs().forEach(this::permits);
+
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "notecard-command-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::dispatch, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        poller.shutdownNow();
+    }
+
+    // Commande d'un utilisateur pour un seul dispositif : comme pour enqueueFleet, il doit être enregistré
+    // sur l'un de ses véhicules (il ne pourrait d'ailleurs pas relire la commande)
+    public DeviceCommand enqueue(Long userId, String deviceUid, String command, String coalesceKey) {
+        Long vehicleId = deviceRegistryService.findVehicleId(deviceUid);
+        if (vehicleId == null || !vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        return enqueue(deviceUid, command, coalesceKey);
+    }
+
+    DeviceCommand enqueue(String deviceUid, String command, String coalesceKey) {
+        Long id = transactionTemplate.execute(status -> {
+            supersede(List.of(deviceUid), key(command, coalesceKey));
+            return jdbcTemplate.queryForObject(
+                "INSERT INTO device_commands (device_uid, hub, command, coalesce_key, status, attempts, " +
+                "next_attempt_at, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, 'PENDING', 0, now(), now(), now()) RETURNING id",
+                Long.class, deviceUid, hubName, command, key(command, coalesceKey));
+        });
+        permits(hubName);
+        return deviceCommandRepository.findById(id).orElseThrow();
+    }
+
+    // Diffusion à tous les dispositifs de la flotte de l'utilisateur, ou aux véhicules indiqués
+    public FanOutResult enqueueFleet(Long userId, Collection<Long> vehicleIds, String command, String coalesceKey) {
+        List<Long> owned = vehicleRepository.findIdsByUserId(userId);
+        List<Long> targets = owned;
+        if (vehicleIds != null && !vehicleIds.isEmpty()) {
+            if (!owned.containsAll(vehicleIds)) {
+                throw new UsernameNotFoundException("Vehicle not found");
+            }
+            targets = List.copyOf(vehicleIds);
+        }
+
+        Set<String> deviceUids = new LinkedHashSet<>();
+        for (Long vehicleId : targets) {
+            deviceUids.addAll(deviceRegistryService.findDeviceUids(vehicleId));
+        }
+
+        String batchId = UUID.randomUUID().toString();
+        String key = key(command, coalesceKey);
+        List<String> devices = new ArrayList<>(deviceUids);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < devices.size(); from += insertChunkSize) {
+                List<String> chunk = devices.subList(from, Math.min(devices.size(), from + insertChunkSize));
+                supersede(chunk, key);
+                List<Object[]> rows = new ArrayList<>(chunk.size());
+                for (String deviceUid : chunk) {
+                    rows.add(new Object[] { deviceUid, hubName, command, key, batchId });
+                }
+                jdbcTemplate.batchUpdate(
+                    "INSERT INTO device_commands (device_uid, hub, command, coalesce_key, batch_id, status, attempts, " +
+                    "next_attempt_at, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, 'PENDING', 0, now(), now(), now())", rows);
+            }
+        });
+        permits(hubName);
+        log.info("Commande \"{}\" mise en file pour {} dispositifs (lot {})", command, devices.size(), batchId);
+        return new FanOutResult(batchId, devices.size());
+    }
+
+    public DeviceCommand getCommand(Long id, Long userId) {
+        return deviceCommandRepository.findOwned(id, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Command not found"));
+    }
+
+    public BatchStatus getBatchStatus(String batchId, Long userId) {
+        Map<DeviceCommand.Status, Long> counts = new EnumMap<>(DeviceCommand.Status.class);
+        long total = 0;
+        for (StatusCount count : deviceCommandRepository.countOwnedByBatchId(batchId, userId)) {
+            counts.put(count.getStatus(), count.getCount());
+            total += count.getCount();
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Batch not found");
+        }
+        return new BatchStatus(batchId, total, counts);
+    }
+
+    // Les commandes en cours d'envoi ne sont pas remplacées : seules celles encore en file le sont
+    private void supersede(List<String> deviceUids, String key) {
+        jdbcTemplate.update(
+            "UPDATE device_commands SET status = 'SUPERSEDED', updated_at = now() " +
+            "WHERE status = 'PENDING' AND coalesce_key = ? AND device_uid = ANY (?)",
+            ps -> {
+                ps.setString(1, key);
+                ps.setArray(2, ps.getConnection().createArrayOf("varchar", deviceUids.toArray()));
+            });
+    }
+
+    // Par défaut, la clé de regroupement est le premier mot de la commande
+    private static String key(String command, String coalesceKey) {
+        if (coalesceKey != null && !coalesceKey.isBlank()) {
+            return coalesceKey;
+        }
+        String trimmed = command.trim();
+        int space = trimmed.indexOf(' ');
+        return space < 0 ? trimmed : trimmed.substring(0, space);
+    }
+
+    private Semaphore permits(String hub) {
+        return permitsByHub.computeIfAbsent(hub, h -> new Semaphore(maxConcurrencyPerHub));
+    }
+
+    private void dispatch() {
+        try {
+            for (Map.Entry<String, Semaphore> entry : permitsByHub.entrySet()) {
+                dispatchHub(entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'envoi des commandes Notecard", e);
+        }
+    }
+
+    private void dispatchHub(String hub, Semaphore permits) {
+        int available = permits.drainPermits();
+        if (available == 0) {
+            return;
+        }
+        List<Claimed> claimed;
+        try {
+            // Réservation atomique : SKIP LOCKED permet plusieurs instances sur la même file.
+            // Une commande en SENDING dont le bail a expiré (instance arrêtée ou bloquée) est reprise
+            Timestamp leaseExpiry = Timestamp.valueOf(LocalDateTime.now().minusNanos(leaseMs * 1_000_000));
+            claimed = jdbcTemplate.query(
+                "UPDATE device_commands SET status = 'SENDING', attempts = attempts + 1, " +
+                "claimed_by = ?, claimed_at = now(), updated_at = now() " +
+                "WHERE id IN (SELECT id FROM device_commands WHERE hub = ? AND (" +
+                "(status = 'PENDING' AND next_attempt_at <= now()) OR (status = 'SENDING' AND claimed_at < ?)) " +
+                "ORDER BY next_attempt_at, id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                "RETURNING id, device_uid, command, attempts",
+                (rs, rowNum) -> new Claimed(rs.getLong("id"), rs.getString("device_uid"),
+                    rs.getString("command"), rs.getInt("attempts")),
+                instanceId, hub, leaseExpiry, available);
+        } catch (RuntimeException e) {
+            permits.release(available);
+            throw e;
+        }
+        permits.release(available - claimed.size());
+
+        for (Claimed command : claimed) {
+            notehubClient.sendCommand(command.deviceUid(), command.command())
+                .whenComplete((result, error) -> {
+                    try {
+                        complete(command, error == null ? result : new SendResult(false, true, error.getMessage()));
+                    } finally {
+                        permits.release();
+                    }
+                });
+        }
+    }
+
+    // Le résultat n'est enregistré que si cette instance détient encore le bail
+    private void complete(Claimed command, SendResult result) {
+        try {
+            int updated;
+            if (result.sent()) {
+                updated = jdbcTemplate.update(
+                    "UPDATE device_commands SET status = 'SENT', last_error = NULL, sent_at = now(), updated_at = now(), " +
+                    "claimed_by = NULL, claimed_at = NULL " + OWNED_CLAIM, command.id(), instanceId);
+            } else if (result.retryable() && command.attempts() < maxAttempts) {
+                updated = jdbcTemplate.update(
+                    "UPDATE device_commands SET status = 'PENDING', last_error = ?, next_attempt_at = ?, updated_at = now(), " +
+                    "claimed_by = NULL, claimed_at = NULL " + OWNED_CLAIM, truncate(result.error()),
+                    Timestamp.valueOf(LocalDateTime.now().plusNanos(backoffMs(command.attempts()) * 1_000_000)),
+                    command.id(), instanceId);
+            } else {
+                updated = jdbcTemplate.update(
+                    "UPDATE device_commands SET status = 'FAILED', last_error = ?, updated_at = now(), " +
+                    "claimed_by = NULL, claimed_at = NULL " + OWNED_CLAIM,
+                    truncate(result.error()), command.id(), instanceId);
+                log.warn("Échec définitif de la commande {} vers {} après {} tentatives : {}",
+                    command.id(), command.deviceUid(), command.attempts(), result.error());
+            }
+            if (updated == 0) {
+                log.warn("Bail de la commande {} expiré avant la fin de l'envoi, résultat ignoré", command.id());
+            }
+        } catch (RuntimeException e) {
+            // La commande reste en SENDING et sera reprise à l'expiration de son bail
+            log.error("Impossible d'enregistrer le résultat de la commande {}", command.id(), e);
+        }
+    }
+
+    // Délai exponentiel avec gigue pour étaler les reprises après une panne du hub
+    private long backoffMs(int attempts) {
+        long delay = initialBackoffMs << Math.min(attempts - 1, 20);
+        delay = Math.min(maxBackoffMs, delay);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private record Claimed(long id, String deviceUid, String command, int attempts) {}
+
+    public record FanOutResult(String batchId, int deviceCount) {}
+
+    public record BatchStatus(String batchId, long total, Map<DeviceCommand.Status, Long> counts) {}
+}
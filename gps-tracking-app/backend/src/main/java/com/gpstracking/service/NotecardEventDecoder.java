@@ -0,0 +1,283 @@
+package com.gpstracking.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpstracking.model.TrackingData;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lecture en flux des événements Notehub (un objet ou un tableau d'objets) vers des enregistrements typés,
+// sans arbre intermédiaire. Un événement invalide est rejeté avec sa raison, sans interrompre le lot.
+@Component
+public class NotecardEventDecoder {
+    // Une horloge de dispositif non synchronisée renvoie des dates proches de l'époque Unix ou dans le futur
+    private static final long MIN_DEVICE_EPOCH_SECONDS = 1_546_300_800L; // 2019-01-01
+    private static final Duration MAX_CLOCK_SKEW = Duration.ofMinutes(5);
+    // Taille de la colonne tracking_data.event_id
+    private static final int MAX_EVENT_ID_LENGTH = 64;
+    // TimeZone.getDefault() copie le fuseau à chaque appel
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final JsonFactory jsonFactory;
+
+    public NotecardEventDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public DecodedBatch decode(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return decode(parser);
+        }
+    }
+
+    public DecodedBatch decode(byte[] body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            return decode(parser);
+        }
+    }
+
+    private DecodedBatch decode(JsonParser parser) throws IOException {
+        List<NotecardEvent> events = new ArrayList<>();
+        List<RejectedEvent> rejected = new ArrayList<>();
+        EventReader reader = new EventReader();
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            reader.read(parser, 0, events, rejected);
+        } else if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "Unexpected end of event array");
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    reader.read(parser, index, events, rejected);
+                } else {
+                    parser.skipChildren();
+                    rejected.add(new RejectedEvent(index, null, "event is not an object"));
+                }
+                index++;
+            }
+        } else if (token != null) {
+            throw new JsonParseException(parser, "Expected an event object or an array of events");
+        }
+        return new DecodedBatch(events, rejected);
+    }
+
+    // when : horloge du dispositif (secondes) ; received : réception par Notehub, à défaut l'heure du serveur
+    static LocalDateTime eventTime(Double when, Double received) {
+        long now = System.currentTimeMillis();
+        if (when != null) {
+            long deviceMillis = Math.round(when * 1000);
+            if (deviceMillis >= MIN_DEVICE_EPOCH_SECONDS * 1000 && deviceMillis <= now + MAX_CLOCK_SKEW.toMillis()) {
+                return toLocalDateTime(deviceMillis);
+            }
+        }
+        if (received != null) {
+            return toLocalDateTime(Math.round(received * 1000));
+        }
+        // Un renvoi du même événement recevra une autre heure : la contrainte unique ne l'écartera pas
+        return toLocalDateTime(now);
+    }
+
+    // Même fuseau que LocalDateTime.now(), utilisé pour les autres sources de points
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+
+    // Réutilisé d'un événement à l'autre : seul l'enregistrement final est alloué
+    private static final class EventReader {
+        private String eventId;
+        private String device;
+        private String file;
+        private Double when;
+        private Double received;
+        private Double whereLatitude;
+        private Double whereLongitude;
+        private Double whereWhen;
+        private Double latitude;
+        private Double longitude;
+        private Double speed;
+        private Double altitude;
+        private Double battery;
+        private String signal;
+        private Double temperature;
+        private String error;
+
+        void read(JsonParser parser, int index, List<NotecardEvent> events, List<RejectedEvent> rejected)
+                throws IOException {
+            reset();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "event" -> eventId = text(parser, name);
+                    case "device" -> device = text(parser, name);
+                    case "file" -> file = text(parser, name);
+                    case "when" -> when = number(parser, name);
+                    case "received" -> received = number(parser, name);
+                    case "where_lat" -> whereLatitude = number(parser, name);
+                    case "where_lon" -> whereLongitude = number(parser, name);
+                    case "where_when" -> whereWhen = number(parser, name);
+                    case "body" -> {
+                        if (value == JsonToken.START_OBJECT) {
+                            readBody(parser);
+                        } else if (value != JsonToken.VALUE_NULL) {
+                            parser.skipChildren();
+                            invalid("body is not an object");
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+
+            // Position applicative du corps, sinon dernière position connue de la Notecard (where_*)
+            boolean bodyLocated = latitude != null && longitude != null;
+            Double lat = bodyLocated ? latitude : whereLatitude;
+            Double lon = bodyLocated ? longitude : whereLongitude;
+            if (error == null && (device == null || device.isBlank())) {
+                error = "missing device";
+            }
+            if (error == null && (lat == null || lon == null)) {
+                error = "missing location";
+            }
+            if (error == null && (Math.abs(lat) > 90 || Math.abs(lon) > 180)) {
+                error = "location out of range";
+            }
+            if (error == null && eventId != null && eventId.length() > MAX_EVENT_ID_LENGTH) {
+                error = "event id too long";
+            }
+            if (error != null) {
+                rejected.add(new RejectedEvent(index, eventId, error));
+                return;
+            }
+            // Une position where_* est datée de son relevé, pas de l'émission de l'événement
+            Double deviceTime = !bodyLocated && whereWhen != null ? whereWhen : when;
+            events.add(new NotecardEvent(index, eventId, device, file, eventTime(deviceTime, received),
+                lat, lon, speed, altitude, battery, signal, temperature));
+        }
+
+        private void readBody(JsonParser parser) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                switch (name) {
+                    case "lat" -> latitude = number(parser, name);
+                    case "lon" -> longitude = number(parser, name);
+                    case "speed" -> speed = number(parser, name);
+                    case "alt" -> altitude = number(parser, name);
+                    case "bat" -> battery = number(parser, name);
+                    case "sig" -> signal = text(parser, name);
+                    case "temp" -> temperature = number(parser, name);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        // Entier, décimal ou chaîne numérique ; null si absent
+        private Double number(JsonParser parser, String name) throws IOException {
+            switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT:
+                    return parser.getDoubleValue();
+                case VALUE_NULL:
+                    return null;
+                case VALUE_STRING:
+                    try {
+                        double value = Double.parseDouble(parser.getText().trim());
+                        if (Double.isFinite(value)) {
+                            return value;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Rapporté ci-dessous
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+            invalid("invalid number for field " + name);
+            return null;
+        }
+
+        // Chaîne ou nombre (ex: sig) conservé sous forme textuelle
+        private String text(JsonParser parser, String name) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_STRING || token.isNumeric()) {
+                return parser.getText();
+            }
+            if (token != JsonToken.VALUE_NULL) {
+                parser.skipChildren();
+                invalid("invalid text for field " + name);
+            }
+            return null;
+        }
+
+        private void invalid(String reason) {
+            if (error == null) {
+                error = reason;
+            }
+        }
+
+        private void reset() {
+            eventId = null;
+            device = null;
+            file = null;
+            when = null;
+            received = null;
+            whereLatitude = null;
+            whereLongitude = null;
+            whereWhen = null;
+            latitude = null;
+            longitude = null;
+            speed = null;
+            altitude = null;
+            battery = null;
+            signal = null;
+            temperature = null;
+            error = null;
+        }
+    }
+
+    // Événement validé, position et horodatage déjà résolus
+    public record NotecardEvent(
+        int index,
+        String eventId,
+        String device,
+        String file,
+        LocalDateTime timestamp,
+        double latitude,
+        double longitude,
+        Double speed,
+        Double altitude,
+        Double batteryLevel,
+        String signalStrength,
+        Double temperature
+    ) {
+        public TrackingData toTrackingData() {
+            TrackingData trackingData = new TrackingData();
+            trackingData.setLatitude(latitude);
+            trackingData.setLongitude(longitude);
+            trackingData.setSpeed(speed);
+            trackingData.setAltitude(altitude);
+            trackingData.setBatteryLevel(batteryLevel);
+            trackingData.setSignalStrength(signalStrength);
+            trackingData.setTemperature(temperature);
+            trackingData.setTimestamp(timestamp);
+            trackingData.setEventId(eventId);
+            return trackingData;
+        }
+    }
+
+    public record RejectedEvent(int index, String eventId, String reason) {}
+
+    public record DecodedBatch(List<NotecardEvent> events, List<RejectedEvent> rejected) {}
+}
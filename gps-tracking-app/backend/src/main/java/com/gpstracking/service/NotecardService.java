@@ -1,103 +1,167 @@
 package com.gpstracking.service;
 
-import com.gpstracking.model.TrackingData;
+import com.gpstracking.model.DeviceCommand;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import com.gpstracking.service.NotecardEventDecoder.DecodedBatch;
+import com.gpstracking.service.NotecardEventDecoder.NotecardEvent;
+import com.gpstracking.service.NotecardEventDecoder.RejectedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class NotecardService {
-    
-    @Value("${notecard.api.url}")
-    private String notecardApiUrl;
-    
-    @Value("${notecard.product.uid}")
-    private String productUid;
+    private static final Logger log = LoggerFactory.getLogger(NotecardService.class);
     
     @Value("${notecard.hub.name}")
     private String hubName;
     
-    private final RestTemplate restTemplate;
     private final VehicleService vehicleService;
-    
-    // Cache pour stocker les dernières données reçues par véhicule
-    private final Map<String, TrackingData> lastDataCache = new ConcurrentHashMap<>();
+    private final DeviceRegistryService deviceRegistryService;
+    private final LatestPositionStore latestPositionStore;
+    private final NotecardCommandDispatcher commandDispatcher;
+    private final DeviceIngestCounters deviceIngestCounters;
+    private final RecentEventWindow recentEventWindow;
+    private final NotecardEventDecoder notecardEventDecoder;
 
-    public NotecardService(VehicleService vehicleService) {
-        this.restTemplate = new RestTemplate();
+    // Un timer par issue, créé une fois : aucun tag construit par webhook
+    private final Timer ingestedTimer;
+    private final Timer unknownDeviceTimer;
+    private final Timer invalidTimer;
+    private final Timer rejectedTimer;
+    private final Timer duplicateTimer;
+
+    public NotecardService(
+            VehicleService vehicleService,
+            DeviceRegistryService deviceRegistryService,
+            LatestPositionStore latestPositionStore,
+            NotecardCommandDispatcher commandDispatcher,
+            DeviceIngestCounters deviceIngestCounters,
+            RecentEventWindow recentEventWindow,
+            NotecardEventDecoder notecardEventDecoder,
+            MeterRegistry meterRegistry) {
         this.vehicleService = vehicleService;
+        this.deviceRegistryService = deviceRegistryService;
+        this.latestPositionStore = latestPositionStore;
+        this.commandDispatcher = commandDispatcher;
+        this.deviceIngestCounters = deviceIngestCounters;
+        this.recentEventWindow = recentEventWindow;
+        this.notecardEventDecoder = notecardEventDecoder;
+        this.ingestedTimer = webhookTimer(meterRegistry, "ingested");
+        this.unknownDeviceTimer = webhookTimer(meterRegistry, "unknown_device");
+        this.invalidTimer = webhookTimer(meterRegistry, "invalid");
+        this.rejectedTimer = webhookTimer(meterRegistry, "rejected");
+        this.duplicateTimer = webhookTimer(meterRegistry, "duplicate");
     }
 
-    public void handleNotecardWebhook(Map<String, Object> payload) {
-        try {
-            // Extraction des données du payload Notecard
-            String deviceId = (String) payload.get("device");
-            Map<String, Object> body = (Map<String, Object>) payload.get("body");
-            
-            // Conversion des données en objet TrackingData
-            TrackingData trackingData = new TrackingData();
-            trackingData.setLatitude((Double) body.get("lat"));
-            trackingData.setLongitude((Double) body.get("lon"));
-            trackingData.setSpeed((Double) body.get("speed"));
-            trackingData.setAltitude((Double) body.get("alt"));
-            trackingData.setBatteryLevel((Double) body.get("bat"));
-            trackingData.setSignalStrength((String) body.get("sig"));
-            trackingData.setTemperature((Double) body.get("temp"));
-
-            // Mise en cache des données
-            lastDataCache.put(deviceId, trackingData);
+    private static Timer webhookTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("notecard.webhook")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-            // Envoi des données au service de véhicule
-            // Note: Vous devrez implémenter une logique pour mapper deviceId vers vehicleId
-            Long vehicleId = mapDeviceIdToVehicleId(deviceId);
-            if (vehicleId != null) {
-                vehicleService.addTrackingData(vehicleId, trackingData);
+    // Traite un webhook (un événement ou un lot) ; les événements refusés sont rapportés, pas levés.
+    // La durée de la requête est répartie entre ses événements dans notecard.webhook{outcome}.
+    public WebhookResult handleWebhook(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        DecodedBatch batch = notecardEventDecoder.decode(body);
+        List<Timer> outcomes = new ArrayList<>(batch.events().size() + batch.rejected().size());
+        List<RejectedEvent> rejected = new ArrayList<>(batch.rejected());
+        for (int i = 0; i < batch.rejected().size(); i++) {
+            outcomes.add(invalidTimer);
+        }
+        int accepted = 0;
+        int duplicates = 0;
+        try {
+            for (NotecardEvent event : batch.events()) {
+                Timer outcome = handleEvent(event);
+                outcomes.add(outcome);
+                if (outcome == ingestedTimer) {
+                    accepted++;
+                } else if (outcome == duplicateTimer) {
+                    duplicates++;
+                } else {
+                    rejected.add(new RejectedEvent(event.index(), event.eventId(), "unknown device"));
+                }
             }
-
-        } catch (Exception e) {
-            // Log l'erreur et continue
-            System.err.println("Erreur lors du traitement des données Notecard: " + e.getMessage());
+        } catch (TrackingIngestionService.IngestionRejectedException e) {
+            // File d'ingestion saturée : Notehub renverra le lot, les événements déjà acceptés seront écartés comme doublons
+            outcomes.add(rejectedTimer);
+            throw e;
+        } finally {
+            record(outcomes, System.nanoTime() - start);
+        }
+        // Le volume est suivi par notecard.webhook{outcome} ; seuls les événements mal formés sont journalisés
+        if (!batch.rejected().isEmpty()) {
+            log.warn("{} événement(s) Notecard invalide(s) ignoré(s), premier motif: {}",
+                batch.rejected().size(), batch.rejected().get(0).reason());
         }
+        return new WebhookResult(batch.events().size() + batch.rejected().size(), accepted, duplicates, rejected);
     }
 
-    public void sendCommandToDevice(String deviceId, String command) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        Map<String, Object> requestBody = Map.of(
-            "req", "note.add",
-            "product", productUid,
-            "device", deviceId,
-            "body", Map.of(
-                "command", command
-            )
-        );
-
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
-        
+    private Timer handleEvent(NotecardEvent event) {
+        // Le véhicule est résolu en mémoire
+        Long vehicleId = mapDeviceIdToVehicleId(event.device());
+        if (vehicleId == null) {
+            return unknownDeviceTimer;
+        }
+        if (event.eventId() != null && !recentEventWindow.firstSeen(event.device(), event.eventId())) {
+            // Renvoi d'un événement déjà accepté
+            return duplicateTimer;
+        }
         try {
-            restTemplate.postForObject(notecardApiUrl, request, String.class);
-        } catch (Exception e) {
-            System.err.println("Erreur lors de l'envoi de la commande au dispositif: " + e.getMessage());
+            vehicleService.addResolvedTrackingData(vehicleId, event.toTrackingData());
+        } catch (TrackingIngestionService.IngestionRejectedException e) {
+            // Le renvoi de cet événement ne doit pas être pris pour un doublon
+            if (event.eventId() != null) {
+                recentEventWindow.forget(event.device(), event.eventId());
+            }
+            throw e;
+        }
+        deviceIngestCounters.increment(event.device());
+        return ingestedTimer;
+    }
+
+    private static void record(List<Timer> outcomes, long elapsedNanos) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        long share = elapsedNanos / outcomes.size();
+        for (Timer outcome : outcomes) {
+            outcome.record(share, TimeUnit.NANOSECONDS);
         }
     }
 
-    // Méthode pour récupérer les dernières données d'un véhicule depuis le cache
-    public TrackingData getLastKnownData(String deviceId) {
-        return lastDataCache.get(deviceId);
+    // La commande est mise en file persistante ; l'envoi vers Notehub est asynchrone
+    public DeviceCommand sendCommandToDevice(Long userId, String deviceId, String command, String coalesceKey) {
+        return commandDispatcher.enqueue(userId, deviceId, command, coalesceKey);
+    }
+
+    // Méthode pour récupérer les dernières données du véhicule associé au dispositif
+    public LatestPosition getLastKnownData(Long userId, String deviceId) {
+        Long vehicleId = mapDeviceIdToVehicleId(deviceId);
+        if (vehicleId == null) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        vehicleService.getVehicle(vehicleId, userId);
+        return latestPositionStore.get(vehicleId);
     }
 
-    // Cette méthode devrait être implémentée pour mapper les IDs des dispositifs Notecard
-    // vers les IDs de véhicules dans votre système
+    // Mappe l'ID du dispositif Notecard vers l'ID du véhicule via l'index du registre
     private Long mapDeviceIdToVehicleId(String deviceId) {
-        // Implémentez votre logique de mapping ici
-        // Par exemple, vous pourriez avoir une table en base de données qui fait le lien
-        return null; // À implémenter
+        return deviceRegistryService.findVehicleId(deviceId);
     }
+
+    public record WebhookResult(int received, int accepted, int duplicates, List<RejectedEvent> rejected) {}
 }
@@ -0,0 +1,106 @@
+package com.gpstracking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Client HTTP non bloquant vers l'API Notehub : connexions réutilisées, délais bornés
+@Component
+public class NotehubClient {
+    private final ObjectMapper objectMapper;
+
+    @Value("${notecard.api.url}")
+    private String notecardApiUrl;
+
+    @Value("${notecard.product.uid}")
+    private String productUid;
+
+    @Value("${notecard.commands.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${notecard.commands.request-timeout-ms:15000}")
+    private long requestTimeoutMs;
+
+    private HttpClient httpClient;
+
+    public NotehubClient(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+
+    public CompletableFuture<SendResult> sendCommand(String deviceUid, String command) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of(
+                "req", "note.add",
+                "product", productUid,
+                "device", deviceUid,
+                "body", Map.of("command", command)
+            ));
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(SendResult.failed(e.getMessage(), false));
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(notecardApiUrl))
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::toResult)
+                // Erreurs réseau et délais dépassés : nouvel essai
+                .exceptionally(e -> SendResult.failed(describe(e), true));
+    }
+
+    private SendResult toResult(HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 429 || status >= 500) {
+            return SendResult.failed("HTTP " + status, true);
+        }
+        if (status >= 400) {
+            return SendResult.failed("HTTP " + status + ": " + response.body(), false);
+        }
+        // Notehub signale les erreurs applicatives dans le corps, avec un statut 200
+        try {
+            JsonNode json = objectMapper.readTree(response.body());
+            if (json != null && json.hasNonNull("err")) {
+                return SendResult.failed(json.get("err").asText(), false);
+            }
+        } catch (IOException e) {
+            // Corps non JSON : la requête HTTP a abouti
+        }
+        return SendResult.SENT;
+    }
+
+    private static String describe(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    public record SendResult(boolean sent, boolean retryable, String error) {
+        static final SendResult SENT = new SendResult(true, false, null);
+
+        static SendResult failed(String error, boolean retryable) {
+            return new SendResult(false, retryable, error);
+        }
+    }
+}
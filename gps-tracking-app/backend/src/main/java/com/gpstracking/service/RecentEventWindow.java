@@ -0,0 +1,72 @@
+package com.gpstracking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Derniers identifiants d'événement vus par dispositif, pour écarter les renvois Notehub sans requête.
+// Empreintes 64 bits dans un anneau de taille fixe : mémoire constante par dispositif.
+// La contrainte unique de tracking_data reste le filet de sécurité (redémarrage, événement sorti de la fenêtre).
+@Component
+public class RecentEventWindow {
+    private final int windowSize;
+    // Seuls les dispositifs enregistrés sont suivis : la taille est bornée par le registre
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    public RecentEventWindow(@Value("${notecard.dedup.window-size:64}") int windowSize) {
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    // true si l'événement n'a pas encore été vu ; il est alors mémorisé
+    public boolean firstSeen(String deviceUid, String eventId) {
+        return rings.computeIfAbsent(deviceUid, uid -> new Ring(windowSize)).add(fingerprint(eventId));
+    }
+
+    // Oublie un événement dont l'écriture a été refusée : son renvoi doit être accepté
+    public void forget(String deviceUid, String eventId) {
+        Ring ring = rings.get(deviceUid);
+        if (ring != null) {
+            ring.remove(fingerprint(eventId));
+        }
+    }
+
+    // FNV-1a 64 bits ; 0 est réservé aux cases vides
+    static long fingerprint(String eventId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < eventId.length(); i++) {
+            hash ^= eventId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static final class Ring {
+        private final long[] fingerprints;
+        private int next;
+
+        Ring(int size) {
+            this.fingerprints = new long[size];
+        }
+
+        synchronized boolean add(long fingerprint) {
+            for (long seen : fingerprints) {
+                if (seen == fingerprint) {
+                    return false;
+                }
+            }
+            fingerprints[next] = fingerprint;
+            next = (next + 1) % fingerprints.length;
+            return true;
+        }
+
+        synchronized void remove(long fingerprint) {
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] == fingerprint) {
+                    fingerprints[i] = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackPoint;
+
+import java.io.ByteArrayOutputStream;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Function;
+
+// Encodage binaire compact d'une trajectoire, par colonnes :
+// en-tête "GT" + version, nombre de points (varint), puis les colonnes id et timestamp (ms)
+// et, pour latitude, longitude, vitesse, altitude, batterie et température, un bitmap de présence
+// suivi des valeurs en virgule fixe. Chaque valeur est un delta avec la précédente, en varint zigzag.
+public final class TrackPointCodec {
+    public static final String MEDIA_TYPE = "application/vnd.gpstracking.track";
+
+    private static final int VERSION = 1;
+    private static final double COORDINATE_SCALE = 1e6;
+    private static final double MEASURE_SCALE = 10;
+
+    private TrackPointCodec() {
+    }
+
+    public static byte[] encode(List<TrackPoint> points) {
+        // Environ 12 octets par point en roulage régulier
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + points.size() * 12);
+        out.write('G');
+        out.write('T');
+        out.write(VERSION);
+        writeVarint(out, points.size());
+
+        long previous = 0;
+        for (TrackPoint point : points) {
+            writeSigned(out, point.id() - previous);
+            previous = point.id();
+        }
+        previous = 0;
+        for (TrackPoint point : points) {
+            long millis = point.timestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            writeSigned(out, millis - previous);
+            previous = millis;
+        }
+
+        writeColumn(out, points, TrackPoint::latitude, COORDINATE_SCALE);
+        writeColumn(out, points, TrackPoint::longitude, COORDINATE_SCALE);
+        writeColumn(out, points, TrackPoint::speed, MEASURE_SCALE);
+        writeColumn(out, points, TrackPoint::altitude, MEASURE_SCALE);
+        writeColumn(out, points, TrackPoint::batteryLevel, MEASURE_SCALE);
+        writeColumn(out, points, TrackPoint::temperature, MEASURE_SCALE);
+        return out.toByteArray();
+    }
+
+    private static void writeColumn(ByteArrayOutputStream out, List<TrackPoint> points,
+                                    Function<TrackPoint, Double> column, double scale) {
+        byte[] present = new byte[(points.size() + 7) / 8];
+        for (int i = 0; i < points.size(); i++) {
+            if (column.apply(points.get(i)) != null) {
+                present[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out.writeBytes(present);
+
+        long previous = 0;
+        for (TrackPoint point : points) {
+            Double value = column.apply(point);
+            if (value != null) {
+                long fixed = Math.round(value * scale);
+                writeSigned(out, fixed - previous);
+                previous = fixed;
+            }
+        }
+    }
+
+    private static void writeSigned(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+}
@@ -0,0 +1,492 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Segment froid d'un véhicule pour une journée, en lecture seule une fois écrit.
+// En-tête "GS" + version, nombre de blocs et de points, puis un index de blocs à taille fixe
+// (premier et dernier horodatage en µs, nombre de points, position, tailles compressée et brute)
+// et les blocs eux-mêmes. Chaque bloc est compressé (deflate) et rangé par colonnes :
+// id et horodatage en delta varint zigzag, mesures en XOR avec la valeur précédente (sans perte),
+// chaînes préfixées par leur longueur. Le fichier est projeté en mémoire et seuls les blocs
+// qui chevauchent la plage demandée sont décompressés.
+final class TrackSegmentFile {
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 + 1 + 4 + 4;
+    private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4 + 8 + 4 + 4;
+
+    private final ByteBuffer buffer;
+    private final int blockCount;
+    private final int pointCount;
+
+    private TrackSegmentFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.get(0) != 'G' || buffer.get(1) != 'S' || buffer.get(2) != VERSION) {
+            throw new IOException("Not a track segment file");
+        }
+        this.blockCount = buffer.getInt(3);
+        this.pointCount = buffer.getInt(7);
+    }
+
+    // La projection est libérée par le ramasse-miettes ; le canal peut être fermé immédiatement
+    static TrackSegmentFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new TrackSegmentFile(mapped);
+        }
+    }
+
+    int pointCount() {
+        return pointCount;
+    }
+
+    // Points de la plage [from, to], par ordre croissant d'horodatage puis d'id
+    List<TrackingData> read(LocalDateTime from, LocalDateTime to) throws IOException {
+        long fromMicros = from == null ? Long.MIN_VALUE : toMicros(from);
+        long toMicros = to == null ? Long.MAX_VALUE : toMicros(to);
+        List<TrackingData> points = new ArrayList<>();
+        // Les blocs sont triés : on saute directement au premier bloc qui peut chevaucher la plage
+        for (int block = firstBlockEndingAfter(fromMicros); block < blockCount; block++) {
+            int entry = HEADER_SIZE + block * INDEX_ENTRY_SIZE;
+            if (buffer.getLong(entry) > toMicros) {
+                break;
+            }
+            addInRange(decodeBlock(entry), fromMicros, toMicros, points);
+        }
+        return points;
+    }
+
+    // Même ordre que read, un seul bloc décompressé à la fois
+    Iterator<TrackingData> iterator() {
+        return new Iterator<>() {
+            private int block;
+            private Iterator<TrackingData> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && block < blockCount) {
+                    try {
+                        current = decodeBlock(HEADER_SIZE + block++ * INDEX_ENTRY_SIZE).iterator();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public TrackingData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    // Points de la plage du plus récent au plus ancien, après en avoir sauté skip : les blocs
+    // entièrement couverts sont sautés d'après leur nombre de points, sans décompression
+    List<TrackingData> readNewestFirst(LocalDateTime from, LocalDateTime to, long skip, int limit) throws IOException {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        List<TrackingData> points = new ArrayList<>(Math.min(limit, 4096));
+        long toSkip = skip;
+        for (int block = lastBlockStartingBefore(toMicros); block >= 0 && points.size() < limit; block--) {
+            int entry = HEADER_SIZE + block * INDEX_ENTRY_SIZE;
+            long first = buffer.getLong(entry);
+            long last = buffer.getLong(entry + 8);
+            if (last < fromMicros) {
+                break;
+            }
+            int count = buffer.getInt(entry + 16);
+            if (first >= fromMicros && last <= toMicros && toSkip >= count) {
+                toSkip -= count;
+                continue;
+            }
+            List<TrackingData> inRange = new ArrayList<>(count);
+            addInRange(decodeBlock(entry), fromMicros, toMicros, inRange);
+            for (int i = inRange.size() - 1; i >= 0 && points.size() < limit; i--) {
+                if (toSkip > 0) {
+                    toSkip--;
+                } else {
+                    points.add(inRange.get(i));
+                }
+            }
+        }
+        return points;
+    }
+
+    private static void addInRange(List<TrackingData> block, long fromMicros, long toMicros, List<TrackingData> points) {
+        for (TrackingData point : block) {
+            long micros = toMicros(point.getTimestamp());
+            if (micros >= fromMicros && micros <= toMicros) {
+                points.add(point);
+            }
+        }
+    }
+
+    // Nombre de points de la plage ; seuls les blocs partiellement couverts sont décompressés
+    long count(LocalDateTime from, LocalDateTime to) throws IOException {
+        long fromMicros = toMicros(from);
+        long toMicros = toMicros(to);
+        long count = 0;
+        for (int block = firstBlockEndingAfter(fromMicros); block < blockCount; block++) {
+            int entry = HEADER_SIZE + block * INDEX_ENTRY_SIZE;
+            long first = buffer.getLong(entry);
+            long last = buffer.getLong(entry + 8);
+            if (first > toMicros) {
+                break;
+            }
+            if (first >= fromMicros && last <= toMicros) {
+                count += buffer.getInt(entry + 16);
+            } else {
+                for (TrackingData point : decodeBlock(entry)) {
+                    long micros = toMicros(point.getTimestamp());
+                    if (micros >= fromMicros && micros <= toMicros) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int firstBlockEndingAfter(long micros) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(HEADER_SIZE + mid * INDEX_ENTRY_SIZE + 8) < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int lastBlockStartingBefore(long micros) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getLong(HEADER_SIZE + mid * INDEX_ENTRY_SIZE) <= micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private List<TrackingData> decodeBlock(int entry) throws IOException {
+        int count = buffer.getInt(entry + 16);
+        long offset = buffer.getLong(entry + 20);
+        int compressedLength = buffer.getInt(entry + 28);
+        int rawLength = buffer.getInt(entry + 32);
+
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice((int) offset, compressedLength));
+            if (inflater.inflate(raw) != rawLength) {
+                throw new IOException("Truncated track segment block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted track segment block", e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        List<TrackingData> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(new TrackingData());
+        }
+        long previous = 0;
+        for (TrackingData point : points) {
+            previous += readSigned(in);
+            point.setId(previous);
+        }
+        previous = 0;
+        for (TrackingData point : points) {
+            previous += readSigned(in);
+            point.setTimestamp(fromMicros(previous));
+        }
+        readDoubles(in, points, TrackingData::setLatitude);
+        readDoubles(in, points, TrackingData::setLongitude);
+        readDoubles(in, points, TrackingData::setSpeed);
+        readDoubles(in, points, TrackingData::setAltitude);
+        readDoubles(in, points, TrackingData::setBatteryLevel);
+        readDoubles(in, points, TrackingData::setTemperature);
+        readStrings(in, points, TrackingData::setSignalStrength);
+        readStrings(in, points, TrackingData::setEventId);
+        return points;
+    }
+
+    static void write(Path path, List<TrackingData> points, int blockSize) throws IOException {
+        try (Writer writer = new Writer(path, blockSize)) {
+            for (TrackingData point : points) {
+                writer.add(point);
+            }
+            writer.finish();
+        }
+    }
+
+    // Écriture en flux, points ajoutés par ordre croissant : chaque bloc est compressé dès qu'il est plein
+    // dans un fichier de données temporaire. L'index n'étant connu qu'à la fin, le segment est assemblé
+    // (en-tête, index, blocs) dans un second fichier temporaire, synchronisé puis renommé atomiquement :
+    // un segment lu est toujours complet
+    static final class Writer implements Closeable {
+        private final Path path;
+        private final int blockSize;
+        private final Path blocksFile;
+        private final FileChannel blocks;
+        private final List<TrackingData> block;
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private long blocksLength;
+        private int blockCount;
+        private int pointCount;
+
+        Writer(Path path, int blockSize) throws IOException {
+            this.path = path;
+            this.blockSize = blockSize;
+            this.block = new ArrayList<>(blockSize);
+            this.blocksFile = path.resolveSibling(path.getFileName() + ".blocks.tmp");
+            this.blocks = FileChannel.open(blocksFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        void add(TrackingData point) throws IOException {
+            block.add(point);
+            if (block.size() == blockSize) {
+                flushBlock();
+            }
+        }
+
+        int pointCount() {
+            return pointCount + block.size();
+        }
+
+        void finish() throws IOException {
+            flushBlock();
+            long indexLength = (long) blockCount * INDEX_ENTRY_SIZE;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put((byte) 'G').put((byte) 'S').put((byte) VERSION).putInt(blockCount).putInt(pointCount);
+            // Les positions de l'index sont relatives au début des blocs jusqu'ici
+            ByteBuffer entries = ByteBuffer.wrap(index.toByteArray());
+            for (int entry = 0; entry < blockCount; entry++) {
+                int position = entry * INDEX_ENTRY_SIZE + 20;
+                entries.putLong(position, entries.getLong(position) + HEADER_SIZE + indexLength);
+            }
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(header.flip());
+                channel.write(entries);
+                long copied = 0;
+                while (copied < blocksLength) {
+                    copied += blocks.transferTo(copied, blocksLength - copied, channel);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.isEmpty()) {
+                return;
+            }
+            byte[] raw = encodeBlock(block);
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            byte[] bytes = compressed.toByteArray();
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            entry.putLong(toMicros(block.get(0).getTimestamp()));
+            entry.putLong(toMicros(block.get(block.size() - 1).getTimestamp()));
+            entry.putInt(block.size());
+            entry.putLong(blocksLength);
+            entry.putInt(bytes.length);
+            entry.putInt(raw.length);
+            index.writeBytes(entry.array());
+            ByteBuffer data = ByteBuffer.wrap(bytes);
+            while (data.hasRemaining()) {
+                blocks.write(data);
+            }
+            blocksLength += bytes.length;
+            blockCount++;
+            pointCount += block.size();
+            block.clear();
+        }
+
+        // Sans finish(), le segment existant reste intact
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            blocks.close();
+            Files.deleteIfExists(blocksFile);
+        }
+    }
+
+    private static byte[] encodeBlock(List<TrackingData> points) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(points.size() * 48);
+        long previous = 0;
+        for (TrackingData point : points) {
+            writeSigned(out, point.getId() - previous);
+            previous = point.getId();
+        }
+        previous = 0;
+        for (TrackingData point : points) {
+            long micros = toMicros(point.getTimestamp());
+            writeSigned(out, micros - previous);
+            previous = micros;
+        }
+        writeDoubles(out, points, TrackingData::getLatitude);
+        writeDoubles(out, points, TrackingData::getLongitude);
+        writeDoubles(out, points, TrackingData::getSpeed);
+        writeDoubles(out, points, TrackingData::getAltitude);
+        writeDoubles(out, points, TrackingData::getBatteryLevel);
+        writeDoubles(out, points, TrackingData::getTemperature);
+        writeStrings(out, points, TrackingData::getSignalStrength);
+        writeStrings(out, points, TrackingData::getEventId);
+        return out.toByteArray();
+    }
+
+    // Bitmap de présence puis XOR des bits avec la valeur précédente : les valeurs proches partagent
+    // signe, exposant et début de mantisse, le varint est donc court
+    private static void writeDoubles(ByteArrayOutputStream out, List<TrackingData> points,
+                                     Function<TrackingData, Double> column) {
+        byte[] present = new byte[(points.size() + 7) / 8];
+        for (int i = 0; i < points.size(); i++) {
+            if (column.apply(points.get(i)) != null) {
+                present[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out.writeBytes(present);
+        long previous = 0;
+        for (TrackingData point : points) {
+            Double value = column.apply(point);
+            if (value != null) {
+                long bits = Double.doubleToRawLongBits(value);
+                writeVarint(out, bits ^ previous);
+                previous = bits;
+            }
+        }
+    }
+
+    private static void readDoubles(ByteBuffer in, List<TrackingData> points, DoubleSetter setter) {
+        byte[] present = new byte[(points.size() + 7) / 8];
+        in.get(present);
+        long previous = 0;
+        for (int i = 0; i < points.size(); i++) {
+            if ((present[i >> 3] & (1 << (i & 7))) != 0) {
+                previous ^= readVarint(in);
+                setter.set(points.get(i), Double.longBitsToDouble(previous));
+            }
+        }
+    }
+
+    // Longueur + 1 en varint (0 pour null) puis octets UTF-8
+    private static void writeStrings(ByteArrayOutputStream out, List<TrackingData> points,
+                                     Function<TrackingData, String> column) {
+        for (TrackingData point : points) {
+            String value = column.apply(point);
+            if (value == null) {
+                writeVarint(out, 0);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length + 1L);
+                out.writeBytes(bytes);
+            }
+        }
+    }
+
+    private static void readStrings(ByteBuffer in, List<TrackingData> points, StringSetter setter) {
+        for (TrackingData point : points) {
+            int length = (int) readVarint(in);
+            if (length > 0) {
+                byte[] bytes = new byte[length - 1];
+                in.get(bytes);
+                setter.set(point, new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // Microsecondes : la précision de timestamp(6) est conservée
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+            Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void writeSigned(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readSigned(ByteBuffer in) {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private interface DoubleSetter {
+        void set(TrackingData point, Double value);
+    }
+
+    private interface StringSetter {
+        void set(TrackingData point, String value);
+    }
+}
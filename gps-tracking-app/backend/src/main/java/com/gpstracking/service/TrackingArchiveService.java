@@ -0,0 +1,723 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackPoint;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.TrackingDataRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// Stockage froid : les points plus anciens que "after-days" quittent tracking_data pour des
+// segments compressés par véhicule et par jour ({directory}/{vehicleId}/{yyyy-MM-dd}.seg).
+// Un segment est toujours écrit et synchronisé sur disque avant la suppression des lignes.
+@Service
+public class TrackingArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(TrackingArchiveService.class);
+
+    private static final String EXTENSION = ".seg";
+
+    // Ordre des segments ; l'historique est servi dans l'ordre inverse
+    private static final Comparator<TrackingData> OLDEST_FIRST = Comparator
+        .comparing(TrackingData::getTimestamp)
+        .thenComparing(TrackingData::getId);
+
+    private static final String COLUMNS = "id, timestamp, latitude, longitude, speed, altitude, battery_level, " +
+        "temperature, signal_strength, event_id";
+
+    private static final RowMapper<TrackingData> ROW_MAPPER = (rs, rowNum) -> {
+        TrackingData data = new TrackingData();
+        data.setId(rs.getLong("id"));
+        data.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        data.setLatitude(rs.getObject("latitude", Double.class));
+        data.setLongitude(rs.getObject("longitude", Double.class));
+        data.setSpeed(rs.getObject("speed", Double.class));
+        data.setAltitude(rs.getObject("altitude", Double.class));
+        data.setBatteryLevel(rs.getObject("battery_level", Double.class));
+        data.setTemperature(rs.getObject("temperature", Double.class));
+        data.setSignalStrength(rs.getString("signal_strength"));
+        data.setEventId(rs.getString("event_id"));
+        return data;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TrackingPartitionService trackingPartitionService;
+    private final TrackingDataRepository trackingDataRepository;
+
+    @Value("${tracking.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${tracking.archive.directory:./data/archive}")
+    private String directory;
+
+    // Âge (en jours) à partir duquel un point quitte la base
+    @Value("${tracking.archive.after-days:90}")
+    private int afterDays;
+
+    // Points par bloc compressé : unité de décompression lors d'une lecture
+    @Value("${tracking.archive.block-size:1024}")
+    private int blockSize;
+
+    @Value("${tracking.archive.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${tracking.archive.open-segments:512}")
+    private int maxOpenSegments;
+
+    @Value("${tracking.partitioning.retention-days:365}")
+    private int defaultRetentionDays;
+
+    private Path root;
+    // Un archivage à la fois, hors du thread des tâches planifiées
+    private ExecutorService worker;
+    private final AtomicBoolean running = new AtomicBoolean();
+    // Segments déjà projetés en mémoire, réutilisés d'une lecture à l'autre
+    private OpenSegments openSegments;
+
+    public TrackingArchiveService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            TrackingPartitionService trackingPartitionService,
+            TrackingDataRepository trackingDataRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.trackingPartitionService = trackingPartitionService;
+        this.trackingDataRepository = trackingDataRepository;
+    }
+
+    @PostConstruct
+    void start() {
+        root = Paths.get(directory).toAbsolutePath();
+        openSegments = new OpenSegments(maxOpenSegments);
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "tracking-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.shutdownNow();
+    }
+
+    @Scheduled(cron = "${tracking.archive.cron:0 45 3 * * *}")
+    public void runArchive() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                LocalDate cutoff = LocalDate.now().minusDays(afterDays);
+                archiveBefore(cutoff);
+                trackingPartitionService.dropEmptyPartitionsBefore(cutoff.atStartOfDay());
+                expireSegments();
+            } catch (DataAccessException | UncheckedIOException e) {
+                log.error("Erreur lors de l'archivage des données de suivi, nouvelle tentative au prochain passage", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    // Une transaction par véhicule et par jour : l'archivage peut être interrompu et relancé
+    void archiveBefore(LocalDate cutoff) {
+        List<Map<String, Object>> days = jdbcTemplate.queryForList(
+            "SELECT vehicle_id, CAST(timestamp AS date) AS day FROM tracking_data WHERE timestamp < ? " +
+            "AND vehicle_id NOT IN (SELECT id FROM vehicles WHERE deleted_at IS NOT NULL) " +
+            "GROUP BY 1, 2 ORDER BY 2, 1", Timestamp.valueOf(cutoff.atStartOfDay()));
+        if (days.isEmpty()) {
+            return;
+        }
+        log.info("Archivage de {} journées de suivi antérieures au {}", days.size(), cutoff);
+        long archived = 0;
+        for (Map<String, Object> day : days) {
+            if (Thread.currentThread().isInterrupted()) {
+                return; // Arrêt de l'application : reprise au prochain passage
+            }
+            archived += archiveDay(((Number) day.get("vehicle_id")).longValue(),
+                ((Date) day.get("day")).toLocalDate());
+        }
+        log.info("{} points archivés", archived);
+    }
+
+    // La journée est lue par tranches de chunk-size lignes (clé timestamp, id) et écrite en flux :
+    // seuls les identifiants des lignes archivées restent en mémoire jusqu'à leur suppression
+    private int archiveDay(Long vehicleId, LocalDate day) {
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        List<TrackingData> chunk = readChunk(vehicleId, from, to, from, Long.MIN_VALUE);
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        Path file = segmentPath(vehicleId, day);
+        long[] ids = new long[chunk.size()];
+        int archived = 0;
+        try {
+            Files.createDirectories(file.getParent());
+            // Points arrivés en retard pour un jour déjà archivé : le segment est réécrit, fusionné
+            // avec les lignes (les deux sources sont triées par timestamp, id)
+            Iterator<TrackingData> previous = Files.exists(file)
+                ? TrackSegmentFile.open(file).iterator()
+                : Collections.emptyIterator();
+            TrackingData pending = previous.hasNext() ? previous.next() : null;
+            try (TrackSegmentFile.Writer writer = new TrackSegmentFile.Writer(file, blockSize)) {
+                while (!chunk.isEmpty()) {
+                    for (TrackingData row : chunk) {
+                        while (pending != null && OLDEST_FIRST.compare(pending, row) < 0) {
+                            writer.add(pending);
+                            pending = previous.hasNext() ? previous.next() : null;
+                        }
+                        if (pending != null && pending.getId().equals(row.getId())) {
+                            pending = previous.hasNext() ? previous.next() : null; // Remplacé par la ligne
+                        }
+                        writer.add(row);
+                        if (archived == ids.length) {
+                            ids = Arrays.copyOf(ids, ids.length * 2);
+                        }
+                        ids[archived++] = row.getId();
+                    }
+                    if (chunk.size() < chunkSize) {
+                        break;
+                    }
+                    TrackingData last = chunk.get(chunk.size() - 1);
+                    chunk = readChunk(vehicleId, from, to, Timestamp.valueOf(last.getTimestamp()), last.getId());
+                }
+                while (pending != null) {
+                    writer.add(pending);
+                    pending = previous.hasNext() ? previous.next() : null;
+                }
+                writer.finish();
+            } finally {
+                forget(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write segment " + file, e);
+        }
+
+        // Seules les lignes effectivement archivées sont supprimées, pas celles insérées entre-temps
+        long[] archivedIds = ids;
+        int count = archived;
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int start = 0; start < count; start += chunkSize) {
+                Long[] batch = Arrays.stream(archivedIds, start, Math.min(count, start + chunkSize))
+                    .boxed().toArray(Long[]::new);
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM tracking_data WHERE vehicle_id = ? AND timestamp >= ? AND timestamp < ? AND id = ANY(?)");
+                    Array array = connection.createArrayOf("bigint", batch);
+                    statement.setLong(1, vehicleId);
+                    statement.setTimestamp(2, from);
+                    statement.setTimestamp(3, to);
+                    statement.setArray(4, array);
+                    return statement;
+                });
+            }
+        });
+        return count;
+    }
+
+    private List<TrackingData> readChunk(Long vehicleId, Timestamp from, Timestamp to, Timestamp afterTimestamp, long afterId) {
+        return jdbcTemplate.query(
+            "SELECT " + COLUMNS + " FROM tracking_data " +
+            "WHERE vehicle_id = ? AND timestamp >= ? AND timestamp < ? AND (timestamp, id) > (?, ?) " +
+            "ORDER BY timestamp, id LIMIT ?",
+            ROW_MAPPER, vehicleId, from, to, afterTimestamp, afterId, chunkSize);
+    }
+
+    // Rétention appliquée aux segments comme aux partitions, avec la valeur propre à chaque client
+    void expireSegments() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Map<Long, Integer> retentionByVehicle = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT v.id, COALESCE(u.retention_days, ?) AS retention_days " +
+            "FROM vehicles v JOIN users u ON u.id = v.user_id WHERE v.deleted_at IS NULL",
+            rs -> {
+                retentionByVehicle.put(rs.getLong("id"), rs.getInt("retention_days"));
+            }, defaultRetentionDays);
+
+        for (Path vehicleDirectory : list(root)) {
+            Long vehicleId = parseVehicleId(vehicleDirectory);
+            if (vehicleId == null) {
+                continue;
+            }
+            Integer retentionDays = retentionByVehicle.get(vehicleId);
+            if (retentionDays == null) {
+                // Véhicule supprimé ou en cours de purge : ses segments disparaissent avec lui
+                removeVehicle(vehicleId);
+                continue;
+            }
+            LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+            int expired = 0;
+            for (Map.Entry<LocalDate, Path> segment : segments(vehicleId).entrySet()) {
+                if (segment.getKey().isBefore(cutoff)) {
+                    delete(segment.getValue());
+                    expired++;
+                }
+            }
+            if (expired > 0) {
+                log.info("{} segments expirés supprimés pour le véhicule {} (rétention {} jours)",
+                    expired, vehicleId, retentionDays);
+            }
+        }
+    }
+
+    public void removeVehicle(Long vehicleId) {
+        Path vehicleDirectory = root.resolve(vehicleId.toString());
+        if (!Files.isDirectory(vehicleDirectory)) {
+            return;
+        }
+        for (Path file : list(vehicleDirectory)) {
+            delete(file);
+        }
+        delete(vehicleDirectory);
+        log.info("Segments archivés du véhicule {} supprimés", vehicleId);
+    }
+
+    // Début de la partie de l'historique encore en base (null si rien n'est archivé) : les
+    // reconstructions d'agrégats et de trajets ne doivent pas effacer ce qui précède
+    public LocalDateTime archivedBefore(Long vehicleId) {
+        Map<LocalDate, Path> segments = segments(vehicleId);
+        if (segments.isEmpty()) {
+            return null;
+        }
+        LocalDate last = Collections.max(segments.keySet());
+        return last.plusDays(1).atStartOfDay();
+    }
+
+    // Lecture au travers de l'archive : chaque lecture de points bruts passe par ces méthodes, qui
+    // s'en tiennent à la base tant qu'aucun segment ne recoupe la plage
+
+    // Historique paginé, du plus récent au plus ancien ; les points archivés n'ont pas de véhicule
+    public Page<TrackingData> findHistory(
+            Long vehicleId, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+        Timeline timeline = timeline(vehicleId, startDate, endDate, true);
+        if (timeline == null) {
+            return trackingDataRepository.findVehicleTrackingHistory(vehicleId, startDate, endDate, pageable);
+        }
+        List<TrackingData> content = timeline.readNewestFirst(pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(content, pageable, timeline.total());
+    }
+
+    // Même ordre ; un élément de plus que demandé indique s'il y a une suite. Le comptage des lignes
+    // postérieures à l'horizon situe le décalage par rapport aux jours archivés
+    public Slice<TrackPoint> findTrackPoints(
+            Long vehicleId, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+        Timeline timeline = timeline(vehicleId, startDate, endDate, true);
+        if (timeline == null) {
+            return trackingDataRepository.findVehicleTrackPoints(vehicleId, startDate, endDate, pageable);
+        }
+        List<TrackingData> rows = timeline.readNewestFirst(pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<TrackPoint> content = toTrackPoints(hasNext ? rows.subList(0, pageable.getPageSize()) : rows);
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    // Pagination par clé (timestamp, id) décroissante ; after est null pour la première page
+    public List<TrackPoint> findTrackPointsBefore(
+            Long vehicleId, LocalDateTime startDate, LocalDateTime endDate, HistoryCursor after, int limit) {
+        Timeline timeline = timeline(vehicleId, startDate, endDate, false);
+        if (timeline == null) {
+            PageRequest page = PageRequest.of(0, limit);
+            return after == null
+                ? trackingDataRepository.findFirstTrackPoints(vehicleId, startDate, endDate, page)
+                : trackingDataRepository.findTrackPointsAfter(vehicleId, startDate, after.timestamp(), after.id(), page);
+        }
+        return toTrackPoints(timeline.readBefore(after, limit));
+    }
+
+    // Parcours chronologique : jours archivés un par un, puis la base à partir de l'horizon.
+    // Comme streamVehicleTrackPoints, demande une transaction ouverte chez l'appelant
+    public Stream<TrackPoint> streamTrackPoints(Long vehicleId, LocalDateTime startDate, LocalDateTime endDate) {
+        Timeline timeline = timeline(vehicleId, startDate, endDate, false);
+        if (timeline == null) {
+            return trackingDataRepository.streamVehicleTrackPoints(vehicleId, startDate, endDate);
+        }
+        Stream<TrackPoint> archived = timeline.days.values().stream()
+            .flatMap(day -> day.points().stream())
+            .map(TrackingArchiveService::toTrackPoint);
+        return Stream.concat(archived,
+            trackingDataRepository.streamVehicleTrackPoints(vehicleId, timeline.horizon, endDate));
+    }
+
+    // Plage d'un véhicule répartie entre la base et l'archive. À partir de l'horizon (fin du dernier
+    // jour archivé de la plage) seule la base a des points ; avant, chaque jour est une unité dont la
+    // taille se lit dans les en-têtes des segments, sauf s'il a aussi des lignes en base (points arrivés
+    // en retard, archivage en cours) : ce jour-là seulement, segment et lignes sont fusionnés par id.
+    // Une requête de comptage en base par lecture ; les lignes postérieures à l'horizon ne sont comptées
+    // que pour une pagination par décalage
+    private Timeline timeline(Long vehicleId, LocalDateTime startDate, LocalDateTime endDate, boolean countRecent) {
+        NavigableMap<LocalDate, Path> segments = new TreeMap<>(segments(vehicleId))
+            .subMap(startDate.toLocalDate(), true, endDate.toLocalDate(), true);
+        if (segments.isEmpty()) {
+            return null;
+        }
+        Timeline timeline = new Timeline(vehicleId, startDate, endDate, segments.lastKey().plusDays(1).atStartOfDay());
+        for (Map.Entry<LocalDate, Path> segment : segments.entrySet()) {
+            timeline.days.put(segment.getKey(), timeline.new ArchivedDay(segment.getKey(), segment.getValue()));
+        }
+        jdbcTemplate.query(
+            "SELECT CAST(timestamp AS date) AS day, count(*) AS points FROM tracking_data " +
+            "WHERE vehicle_id = ? AND timestamp >= ? AND timestamp <= ?" + (countRecent ? "" : " AND timestamp < ?") +
+            " GROUP BY 1",
+            rs -> {
+                LocalDate day = rs.getDate("day").toLocalDate();
+                long points = rs.getLong("points");
+                if (day.atStartOfDay().isBefore(timeline.horizon)) {
+                    timeline.days.computeIfAbsent(day, d -> timeline.new ArchivedDay(d, null)).databaseRows = points;
+                } else {
+                    timeline.recentRows += points;
+                }
+            },
+            countRecent
+                ? new Object[] {vehicleId, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate)}
+                : new Object[] {vehicleId, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate),
+                    Timestamp.valueOf(timeline.horizon)});
+        return timeline;
+    }
+
+    private final class Timeline {
+        private final Long vehicleId;
+        private final LocalDateTime startDate;
+        private final LocalDateTime endDate;
+        private final LocalDateTime horizon;
+        private final NavigableMap<LocalDate, ArchivedDay> days = new TreeMap<>();
+        // Lignes en base à partir de l'horizon, si elles ont été comptées
+        private long recentRows;
+
+        private Timeline(Long vehicleId, LocalDateTime startDate, LocalDateTime endDate, LocalDateTime horizon) {
+            this.vehicleId = vehicleId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.horizon = horizon;
+        }
+
+        long total() {
+            long total = recentRows;
+            for (ArchivedDay day : days.values()) {
+                total += day.size();
+            }
+            return total;
+        }
+
+        // La position est convertie en (partie récente ou jour, rang dans ce jour) : les jours
+        // sautés ne sont pas décompressés
+        List<TrackingData> readNewestFirst(long offset, int limit) {
+            List<TrackingData> result = new ArrayList<>(Math.min(limit, 4096));
+            long skip = offset;
+            if (skip < recentRows) {
+                result.addAll(jdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM tracking_data WHERE vehicle_id = ? AND timestamp >= ? AND timestamp <= ? " +
+                    "ORDER BY timestamp DESC, id DESC LIMIT ? OFFSET ?",
+                    ROW_MAPPER, vehicleId, Timestamp.valueOf(horizon), Timestamp.valueOf(endDate), limit, skip));
+                skip = 0;
+            } else {
+                skip -= recentRows;
+            }
+            for (ArchivedDay day : days.descendingMap().values()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                long size = day.size();
+                if (skip >= size) {
+                    skip -= size;
+                    continue;
+                }
+                result.addAll(day.newestFirst(skip, limit - result.size()));
+                skip = 0;
+            }
+            return result;
+        }
+
+        // Pagination par clé : la partie récente en base, puis les jours archivés à partir de celui du curseur
+        List<TrackingData> readBefore(HistoryCursor after, int limit) {
+            List<TrackingData> result = new ArrayList<>(Math.min(limit, 4096));
+            if (after == null) {
+                result.addAll(jdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM tracking_data WHERE vehicle_id = ? AND timestamp >= ? AND timestamp <= ? " +
+                    "ORDER BY timestamp DESC, id DESC LIMIT ?",
+                    ROW_MAPPER, vehicleId, Timestamp.valueOf(horizon), Timestamp.valueOf(endDate), limit));
+            } else if (!after.timestamp().isBefore(horizon)) {
+                Timestamp cursor = Timestamp.valueOf(after.timestamp());
+                result.addAll(jdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM tracking_data WHERE vehicle_id = ? AND timestamp >= ? AND timestamp <= ? " +
+                    "AND (timestamp < ? OR (timestamp = ? AND id < ?)) ORDER BY timestamp DESC, id DESC LIMIT ?",
+                    ROW_MAPPER, vehicleId, Timestamp.valueOf(horizon), cursor, cursor, cursor, after.id(), limit));
+            }
+            NavigableMap<LocalDate, ArchivedDay> candidates = after == null
+                ? days
+                : days.headMap(after.timestamp().toLocalDate(), true);
+            for (ArchivedDay day : candidates.descendingMap().values()) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.addAll(day.newestFirstBefore(after, limit - result.size()));
+            }
+            return result;
+        }
+
+        private final class ArchivedDay {
+            private final LocalDate day;
+            private final Path segment;
+            private long databaseRows;
+            private long size = -1;
+            private List<TrackingData> merged;
+
+            private ArchivedDay(LocalDate day, Path segment) {
+                this.day = day;
+                this.segment = segment;
+            }
+
+            long size() {
+                if (size < 0) {
+                    size = databaseRows > 0 ? points().size() : archivedCount();
+                }
+                return size;
+            }
+
+            private long archivedCount() {
+                TrackSegmentFile file = open(segment);
+                boolean wholeDay = !startDate.isAfter(day.atStartOfDay())
+                    && !endDate.isBefore(day.plusDays(1).atStartOfDay());
+                try {
+                    return wholeDay ? file.pointCount() : file.count(startDate, endDate);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read segment " + segment, e);
+                }
+            }
+
+            // Points du jour dans la plage, par ordre croissant
+            List<TrackingData> points() {
+                if (merged != null) {
+                    return merged;
+                }
+                List<TrackingData> archived = read(null);
+                if (databaseRows == 0) {
+                    return archived;
+                }
+                List<TrackingData> rows = jdbcTemplate.query(
+                    "SELECT " + COLUMNS + " FROM tracking_data WHERE vehicle_id = ? AND timestamp >= ? AND timestamp <= ? " +
+                    "AND timestamp >= ? AND timestamp < ? ORDER BY timestamp, id",
+                    ROW_MAPPER, vehicleId, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate),
+                    Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+                merged = new ArrayList<>(archived.size() + rows.size());
+                int a = 0;
+                int r = 0;
+                while (a < archived.size() || r < rows.size()) {
+                    if (r == rows.size()) {
+                        merged.add(archived.get(a++));
+                    } else if (a == archived.size()) {
+                        merged.add(rows.get(r++));
+                    } else {
+                        int order = OLDEST_FIRST.compare(archived.get(a), rows.get(r));
+                        if (order == 0) {
+                            a++; // Ligne pas encore supprimée après écriture de son segment
+                        } else {
+                            merged.add(order < 0 ? archived.get(a++) : rows.get(r++));
+                        }
+                    }
+                }
+                return merged;
+            }
+
+            List<TrackingData> newestFirst(long skip, int limit) {
+                if (databaseRows == 0) {
+                    try {
+                        return open(segment).readNewestFirst(startDate, endDate, skip, limit);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read segment " + segment, e);
+                    }
+                }
+                List<TrackingData> points = points();
+                List<TrackingData> result = new ArrayList<>(Math.min(limit, points.size()));
+                for (int i = (int) (points.size() - 1 - skip); i >= 0 && result.size() < limit; i--) {
+                    result.add(points.get(i));
+                }
+                return result;
+            }
+
+            // Seuls les points strictement antérieurs au curseur ; le jour du curseur n'est lu que jusqu'à lui
+            List<TrackingData> newestFirstBefore(HistoryCursor after, int limit) {
+                if (after == null || after.timestamp().toLocalDate().isAfter(day)) {
+                    return newestFirst(0, limit);
+                }
+                List<TrackingData> points = databaseRows > 0 ? points() : read(after.timestamp());
+                List<TrackingData> result = new ArrayList<>(Math.min(limit, points.size()));
+                for (int i = points.size() - 1; i >= 0 && result.size() < limit; i--) {
+                    TrackingData point = points.get(i);
+                    int order = point.getTimestamp().compareTo(after.timestamp());
+                    if (order < 0 || order == 0 && point.getId() < after.id()) {
+                        result.add(point);
+                    }
+                }
+                return result;
+            }
+
+            private List<TrackingData> read(LocalDateTime until) {
+                if (segment == null) {
+                    return List.of();
+                }
+                LocalDateTime to = until != null && until.isBefore(endDate) ? until : endDate;
+                try {
+                    return open(segment).read(startDate, to);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read segment " + segment, e);
+                }
+            }
+        }
+    }
+
+    private static List<TrackPoint> toTrackPoints(List<TrackingData> rows) {
+        List<TrackPoint> points = new ArrayList<>(rows.size());
+        for (TrackingData row : rows) {
+            points.add(toTrackPoint(row));
+        }
+        return points;
+    }
+
+    private static TrackPoint toTrackPoint(TrackingData data) {
+        return new TrackPoint(data.getId(), data.getLatitude(), data.getLongitude(), data.getSpeed(),
+            data.getAltitude(), data.getTimestamp(), data.getBatteryLevel(), data.getSignalStrength(),
+            data.getTemperature());
+    }
+
+    private Map<LocalDate, Path> segments(Long vehicleId) {
+        Path vehicleDirectory = root.resolve(vehicleId.toString());
+        if (!Files.isDirectory(vehicleDirectory)) {
+            return Map.of();
+        }
+        Map<LocalDate, Path> segments = new HashMap<>();
+        for (Path file : list(vehicleDirectory)) {
+            String name = file.getFileName().toString();
+            if (!name.endsWith(EXTENSION)) {
+                continue; // Fichier temporaire d'une écriture interrompue
+            }
+            try {
+                segments.put(LocalDate.parse(name.substring(0, name.length() - EXTENSION.length())), file);
+            } catch (DateTimeParseException e) {
+                log.warn("Fichier inattendu dans l'archive : {}", file);
+            }
+        }
+        return segments;
+    }
+
+    // Un segment réécrit (points arrivés en retard) change de date de modification et est reprojeté
+    private TrackSegmentFile open(Path file) {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            synchronized (openSegments) {
+                OpenSegment cached = openSegments.get(file);
+                if (cached != null && cached.modified().equals(modified)) {
+                    return cached.segment();
+                }
+            }
+            TrackSegmentFile segment = TrackSegmentFile.open(file);
+            synchronized (openSegments) {
+                openSegments.put(file, new OpenSegment(modified, segment));
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read segment " + file, e);
+        }
+    }
+
+    private void forget(Path file) {
+        synchronized (openSegments) {
+            openSegments.remove(file);
+        }
+    }
+
+    private Path segmentPath(Long vehicleId, LocalDate day) {
+        return root.resolve(vehicleId.toString()).resolve(day + EXTENSION);
+    }
+
+    private static Long parseVehicleId(Path vehicleDirectory) {
+        try {
+            return Long.valueOf(vehicleDirectory.getFileName().toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<Path> list(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list " + directory, e);
+        }
+    }
+
+    private void delete(Path path) {
+        forget(path);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete " + path, e);
+        }
+    }
+
+    private record OpenSegment(FileTime modified, TrackSegmentFile segment) {}
+
+    // Du moins au plus récemment utilisé ; le plus ancien est libéré au-delà de la capacité
+    private static final class OpenSegments extends LinkedHashMap<Path, OpenSegment> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private OpenSegments(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, OpenSegment> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+
+// Notifié par le pipeline d'ingestion pour chaque point effectivement écrit en base.
+// Appelé depuis les threads d'écriture : les implémentations doivent rester rapides.
+public interface TrackingDataListener {
+    void onTrackingData(Long vehicleId, TrackingData trackingData);
+}
@@ -0,0 +1,162 @@
+package com.gpstracking.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.gpstracking.model.TrackPoint;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class TrackingExportService {
+    private final TrackingArchiveService trackingArchiveService;
+    private final ObjectMapper objectMapper;
+
+    public TrackingExportService(TrackingArchiveService trackingArchiveService, ObjectMapper objectMapper) {
+        this.trackingArchiveService = trackingArchiveService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Écrit la plage demandée au fil de la lecture (jours archivés puis curseur en base) :
+    // mémoire bornée par une journée archivée, pas de requête COUNT
+    @Transactional(readOnly = true)
+    public void export(Long vehicleId, LocalDateTime startDate, LocalDateTime endDate,
+                       ExportFormat format, OutputStream out) throws IOException {
+        try (Stream<TrackPoint> stream = trackingArchiveService.streamTrackPoints(vehicleId, startDate, endDate)) {
+            Iterator<TrackPoint> points = stream.iterator();
+            switch (format) {
+                case CSV -> writeCsv(points, out);
+                case GEOJSON -> writeGeoJson(vehicleId, points, out);
+                case NDJSON -> writeNdjson(points, out);
+            }
+        }
+    }
+
+    private void writeCsv(Iterator<TrackPoint> points, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("timestamp,latitude,longitude,speed,altitude,batteryLevel,signalStrength,temperature\n");
+        while (points.hasNext()) {
+            TrackPoint point = points.next();
+            writer.write(String.valueOf(point.timestamp()));
+            writer.write(',');
+            writeValue(writer, point.latitude());
+            writer.write(',');
+            writeValue(writer, point.longitude());
+            writer.write(',');
+            writeValue(writer, point.speed());
+            writer.write(',');
+            writeValue(writer, point.altitude());
+            writer.write(',');
+            writeValue(writer, point.batteryLevel());
+            writer.write(',');
+            if (point.signalStrength() != null) {
+                writer.write('"');
+                writer.write(point.signalStrength().replace("\"", "\"\""));
+                writer.write('"');
+            }
+            writer.write(',');
+            writeValue(writer, point.temperature());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private static void writeValue(Writer writer, Double value) throws IOException {
+        if (value != null) {
+            writer.write(Double.toString(value));
+        }
+    }
+
+    // FeatureCollection de points, chaque Feature portant les mesures du point
+    private void writeGeoJson(Long vehicleId, Iterator<TrackPoint> points, OutputStream out) throws IOException {
+        JsonGenerator generator = createGenerator(out);
+        generator.writeStartObject();
+        generator.writeStringField("type", "FeatureCollection");
+        generator.writeArrayFieldStart("features");
+        while (points.hasNext()) {
+            TrackPoint point = points.next();
+            if (point.latitude() == null || point.longitude() == null) {
+                continue;
+            }
+            generator.writeStartObject();
+            generator.writeStringField("type", "Feature");
+            generator.writeObjectFieldStart("geometry");
+            generator.writeStringField("type", "Point");
+            generator.writeArrayFieldStart("coordinates");
+            generator.writeNumber(point.longitude());
+            generator.writeNumber(point.latitude());
+            if (point.altitude() != null) {
+                generator.writeNumber(point.altitude());
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("properties");
+            generator.writeNumberField("vehicleId", vehicleId);
+            generator.writeStringField("timestamp", String.valueOf(point.timestamp()));
+            writeField(generator, "speed", point.speed());
+            writeField(generator, "batteryLevel", point.batteryLevel());
+            generator.writeStringField("signalStrength", point.signalStrength());
+            writeField(generator, "temperature", point.temperature());
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private static void writeField(JsonGenerator generator, String name, Double value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    private void writeNdjson(Iterator<TrackPoint> points, OutputStream out) throws IOException {
+        JsonGenerator generator = createGenerator(out);
+        try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(generator)) {
+            while (points.hasNext()) {
+                writer.write(points.next());
+            }
+        }
+        out.write('\n');
+    }
+
+    // Le flux de sortie appartient à l'appelant (compression éventuelle à terminer)
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return objectMapper.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public enum ExportFormat {
+        CSV("text/csv", "csv"),
+        GEOJSON("application/geo+json", "geojson"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        ExportFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+}
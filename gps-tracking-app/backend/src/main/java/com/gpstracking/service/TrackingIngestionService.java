@@ -0,0 +1,483 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class TrackingIngestionService {
+    private static final Logger log = LoggerFactory.getLogger(TrackingIngestionService.class);
+
+    // Un événement déjà écrit (même véhicule, identifiant et horodatage) est ignoré par la contrainte unique.
+    // L'horodatage fait partie de la clé : un événement renvoyé dont l'heure vient du serveur (ni "when"
+    // ni "received", voir NotecardEventDecoder.eventTime) n'est pas reconnu comme doublon
+    private static final String INSERT_SQL =
+        "INSERT INTO tracking_data (vehicle_id, latitude, longitude, speed, altitude, timestamp, " +
+        "battery_level, signal_strength, temperature, event_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT DO NOTHING";
+
+    // Un lot en une instruction, colonnes passées en tableaux : RETURNING ne renvoie que les lignes
+    // réellement insérées, ce que le pilote ne détaille pas pour un lot JDBC (reWriteBatchedInserts)
+    private static final String INSERT_BATCH_SQL =
+        "INSERT INTO tracking_data (vehicle_id, latitude, longitude, speed, altitude, timestamp, " +
+        "battery_level, signal_strength, temperature, event_id) " +
+        "SELECT * FROM unnest(?::bigint[], ?::float8[], ?::float8[], ?::float8[], ?::float8[], ?::timestamp[], " +
+        "?::float8[], ?::varchar[], ?::float8[], ?::varchar[]) " +
+        "ON CONFLICT DO NOTHING RETURNING id, vehicle_id, event_id, timestamp";
+
+    // Connexion (08), sérialisation et interblocage (40), ressources (53), verrou non obtenu (55P03),
+    // annulation et arrêt du serveur (57)
+    private static final List<String> TRANSIENT_SQL_STATES = List.of("08", "40", "53", "55P03", "57");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<TrackingDataListener> listeners;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tracking.ingestion.queue-capacity:50000}")
+    private int queueCapacity;
+
+    @Value("${tracking.ingestion.batch-size:500}")
+    private int batchSize;
+
+    @Value("${tracking.ingestion.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${tracking.ingestion.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${tracking.ingestion.writer-threads:1}")
+    private int writerThreads;
+
+    // Base momentanément indisponible : délai avant de réessayer un lot, doublé à chaque échec
+    @Value("${tracking.ingestion.retry-initial-backoff-ms:100}")
+    private long retryInitialBackoffMs;
+
+    @Value("${tracking.ingestion.retry-max-backoff-ms:5000}")
+    private long retryMaxBackoffMs;
+
+    private BlockingQueue<QueuedPoint> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    // Compteurs exposés via getStats()
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private volatile int lastFlushSize;
+    private volatile long lastFlushMillis;
+
+    private Timer writeTimer;
+    private DistributionSummary batchSizes;
+
+    public TrackingIngestionService(
+            JdbcTemplate jdbcTemplate,
+            List<TrackingDataListener> listeners,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeners = listeners;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        registerMeters();
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::writeLoop, "tracking-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    // Met le point en file d'attente ; bloque au plus offer-timeout-ms si la file est pleine.
+    // Refusé pendant l'arrêt : les écrivains peuvent avoir déjà vidé la file et terminé
+    public void enqueue(Long vehicleId, TrackingData trackingData) {
+        if (!running) {
+            rejected.incrementAndGet();
+            throw new IngestionRejectedException("Ingestion is shutting down");
+        }
+        QueuedPoint point = new QueuedPoint(vehicleId, trackingData);
+        boolean offered;
+        try {
+            offered = queue.offer(point, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            rejected.incrementAndGet();
+            throw new IngestionRejectedException("Ingestion queue is full");
+        }
+        // Arrêt survenu pendant l'ajout : repris s'il est encore en file, sinon un écrivain l'a pris en charge
+        if (!running && queue.remove(point)) {
+            rejected.incrementAndGet();
+            throw new IngestionRejectedException("Ingestion is shutting down");
+        }
+        accepted.incrementAndGet();
+    }
+
+    // Les compteurs existants sont lus à la collecte : aucun coût supplémentaire par point
+    private void registerMeters() {
+        Gauge.builder("tracking.ingestion.queue.size", queue, BlockingQueue::size)
+                .register(meterRegistry);
+        pointCounter("accepted", accepted);
+        pointCounter("rejected", rejected);
+        pointCounter("written", written);
+        pointCounter("failed", failed);
+        pointCounter("duplicate", duplicates);
+        writeTimer = Timer.builder("tracking.ingestion.write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("tracking.ingestion.batch.size")
+                .baseUnit("points")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void pointCounter(String result, AtomicLong counter) {
+        FunctionCounter.builder("tracking.ingestion.points", counter, AtomicLong::get)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public IngestionStats getStats() {
+        long count = flushes.get();
+        return new IngestionStats(
+            queue.size(),
+            queueCapacity,
+            accepted.get(),
+            rejected.get(),
+            written.get(),
+            failed.get(),
+            duplicates.get(),
+            count,
+            lastFlushSize,
+            lastFlushMillis,
+            count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(flushNanos.get()) / (double) count
+        );
+    }
+
+    private void writeLoop() {
+        List<QueuedPoint> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedPoint first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Le lot part dès qu'il est plein ou que l'intervalle est écoulé
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    QueuedPoint next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                failed.addAndGet(batch.size());
+                log.error("Erreur inattendue dans la boucle d'écriture du suivi, lot de {} points perdu", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Les points acceptés ont déjà reçu une réponse positive : une panne passagère de la base ne doit pas les
+    // perdre. Le lot est réessayé avec un délai croissant ; la file se remplit entre-temps et enqueue répond 503,
+    // ce que le client sait réessayer. À l'arrêt, le lot est abandonné après une dernière tentative
+    private void writeWithRetry(List<QueuedPoint> batch) throws InterruptedException {
+        long backoff = retryInitialBackoffMs;
+        while (true) {
+            try {
+                flush(batch);
+                return;
+            } catch (DataAccessException e) {
+                if (!running) {
+                    failed.addAndGet(batch.size());
+                    log.error("Base indisponible à l'arrêt, {} points non écrits", batch.size(), e);
+                    return;
+                }
+                log.warn("Base indisponible, lot de {} points réessayé dans {} ms: {}", batch.size(), backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    failed.addAndGet(batch.size());
+                    throw interrupted;
+                }
+                backoff = Math.min(backoff * 2, retryMaxBackoffMs);
+            }
+        }
+    }
+
+    // Écriture synchrone d'un lot, utilisée par l'import en masse ; retourne le nombre de points écrits.
+    // Une panne passagère de la base est remontée à l'appelant
+    public int writeNow(Long vehicleId, List<TrackingData> points) {
+        List<QueuedPoint> batch = new ArrayList<>(points.size());
+        for (TrackingData point : points) {
+            batch.add(new QueuedPoint(vehicleId, point));
+        }
+        return flush(batch);
+    }
+
+    // Lève l'erreur d'une panne passagère ; le lot ne contient alors plus que les points restant à écrire
+    private int flush(List<QueuedPoint> batch) {
+        long start = System.nanoTime();
+        List<QueuedPoint> stored;
+        try {
+            stored = insertBatch(batch);
+            duplicates.addAndGet(batch.size() - stored.size());
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            // Un point invalide (véhicule supprimé...) ne doit pas faire perdre tout le lot
+            log.warn("Échec du lot de {} points, insertion ligne par ligne: {}", batch.size(), e.getMessage());
+            stored = insertRows(batch);
+        }
+        long elapsed = System.nanoTime() - start;
+        int count = stored.size();
+        written.addAndGet(count);
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(elapsed);
+        lastFlushSize = batch.size();
+        lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        writeTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+        notifyListeners(stored);
+        return count;
+    }
+
+    private List<QueuedPoint> insertRows(List<QueuedPoint> batch) {
+        List<QueuedPoint> stored = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            QueuedPoint point = batch.get(i);
+            try {
+                if (jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, point)) > 0) {
+                    stored.add(point);
+                } else {
+                    duplicates.incrementAndGet();
+                }
+            } catch (RuntimeException rowError) {
+                if (isTransient(rowError)) {
+                    // Les points sans identifiant d'événement ne sont pas dédoublonnés par la base :
+                    // ceux déjà écrits sont retirés du lot avant qu'il soit réessayé
+                    written.addAndGet(stored.size());
+                    notifyListeners(stored);
+                    batch.subList(0, i).clear();
+                    throw rowError;
+                }
+                failed.incrementAndGet();
+                log.warn("Point rejeté pour le véhicule {}: {}", point.vehicleId(), rowError.getMessage());
+            }
+        }
+        return stored;
+    }
+
+    // Connexion perdue ou impossible, délai d'attente, conflit de verrou : l'écriture peut réussir plus tard.
+    // Les autres erreurs (contraintes, données invalides) ne se résolvent pas en réessayant.
+    // Certains états PostgreSQL (délai de verrou 55P03...) ne sont pas classés par Spring : l'état SQL tranche
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof RecoverableDataAccessException) {
+            return true;
+        }
+        if (e instanceof DataAccessException dataAccess
+                && dataAccess.getMostSpecificCause() instanceof SQLException sqlException
+                && sqlException.getSQLState() != null) {
+            String state = sqlException.getSQLState();
+            return TRANSIENT_SQL_STATES.stream().anyMatch(state::startsWith);
+        }
+        return false;
+    }
+
+    // Les doublons écartés par la base ne sont pas notifiés : seules les lignes renvoyées par RETURNING
+    // le sont. Une ligne renvoyée est rapprochée d'un point du lot par sa clé unique ; les points
+    // identiques d'un même lot ne sont insérés qu'une fois
+    private List<QueuedPoint> insertBatch(List<QueuedPoint> batch) {
+        int size = batch.size();
+        Long[] vehicleIds = new Long[size];
+        Double[] latitudes = new Double[size];
+        Double[] longitudes = new Double[size];
+        Double[] speeds = new Double[size];
+        Double[] altitudes = new Double[size];
+        Timestamp[] timestamps = new Timestamp[size];
+        Double[] batteryLevels = new Double[size];
+        String[] signalStrengths = new String[size];
+        Double[] temperatures = new Double[size];
+        String[] eventIds = new String[size];
+        Map<PointKey, Deque<QueuedPoint>> byKey = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            QueuedPoint point = batch.get(i);
+            TrackingData data = point.data();
+            // Précision de timestamp(6) : l'horodatage renvoyé est comparé à celui du point
+            data.setTimestamp(data.getTimestamp().truncatedTo(ChronoUnit.MICROS));
+            vehicleIds[i] = point.vehicleId();
+            latitudes[i] = data.getLatitude();
+            longitudes[i] = data.getLongitude();
+            speeds[i] = data.getSpeed();
+            altitudes[i] = data.getAltitude();
+            timestamps[i] = Timestamp.valueOf(data.getTimestamp());
+            batteryLevels[i] = data.getBatteryLevel();
+            signalStrengths[i] = data.getSignalStrength();
+            temperatures[i] = data.getTemperature();
+            eventIds[i] = data.getEventId();
+            byKey.computeIfAbsent(new PointKey(point.vehicleId(), data.getEventId(), data.getTimestamp()),
+                key -> new ArrayDeque<>(1)).add(point);
+        }
+
+        Set<QueuedPoint> inserted = Collections.newSetFromMap(new IdentityHashMap<>(size * 2));
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_BATCH_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", vehicleIds));
+            ps.setArray(2, connection.createArrayOf("float8", latitudes));
+            ps.setArray(3, connection.createArrayOf("float8", longitudes));
+            ps.setArray(4, connection.createArrayOf("float8", speeds));
+            ps.setArray(5, connection.createArrayOf("float8", altitudes));
+            ps.setArray(6, connection.createArrayOf("timestamp", timestamps));
+            ps.setArray(7, connection.createArrayOf("float8", batteryLevels));
+            ps.setArray(8, connection.createArrayOf("varchar", signalStrengths));
+            ps.setArray(9, connection.createArrayOf("float8", temperatures));
+            ps.setArray(10, connection.createArrayOf("varchar", eventIds));
+            return ps;
+        }, rs -> {
+            Deque<QueuedPoint> candidates = byKey.get(new PointKey(rs.getLong("vehicle_id"),
+                rs.getString("event_id"), rs.getTimestamp("timestamp").toLocalDateTime()));
+            QueuedPoint point = candidates == null ? null : candidates.poll();
+            if (point != null) {
+                point.data().setId(rs.getLong("id"));
+                inserted.add(point);
+            }
+        });
+
+        if (inserted.size() == size) {
+            return batch;
+        }
+        List<QueuedPoint> stored = new ArrayList<>(inserted.size());
+        for (QueuedPoint point : batch) {
+            if (inserted.contains(point)) {
+                stored.add(point);
+            }
+        }
+        return stored;
+    }
+
+    private void notifyListeners(List<QueuedPoint> stored) {
+        for (TrackingDataListener listener : listeners) {
+            try {
+                for (QueuedPoint point : stored) {
+                    listener.onTrackingData(point.vehicleId(), point.data());
+                }
+            } catch (RuntimeException e) {
+                log.error("Erreur dans le listener de suivi {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void bind(PreparedStatement ps, QueuedPoint point) throws SQLException {
+        TrackingData data = point.data();
+        ps.setLong(1, point.vehicleId());
+        setDouble(ps, 2, data.getLatitude());
+        setDouble(ps, 3, data.getLongitude());
+        setDouble(ps, 4, data.getSpeed());
+        setDouble(ps, 5, data.getAltitude());
+        ps.setTimestamp(6, Timestamp.valueOf(data.getTimestamp()));
+        setDouble(ps, 7, data.getBatteryLevel());
+        ps.setString(8, data.getSignalStrength());
+        setDouble(ps, 9, data.getTemperature());
+        ps.setString(10, data.getEventId());
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    record QueuedPoint(Long vehicleId, TrackingData data) {}
+
+    private record PointKey(Long vehicleId, String eventId, LocalDateTime timestamp) {}
+
+    public record IngestionStats(
+        int queueSize,
+        int queueCapacity,
+        long accepted,
+        long rejected,
+        long written,
+        long failed,
+        long duplicates,
+        long flushes,
+        int lastFlushSize,
+        long lastFlushMillis,
+        double averageFlushMillis
+    ) {}
+
+    public static class IngestionRejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public IngestionRejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.gpstracking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Service
+public class TrackingPartitionService {
+    private static final Logger log = LoggerFactory.getLogger(TrackingPartitionService.class);
+
+    private static final String PARENT = "tracking_data";
+    private static final String DEFAULT_PARTITION = PARENT + "_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${tracking.partitioning.interval:MONTHLY}")
+    private PartitionInterval interval;
+
+    @Value("${tracking.partitioning.premake:3}")
+    private int premake;
+
+    @Value("${tracking.partitioning.retention-days:365}")
+    private int defaultRetentionDays;
+
+    @Value("${tracking.partitioning.detach-expired:false}")
+    private boolean detachExpired;
+
+    @Value("${tracking.partitioning.migrate-existing:false}")
+    private boolean migrateExisting;
+
+    @Value("${tracking.partitioning.purge-chunk-size:10000}")
+    private int purgeChunkSize;
+
+    public TrackingPartitionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!isPartitioned()) {
+            if (!migrateExisting) {
+                log.warn("La table {} n'est pas partitionnée ; activer tracking.partitioning.migrate-existing pour la convertir", PARENT);
+                return;
+            }
+            migrateExistingTable();
+        }
+        runMaintenance();
+    }
+
+    @Scheduled(cron = "${tracking.partitioning.cron:0 15 3 * * *}")
+    public void runMaintenance() {
+        if (!isPartitioned()) {
+            return;
+        }
+        createUpcomingPartitions();
+        expirePartitions();
+        purgeTenantsWithShorterRetention();
+    }
+
+    private boolean isPartitioned() {
+        String kind = jdbcTemplate.queryForObject(
+            "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')",
+            String.class, PARENT);
+        return "p".equals(kind);
+    }
+
+    // Crée la partition courante et les "premake" suivantes
+    void createUpcomingPartitions() {
+        LocalDate start = interval.periodStart(LocalDate.now());
+        for (int i = 0; i <= premake; i++) {
+            LocalDate end = interval.next(start);
+            createPartition(start, end);
+            start = end;
+        }
+    }
+
+    private void createPartition(LocalDate from, LocalDate to) {
+        String name = PARENT + "_p" + from.format(SUFFIX);
+        if (exists(name)) {
+            return;
+        }
+        try {
+            if (exists(DEFAULT_PARTITION) && hasDefaultRows(from, to)) {
+                createFromDefault(name, from, to);
+            } else {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT +
+                    " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            }
+        } catch (DataAccessException e) {
+            // Chevauchement avec une partition existante
+            log.warn("Impossible de créer la partition {}: {}", name, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Des points de la période sont déjà tombés dans la partition par défaut (écrits avant la création
+    // de la partition) : CREATE ... PARTITION OF échouerait à chaque passage. La partition est créée
+    // à part, les lignes y sont déplacées puis elle est rattachée, le tout dans une transaction
+    private void createFromDefault(String name, LocalDate from, LocalDate to) {
+        Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(to.atStartOfDay());
+        long moved = transactionTemplate.execute(status -> {
+            // Les insertions dans la partition par défaut attendent la fin du déplacement
+            jdbcTemplate.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN SHARE ROW EXCLUSIVE MODE");
+            String columns = jdbcTemplate.queryForObject(
+                "SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) FROM pg_attribute " +
+                "WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped", String.class, PARENT);
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + PARENT + " INCLUDING DEFAULTS)");
+            int count = jdbcTemplate.update(
+                "INSERT INTO " + name + " (" + columns + ") SELECT " + columns + " FROM " + DEFAULT_PARTITION +
+                " WHERE timestamp >= ? AND timestamp < ?", start, end);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?", start, end);
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + name +
+                " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            return (long) count;
+        });
+        log.info("Partition {} créée avec {} points déplacés depuis {}", name, moved, DEFAULT_PARTITION);
+    }
+
+    private boolean hasDefaultRows(LocalDate from, LocalDate to) {
+        return jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?)",
+            Boolean.class, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+    }
+
+    private boolean exists(String table) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+    }
+
+    // Les partitions entièrement plus anciennes que la plus longue rétention sont supprimées ou détachées
+    void expirePartitions() {
+        LocalDateTime cutoff = LocalDate.now().minusDays(longestRetentionDays()).atStartOfDay();
+        for (Map<String, Object> partition : listPartitions()) {
+            String name = (String) partition.get("name");
+            Matcher matcher = UPPER_BOUND.matcher((String) partition.get("bound"));
+            if (!matcher.find()) {
+                continue; // Partition par défaut ou borne MAXVALUE
+            }
+            LocalDateTime upperBound = Timestamp.valueOf(matcher.group(1)).toLocalDateTime();
+            if (!upperBound.isAfter(cutoff)) {
+                if (detachExpired) {
+                    jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + name);
+                    log.info("Partition {} détachée (borne {})", name, upperBound);
+                } else {
+                    jdbcTemplate.execute("DROP TABLE " + name);
+                    log.info("Partition {} supprimée (borne {})", name, upperBound);
+                }
+            }
+        }
+    }
+
+    // Partitions vidées par l'archivage : supprimées pour réduire la table chaude. Un point arrivé
+    // en retard pour cette période tombera dans la partition par défaut et sera archivé au passage suivant
+    void dropEmptyPartitionsBefore(LocalDateTime cutoff) {
+        if (!isPartitioned()) {
+            return;
+        }
+        for (Map<String, Object> partition : listPartitions()) {
+            String name = (String) partition.get("name");
+            Matcher matcher = UPPER_BOUND.matcher((String) partition.get("bound"));
+            if (!matcher.find()) {
+                continue;
+            }
+            LocalDateTime upperBound = Timestamp.valueOf(matcher.group(1)).toLocalDateTime();
+            if (upperBound.isAfter(cutoff)) {
+                continue;
+            }
+            // Verrou pris avant la vérification : aucune insertion ne peut se glisser avant la suppression
+            boolean dropped = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("LOCK TABLE " + name + " IN ACCESS EXCLUSIVE MODE");
+                if (jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + name + ")", Boolean.class)) {
+                    return false;
+                }
+                jdbcTemplate.execute("DROP TABLE " + name);
+                return true;
+            });
+            if (dropped) {
+                log.info("Partition archivée {} supprimée (borne {})", name, upperBound);
+            }
+        }
+    }
+
+    private List<Map<String, Object>> listPartitions() {
+        return jdbcTemplate.queryForList(
+            "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass(?)", PARENT);
+    }
+
+    // Les clients avec une rétention plus courte sont purgés par lots ; l'élagage limite le parcours aux anciennes partitions
+    void purgeTenantsWithShorterRetention() {
+        int longest = longestRetentionDays();
+        List<Map<String, Object>> tenants = jdbcTemplate.queryForList(
+            "SELECT id, COALESCE(retention_days, ?) AS retention_days FROM users " +
+            "WHERE COALESCE(retention_days, ?) < ?", defaultRetentionDays, defaultRetentionDays, longest);
+
+        for (Map<String, Object> tenant : tenants) {
+            Long userId = ((Number) tenant.get("id")).longValue();
+            int retentionDays = ((Number) tenant.get("retention_days")).intValue();
+            Timestamp cutoff = Timestamp.valueOf(LocalDate.now().minusDays(retentionDays).atStartOfDay());
+            long purged = 0;
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(
+                    "DELETE FROM tracking_data WHERE (id, timestamp) IN (" +
+                    "SELECT td.id, td.timestamp FROM tracking_data td JOIN vehicles v ON v.id = td.vehicle_id " +
+                    "WHERE v.user_id = ? AND td.timestamp < ? LIMIT ?)",
+                    userId, cutoff, purgeChunkSize);
+                purged += deleted;
+            } while (deleted == purgeChunkSize);
+            if (purged > 0) {
+                log.info("{} points purgés pour l'utilisateur {} (rétention {} jours)", purged, userId, retentionDays);
+            }
+        }
+    }
+
+    private int longestRetentionDays() {
+        Integer longest = jdbcTemplate.queryForObject(
+            "SELECT MAX(retention_days) FROM users", Integer.class);
+        return longest == null ? defaultRetentionDays : Math.max(longest, defaultRetentionDays);
+    }
+
+    // Conversion ponctuelle : l'ancienne table devient une partition couvrant tout l'historique existant
+    private void migrateExistingTable() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp max = jdbcTemplate.queryForObject("SELECT MAX(timestamp) FROM " + PARENT, Timestamp.class);
+            LocalDate boundary = interval.next(interval.periodStart(
+                max == null ? LocalDate.now() : max.toLocalDateTime().toLocalDate()));
+
+            String legacy = PARENT + "_legacy";
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " RENAME TO " + legacy);
+            // Une partition ne peut pas porter de colonne IDENTITY : on passe à une séquence partagée
+            jdbcTemplate.execute("ALTER TABLE " + legacy + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + PARENT + "_id_seq");
+            jdbcTemplate.queryForObject("SELECT setval('" + PARENT + "_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM " + legacy, Long.class);
+            jdbcTemplate.execute("ALTER TABLE " + legacy + " DROP CONSTRAINT IF EXISTS " + PARENT + "_pkey");
+            jdbcTemplate.execute("ALTER TABLE " + legacy + " ADD PRIMARY KEY (id, timestamp)");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_tracking_data_vehicle_timestamp");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS idx_tracking_data_vehicle_timestamp_id");
+            jdbcTemplate.execute("DROP INDEX IF EXISTS uk_tracking_data_event");
+
+            jdbcTemplate.execute("CREATE TABLE " + PARENT + " (LIKE " + legacy + " INCLUDING DEFAULTS)" +
+                " PARTITION BY RANGE (timestamp)");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ALTER COLUMN id SET DEFAULT nextval('" + PARENT + "_id_seq')");
+            jdbcTemplate.execute("ALTER SEQUENCE " + PARENT + "_id_seq OWNED BY " + PARENT + ".id");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ADD PRIMARY KEY (id, timestamp)");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ADD FOREIGN KEY (vehicle_id) REFERENCES vehicles (id)");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + legacy +
+                " FOR VALUES FROM (MINVALUE) TO ('" + boundary + "')");
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + PARENT + " DEFAULT");
+            jdbcTemplate.execute("CREATE INDEX idx_tracking_data_vehicle_timestamp_id ON " + PARENT + " (vehicle_id, timestamp, id)");
+            jdbcTemplate.execute("CREATE UNIQUE INDEX uk_tracking_data_event ON " + PARENT + " (vehicle_id, event_id, timestamp)");
+            log.info("Table {} convertie en table partitionnée (historique existant jusqu'à {})", PARENT, boundary);
+        });
+    }
+
+    public enum PartitionInterval {
+        DAILY,
+        MONTHLY;
+
+        LocalDate periodStart(LocalDate date) {
+            return this == DAILY ? date : date.with(TemporalAdjusters.firstDayOfMonth());
+        }
+
+        LocalDate next(LocalDate start) {
+            return this == DAILY ? start.plusDays(1) : start.plusMonths(1);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackPoint;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Simplification en flux d'une trajectoire ordonnée dans le temps :
+// 1. sous-échantillonnage optionnel par tranches de temps ;
+// 2. Douglas-Peucker optionnel par fenêtres bornées.
+// Le premier et le dernier point, les départs/arrêts et les pics de vitesse sont conservés tant que
+// maxPoints le permet : ce plafond est strict, une dernière passe le garantit.
+final class TrajectorySimplifier {
+    static final double STOP_SPEED_KMH = 3.0;
+    private static final int WINDOW_SIZE = 10_000;
+    private static final double EQUATOR_METERS_PER_PIXEL = 156_543.03392;
+
+    private final double toleranceMeters;
+    private final Integer zoom;
+    private final LocalDateTime bucketOrigin;
+    private final long bucketNanos;
+
+    private final List<TrackPoint> output = new ArrayList<>();
+    // Points de départ/arrêt ou pics de vitesse parmi output, prioritaires lors de la décimation finale
+    private final List<Boolean> outputForced = new ArrayList<>();
+    private long sourcePoints;
+
+    private TrajectorySimplifier(Double toleranceMeters, Integer zoom, LocalDateTime start, Duration bucket) {
+        this.toleranceMeters = toleranceMeters == null ? 0 : toleranceMeters;
+        this.zoom = zoom;
+        this.bucketOrigin = start;
+        this.bucketNanos = bucket == null ? 0 : Math.max(1, bucket.toNanos());
+    }
+
+    static Result simplify(Iterator<TrackPoint> points, Double toleranceMeters, Integer maxPoints, Integer zoom,
+                           LocalDateTime start, LocalDateTime end) {
+        // Chaque tranche émet au plus deux points hors départs/arrêts : maxPoints / 2 tranches
+        Duration bucket = maxPoints == null || maxPoints <= 0 ? null
+            : Duration.between(start, end).dividedBy(Math.max(1, maxPoints / 2));
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(toleranceMeters, zoom, start, bucket);
+        simplifier.run(points);
+        List<TrackPoint> result = maxPoints == null || maxPoints <= 0 ? simplifier.output : simplifier.capTo(maxPoints);
+        return new Result(result, simplifier.sourcePoints);
+    }
+
+    // Les départs/arrêts ne sont pas limités par les tranches : sur une trace à arrêts fréquents le
+    // résultat peut dépasser maxPoints. Il est alors découpé en maxPoints groupes consécutifs dont
+    // on garde un point chacun (premier et dernier points inclus), par priorité : point forcé, puis vitesse
+    private List<TrackPoint> capTo(int maxPoints) {
+        int size = output.size();
+        if (size <= maxPoints) {
+            return output;
+        }
+        if (maxPoints == 1) {
+            return List.of(output.get(size - 1));
+        }
+        List<TrackPoint> capped = new ArrayList<>(maxPoints);
+        capped.add(output.get(0));
+        // Les points intérieurs [1, size - 1) sont répartis entre maxPoints - 2 groupes
+        int interior = size - 2;
+        int groups = maxPoints - 2;
+        for (int group = 0; group < groups; group++) {
+            int from = 1 + (int) ((long) group * interior / groups);
+            int to = 1 + (int) ((long) (group + 1) * interior / groups);
+            int best = from;
+            for (int i = from + 1; i < to; i++) {
+                if (outranks(i, best)) {
+                    best = i;
+                }
+            }
+            capped.add(output.get(best));
+        }
+        capped.add(output.get(size - 1));
+        return capped;
+    }
+
+    private boolean outranks(int candidate, int current) {
+        boolean candidateForced = outputForced.get(candidate);
+        boolean currentForced = outputForced.get(current);
+        if (candidateForced != currentForced) {
+            return candidateForced;
+        }
+        return speed(output.get(candidate)) > speed(output.get(current));
+    }
+
+    private void run(Iterator<TrackPoint> points) {
+        Bucketer bucketer = new Bucketer(new Window());
+        // Un point de retard pour marquer les deux côtés d'un départ ou d'un arrêt
+        TrackPoint pending = null;
+        boolean pendingForced = true;
+        while (points.hasNext()) {
+            TrackPoint point = points.next();
+            sourcePoints++;
+            if (point.latitude() == null || point.longitude() == null) {
+                continue;
+            }
+            boolean transition = pending != null && isMoving(pending) != isMoving(point);
+            if (pending != null) {
+                bucketer.accept(pending, pendingForced || transition);
+            }
+            pendingForced = pending == null || transition;
+            pending = point;
+        }
+        if (pending != null) {
+            bucketer.accept(pending, true);
+        }
+        bucketer.finish();
+    }
+
+    private static boolean isMoving(TrackPoint point) {
+        return point.speed() != null && point.speed() >= STOP_SPEED_KMH;
+    }
+
+    private static double speed(TrackPoint point) {
+        return point.speed() == null ? -1 : point.speed();
+    }
+
+    // Étape 1 : une tranche de temps ne garde que ses points forcés, son pic de vitesse et son dernier point
+    private final class Bucketer {
+        private final Window next;
+        private long currentBucket = Long.MIN_VALUE;
+        // Points forcés de la tranche, dans l'ordre d'arrivée (chronologique)
+        private final List<TrackPoint> forced = new ArrayList<>();
+        private TrackPoint fastest;
+        private boolean fastestForced;
+        private TrackPoint last;
+        private boolean lastForced;
+
+        private Bucketer(Window next) {
+            this.next = next;
+        }
+
+        void accept(TrackPoint point, boolean isForced) {
+            if (bucketNanos == 0) {
+                next.accept(point, isForced);
+                return;
+            }
+            long bucket = Duration.between(bucketOrigin, point.timestamp()).toNanos() / bucketNanos;
+            if (bucket != currentBucket) {
+                flush();
+                currentBucket = bucket;
+            }
+            if (isForced) {
+                forced.add(point);
+            }
+            if (fastest == null || speed(point) > speed(fastest)) {
+                fastest = point;
+                fastestForced = isForced;
+            }
+            last = point;
+            lastForced = isForced;
+        }
+
+        void finish() {
+            flush();
+            next.finish();
+        }
+
+        private void flush() {
+            if (last == null) {
+                return;
+            }
+            // Émission dans l'ordre chronologique, sans doublon : le pic de vitesse est inséré parmi les points
+            // forcés s'il n'en fait pas partie, le dernier point vient en dernier. Une tranche peut contenir
+            // tous les départs/arrêts de la plage : aucune recherche dans la liste
+            boolean fastestPending = !fastestForced;
+            for (TrackPoint point : forced) {
+                if (fastestPending && point.timestamp().isAfter(fastest.timestamp())) {
+                    next.accept(fastest, true);
+                    fastestPending = false;
+                }
+                next.accept(point, true);
+            }
+            if (fastestPending) {
+                next.accept(fastest, true);
+            }
+            if (!lastForced && last != fastest) {
+                next.accept(last, false);
+            }
+            forced.clear();
+            fastest = null;
+            last = null;
+        }
+    }
+
+    // Étape 2 : Douglas-Peucker par fenêtres bornées, les points forcés servant d'ancres
+    private final class Window {
+        private final List<TrackPoint> points = new ArrayList<>();
+        private final List<Boolean> forced = new ArrayList<>();
+        private double tolerance = -1;
+        private TrackPoint lastEmitted;
+
+        void accept(TrackPoint point, boolean isForced) {
+            if (tolerance < 0) {
+                tolerance = zoom == null ? toleranceMeters
+                    : Math.max(toleranceMeters, EQUATOR_METERS_PER_PIXEL * Math.cos(Math.toRadians(point.latitude())) / Math.pow(2, zoom));
+            }
+            if (tolerance <= 0) {
+                emit(point, isForced);
+                return;
+            }
+            points.add(point);
+            forced.add(isForced);
+            if (points.size() >= WINDOW_SIZE) {
+                process(false);
+            }
+        }
+
+        void finish() {
+            if (!points.isEmpty()) {
+                process(true);
+            }
+        }
+
+        private void process(boolean last) {
+            int size = points.size();
+            boolean[] keep = new boolean[size];
+            keep[0] = true;
+            keep[size - 1] = true;
+            int fastest = 0;
+            for (int i = 0; i < size; i++) {
+                keep[i] |= forced.get(i);
+                if (speed(points.get(i)) > speed(points.get(fastest))) {
+                    fastest = i;
+                }
+            }
+            keep[fastest] = true;
+
+            // Douglas-Peucker entre chaque paire d'ancres consécutives
+            int anchor = 0;
+            for (int i = 1; i < size; i++) {
+                if (keep[i]) {
+                    douglasPeucker(anchor, i, keep);
+                    anchor = i;
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                if (keep[i]) {
+                    emit(points.get(i), forced.get(i) || i == fastest);
+                }
+            }
+
+            // Le dernier point reste l'ancre de départ de la fenêtre suivante
+            TrackPoint carry = points.get(size - 1);
+            points.clear();
+            forced.clear();
+            if (!last) {
+                points.add(carry);
+                forced.add(true);
+            }
+        }
+
+        private void douglasPeucker(int first, int last, boolean[] keep) {
+            // Version itérative pour éviter une pile d'appels profonde sur les longues fenêtres
+            int[] stack = new int[2 * (last - first + 1)];
+            int top = 0;
+            stack[top++] = first;
+            stack[top++] = last;
+            while (top > 0) {
+                int end = stack[--top];
+                int start = stack[--top];
+                double maxDistance = 0;
+                int index = -1;
+                for (int i = start + 1; i < end; i++) {
+                    double distance = perpendicularDistance(points.get(i), points.get(start), points.get(end));
+                    if (distance > maxDistance) {
+                        maxDistance = distance;
+                        index = i;
+                    }
+                }
+                if (index >= 0 && maxDistance > tolerance) {
+                    keep[index] = true;
+                    stack[top++] = start;
+                    stack[top++] = index;
+                    stack[top++] = index;
+                    stack[top++] = end;
+                }
+            }
+        }
+
+        private void emit(TrackPoint point, boolean isForced) {
+            if (lastEmitted != point) {
+                output.add(point);
+                outputForced.add(isForced);
+                lastEmitted = point;
+            }
+        }
+    }
+
+    // Distance en mètres du point au segment [a, b], en projection équirectangulaire locale
+    static double perpendicularDistance(TrackPoint p, TrackPoint a, TrackPoint b) {
+        double cosLat = Math.cos(Math.toRadians(a.latitude()));
+        double bx = Math.toRadians(b.longitude() - a.longitude()) * cosLat * GeoDistance.EARTH_RADIUS_M;
+        double by = Math.toRadians(b.latitude() - a.latitude()) * GeoDistance.EARTH_RADIUS_M;
+        double px = Math.toRadians(p.longitude() - a.longitude()) * cosLat * GeoDistance.EARTH_RADIUS_M;
+        double py = Math.toRadians(p.latitude() - a.latitude()) * GeoDistance.EARTH_RADIUS_M;
+        double lengthSquared = bx * bx + by * by;
+        if (lengthSquared == 0) {
+            return Math.hypot(px, py);
+        }
+        double t = Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared));
+        return Math.hypot(px - t * bx, py - t * by);
+    }
+
+    record Result(List<TrackPoint> points, long sourcePoints) {}
+}
@@ -0,0 +1,166 @@
+package com.gpstracking.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Découpage incrémental des points d'un véhicule en trajets : un trajet commence au premier mouvement
+// et se termine après un arrêt prolongé ou une perte de signal. Non thread-safe : un appel à la fois par véhicule.
+final class TripSegmenter {
+    private final Thresholds thresholds;
+    // Dernier point localisé accepté
+    private Point last;
+    // Trajet en cours, null à l'arrêt
+    private OpenTrip trip;
+
+    TripSegmenter(Thresholds thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    // Reprise d'un trajet resté ouvert (redémarrage) ou d'une dernière position connue
+    static TripSegmenter resume(Thresholds thresholds, Segment open) {
+        TripSegmenter segmenter = new TripSegmenter(thresholds);
+        Point end = new Point(open.endTime(), open.endLatitude(), open.endLongitude());
+        segmenter.last = end;
+        if (open.status() == Status.OPEN) {
+            segmenter.trip = new OpenTrip(new Point(open.startTime(), open.startLatitude(), open.startLongitude()));
+            segmenter.trip.lastMoving = end;
+            segmenter.trip.distanceKm = open.distanceKm();
+            segmenter.trip.maxSpeed = open.maxSpeed();
+            segmenter.trip.pointCount = open.pointCount();
+        }
+        return segmenter;
+    }
+
+    static TripSegmenter at(Thresholds thresholds, LocalDateTime timestamp, double latitude, double longitude) {
+        TripSegmenter segmenter = new TripSegmenter(thresholds);
+        segmenter.last = new Point(timestamp, latitude, longitude);
+        return segmenter;
+    }
+
+    // Renvoie le trajet clos (ou écarté) par ce point, sinon null
+    Segment accept(LocalDateTime timestamp, Double latitude, Double longitude, Double speed) {
+        if (timestamp == null || latitude == null || longitude == null) {
+            return null;
+        }
+        // Un point arrivé en retard est ignoré ; la reconstruction le replace dans l'ordre
+        if (last != null && !timestamp.isAfter(last.timestamp())) {
+            return null;
+        }
+        Point point = new Point(timestamp, latitude, longitude);
+        Point previous = last;
+        Segment closed = null;
+        if (previous != null && Duration.between(previous.timestamp(), timestamp).compareTo(thresholds.maxGap()) > 0) {
+            // Perte de signal : le trajet s'arrête au dernier mouvement connu
+            closed = close();
+            previous = null;
+        }
+
+        double step = previous == null ? 0
+            : GeoDistance.haversineKm(previous.latitude(), previous.longitude(), latitude, longitude);
+        boolean moving = isMoving(previous, point, step, speed);
+        if (trip == null) {
+            if (moving) {
+                // Le trajet part de la dernière position d'arrêt connue
+                trip = new OpenTrip(previous != null ? previous : point);
+                if (previous != null) {
+                    trip.add(point, step, speed, true);
+                }
+            }
+        } else {
+            trip.add(point, step, speed, moving);
+            if (!moving && !Duration.between(trip.lastMoving.timestamp(), timestamp).minus(thresholds.stopDwell()).isNegative()) {
+                closed = close();
+            }
+        }
+        last = point;
+        return closed;
+    }
+
+    // Trajet en cours tel qu'il serait enregistré s'il se terminait au dernier mouvement
+    Segment current() {
+        return trip == null ? null : trip.toSegment(Status.OPEN);
+    }
+
+    private Segment close() {
+        OpenTrip closing = trip;
+        trip = null;
+        if (closing == null) {
+            return null;
+        }
+        // Les déplacements trop courts (dérive GPS à l'arrêt) sont écartés
+        return closing.toSegment(closing.distanceKm < thresholds.minDistanceKm() ? Status.DISCARDED : Status.CLOSED);
+    }
+
+    private boolean isMoving(Point previous, Point point, double step, Double speed) {
+        if (speed != null) {
+            return speed >= thresholds.movingSpeedKmh();
+        }
+        if (previous == null) {
+            return false;
+        }
+        // Sans vitesse mesurée, vitesse moyenne depuis le point précédent
+        double hours = Duration.between(previous.timestamp(), point.timestamp()).toMillis() / 3_600_000.0;
+        return hours > 0 && step / hours >= thresholds.movingSpeedKmh();
+    }
+
+    record Thresholds(double movingSpeedKmh, Duration stopDwell, Duration maxGap, double minDistanceKm) {}
+
+    enum Status {
+        OPEN,
+        CLOSED,
+        DISCARDED
+    }
+
+    record Segment(
+        LocalDateTime startTime,
+        double startLatitude,
+        double startLongitude,
+        LocalDateTime endTime,
+        double endLatitude,
+        double endLongitude,
+        double distanceKm,
+        Double maxSpeed,
+        int pointCount,
+        Status status
+    ) {}
+
+    private record Point(LocalDateTime timestamp, double latitude, double longitude) {}
+
+    private static final class OpenTrip {
+        private final Point start;
+        private Point lastMoving;
+        // Cumuls arrêtés au dernier mouvement : l'attente avant clôture n'est pas comptée
+        private double distanceKm;
+        private Double maxSpeed;
+        private int pointCount;
+        private double pendingDistanceKm;
+        private int pendingPoints;
+
+        OpenTrip(Point start) {
+            this.start = start;
+            this.lastMoving = start;
+            this.pointCount = 1;
+        }
+
+        void add(Point point, double step, Double speed, boolean moving) {
+            pendingDistanceKm += step;
+            pendingPoints++;
+            if (moving) {
+                distanceKm += pendingDistanceKm;
+                pointCount += pendingPoints;
+                pendingDistanceKm = 0;
+                pendingPoints = 0;
+                lastMoving = point;
+                if (speed != null && (maxSpeed == null || speed > maxSpeed)) {
+                    maxSpeed = speed;
+                }
+            }
+        }
+
+        Segment toSegment(Status status) {
+            return new Segment(start.timestamp(), start.latitude(), start.longitude(),
+                lastMoving.timestamp(), lastMoving.latitude(), lastMoving.longitude(),
+                distanceKm, maxSpeed, pointCount, status);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackPoint;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.model.Trip;
+import com.gpstracking.repository.TripRepository;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import com.gpstracking.service.TripSegmenter.Segment;
+import com.gpstracking.service.TripSegmenter.Status;
+import com.gpstracking.service.TripSegmenter.Thresholds;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Trajets et arrêts calculés à l'ingestion : la consultation lit les résumés, pas les points bruts
+@Service
+public class TripService implements TrackingDataListener {
+    private static final Logger log = LoggerFactory.getLogger(TripService.class);
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String UPSERT =
+        "INSERT INTO trips (vehicle_id, start_time, start_latitude, start_longitude, end_time, end_latitude, " +
+        "end_longitude, distance_km, max_speed, point_count, in_progress) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (vehicle_id, start_time) DO UPDATE SET " +
+        "end_time = EXCLUDED.end_time, end_latitude = EXCLUDED.end_latitude, end_longitude = EXCLUDED.end_longitude, " +
+        "distance_km = EXCLUDED.distance_km, max_speed = EXCLUDED.max_speed, " +
+        "point_count = EXCLUDED.point_count, in_progress = EXCLUDED.in_progress";
+
+    private static final String DELETE = "DELETE FROM trips WHERE vehicle_id = ? AND start_time = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VehicleRepository vehicleRepository;
+    private final TripRepository tripRepository;
+    private final LatestPositionStore latestPositionStore;
+    private final TrackingArchiveService trackingArchiveService;
+
+    // Vitesse (km/h) à partir de laquelle le véhicule est considéré en mouvement
+    @Value("${tracking.trips.moving-speed-kmh:5}")
+    private double movingSpeedKmh;
+
+    // Durée d'arrêt qui termine un trajet
+    @Value("${tracking.trips.stop-dwell-seconds:300}")
+    private long stopDwellSeconds;
+
+    // Intervalle sans point au-delà duquel le trajet est terminé au dernier mouvement
+    @Value("${tracking.trips.max-gap-seconds:900}")
+    private long maxGapSeconds;
+
+    @Value("${tracking.trips.min-distance-km:0.2}")
+    private double minDistanceKm;
+
+    private Thresholds thresholds;
+    // État de découpage par véhicule
+    private final Map<Long, TripSegmenter> segmenters = new ConcurrentHashMap<>();
+    // Dernière version de chaque trajet modifié, en attente d'écriture
+    private final Map<TripKey, Segment> pending = new ConcurrentHashMap<>();
+    // Points reçus pendant la reconstruction d'un véhicule, rejoués sur le nouveau découpage
+    private final Map<Long, List<TrackingData>> rebuilding = new ConcurrentHashMap<>();
+
+    public TripService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            VehicleRepository vehicleRepository,
+            TripRepository tripRepository,
+            LatestPositionStore latestPositionStore,
+            TrackingArchiveService trackingArchiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vehicleRepository = vehicleRepository;
+        this.tripRepository = tripRepository;
+        this.latestPositionStore = latestPositionStore;
+        this.trackingArchiveService = trackingArchiveService;
+    }
+
+    // Reprise des trajets restés ouverts, sinon de la dernière position connue
+    @PostConstruct
+    void seedSegmenters() {
+        thresholds = new Thresholds(movingSpeedKmh, Duration.ofSeconds(stopDwellSeconds),
+            Duration.ofSeconds(maxGapSeconds), minDistanceKm);
+        for (Trip trip : tripRepository.findByInProgressTrue()) {
+            segmenters.put(trip.getVehicleId(), TripSegmenter.resume(thresholds, toSegment(trip)));
+        }
+        for (LatestPosition position : latestPositionStore.snapshot()) {
+            if (position.latitude() != null && position.longitude() != null) {
+                segmenters.computeIfAbsent(position.vehicleId(), id ->
+                    TripSegmenter.at(thresholds, position.timestamp(), position.latitude(), position.longitude()));
+            }
+        }
+    }
+
+    @Override
+    public void onTrackingData(Long vehicleId, TrackingData data) {
+        // Calcul atomique par véhicule : plusieurs threads d'écriture peuvent livrer le même véhicule
+        segmenters.compute(vehicleId, (id, segmenter) -> {
+            List<TrackingData> buffered = rebuilding.get(id);
+            if (buffered != null) {
+                buffered.add(data);
+                return segmenter;
+            }
+            TripSegmenter target = segmenter == null ? new TripSegmenter(thresholds) : segmenter;
+            accept(id, target, data);
+            return target;
+        });
+    }
+
+    private void accept(Long vehicleId, TripSegmenter segmenter, TrackingData data) {
+        Segment closed = segmenter.accept(data.getTimestamp(), data.getLatitude(), data.getLongitude(), data.getSpeed());
+        if (closed != null) {
+            pending.put(new TripKey(vehicleId, closed.startTime()), closed);
+        }
+        Segment current = segmenter.current();
+        if (current != null) {
+            pending.put(new TripKey(vehicleId, current.startTime()), current);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.trips.flush-interval-ms:5000}")
+    public void flush() {
+        Map<TripKey, Segment> batch = new HashMap<>();
+        for (TripKey key : pending.keySet()) {
+            Segment segment = pending.remove(key);
+            if (segment != null) {
+                batch.put(key, segment);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Map.Entry<TripKey, Segment> entry : batch.entrySet()) {
+            if (entry.getValue().status() == Status.DISCARDED) {
+                deletes.add(new Object[] {entry.getKey().vehicleId(), Timestamp.valueOf(entry.getKey().startTime())});
+            } else {
+                upserts.add(toRow(entry.getKey().vehicleId(), entry.getValue()));
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deletes.isEmpty()) {
+                    jdbcTemplate.batchUpdate(DELETE, deletes);
+                }
+                if (!upserts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT, upserts);
+                }
+            });
+        } catch (DataAccessException e) {
+            // Remis en attente sauf si une version plus récente est déjà arrivée
+            log.error("Erreur lors de l'écriture de {} trajets", batch.size(), e);
+            batch.forEach(pending::putIfAbsent);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    // Trajets chevauchant la période ; les arrêts sont les intervalles entre trajets consécutifs
+    public TripTimeline getTrips(Long vehicleId, Long userId, LocalDateTime startDate, LocalDateTime endDate) {
+        checkOwnership(vehicleId, userId);
+        List<Trip> trips = tripRepository.findTrips(vehicleId, startDate, endDate);
+        List<Stop> stops = new ArrayList<>(Math.max(0, trips.size() - 1));
+        for (int i = 1; i < trips.size(); i++) {
+            Trip previous = trips.get(i - 1);
+            Trip next = trips.get(i);
+            stops.add(new Stop(previous.getEndTime(), next.getStartTime(),
+                Duration.between(previous.getEndTime(), next.getStartTime()).toSeconds(),
+                previous.getEndLatitude(), previous.getEndLongitude()));
+        }
+        return new TripTimeline(trips, stops);
+    }
+
+    // Le détail relit les points du seul trajet, simplifiés si maxPoints est fourni
+    @Transactional(readOnly = true)
+    public TripDetail getTrip(Long vehicleId, Long userId, Long tripId, Integer maxPoints) {
+        checkOwnership(vehicleId, userId);
+        Trip trip = tripRepository.findByIdAndVehicleId(tripId, vehicleId)
+                .orElseThrow(() -> new IllegalArgumentException("Trip not found"));
+        try (Stream<TrackPoint> points = trackingArchiveService.streamTrackPoints(
+                vehicleId, trip.getStartTime(), trip.getEndTime())) {
+            TrajectorySimplifier.Result result = TrajectorySimplifier.simplify(
+                points.iterator(), null, maxPoints, null, trip.getStartTime(), trip.getEndTime());
+            return new TripDetail(trip, result.points());
+        }
+    }
+
+    // Redécoupe l'historique d'un véhicule (mise en place initiale, points arrivés en retard), archive comprise ;
+    // les trajets commencés avant l'archive sont conservés et la reprise se fait à la fin du dernier d'entre eux
+    public void rebuild(Long vehicleId) {
+        if (rebuilding.putIfAbsent(vehicleId, new ArrayList<>()) != null) {
+            throw new IllegalArgumentException("Trips are already being rebuilt for this vehicle");
+        }
+        TripSegmenter segmenter = null;
+        try {
+            flush();
+            LocalDateTime archivedBefore = trackingArchiveService.archivedBefore(vehicleId);
+            Trip kept = archivedBefore == null ? null : tripRepository
+                .findFirstByVehicleIdAndInProgressFalseAndStartTimeBeforeOrderByStartTimeDesc(vehicleId, archivedBefore)
+                .orElse(null);
+            LocalDateTime from = kept == null ? HISTORY_START : kept.getEndTime();
+            TripSegmenter rebuilt = kept == null ? new TripSegmenter(thresholds)
+                : TripSegmenter.at(thresholds, kept.getEndTime(), kept.getEndLatitude(), kept.getEndLongitude());
+            int written = transactionTemplate.execute(status -> {
+                tripRepository.deleteFrom(vehicleId, from);
+                List<Object[]> rows = new ArrayList<>();
+                int count = 0;
+                try (Stream<TrackPoint> points = trackingArchiveService.streamTrackPoints(
+                        vehicleId, from, LocalDateTime.now().plusDays(1))) {
+                    Iterator<TrackPoint> iterator = points.iterator();
+                    while (iterator.hasNext()) {
+                        TrackPoint point = iterator.next();
+                        Segment closed = rebuilt.accept(point.timestamp(), point.latitude(), point.longitude(), point.speed());
+                        if (closed != null && closed.status() == Status.CLOSED) {
+                            rows.add(toRow(vehicleId, closed));
+                        }
+                        if (rows.size() >= REBUILD_BATCH_SIZE) {
+                            jdbcTemplate.batchUpdate(UPSERT, rows);
+                            count += rows.size();
+                            rows.clear();
+                        }
+                    }
+                }
+                Segment current = rebuilt.current();
+                if (current != null) {
+                    rows.add(toRow(vehicleId, current));
+                }
+                if (!rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPSERT, rows);
+                    count += rows.size();
+                }
+                return count;
+            });
+            segmenter = rebuilt;
+            log.info("Trajets du véhicule {} reconstruits : {} trajets", vehicleId, written);
+        } finally {
+            swapSegmenter(vehicleId, segmenter);
+        }
+    }
+
+    // Sous le verrou de onTrackingData : les points reçus pendant la reconstruction sont rejoués sur le
+    // nouveau découpage (ceux déjà relus sont ignorés, plus anciens que son dernier point), ou sur l'ancien en cas d'échec
+    private void swapSegmenter(Long vehicleId, TripSegmenter rebuilt) {
+        segmenters.compute(vehicleId, (id, segmenter) -> {
+            List<TrackingData> buffered = rebuilding.remove(id);
+            TripSegmenter target = rebuilt != null ? rebuilt : segmenter;
+            if (rebuilt != null) {
+                pending.keySet().removeIf(key -> key.vehicleId().equals(id));
+            }
+            if (buffered != null && !buffered.isEmpty()) {
+                if (target == null) {
+                    target = new TripSegmenter(thresholds);
+                }
+                buffered.sort(Comparator.comparing(TrackingData::getTimestamp,
+                    Comparator.nullsFirst(Comparator.naturalOrder())));
+                for (TrackingData data : buffered) {
+                    accept(id, target, data);
+                }
+            }
+            return target;
+        });
+    }
+
+    public void rebuild(Long vehicleId, Long userId) {
+        checkOwnership(vehicleId, userId);
+        rebuild(vehicleId);
+    }
+
+    public void removeVehicle(Long vehicleId) {
+        tripRepository.deleteByVehicleId(vehicleId);
+        segmenters.remove(vehicleId);
+        pending.keySet().removeIf(key -> key.vehicleId().equals(vehicleId));
+    }
+
+    private void checkOwnership(Long vehicleId, Long userId) {
+        if (!vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+    }
+
+    private static Object[] toRow(Long vehicleId, Segment segment) {
+        return new Object[] {
+            vehicleId, Timestamp.valueOf(segment.startTime()), segment.startLatitude(), segment.startLongitude(),
+            Timestamp.valueOf(segment.endTime()), segment.endLatitude(), segment.endLongitude(),
+            segment.distanceKm(), segment.maxSpeed(), segment.pointCount(), segment.status() == Status.OPEN
+        };
+    }
+
+    private static Segment toSegment(Trip trip) {
+        return new Segment(trip.getStartTime(), trip.getStartLatitude(), trip.getStartLongitude(),
+            trip.getEndTime(), trip.getEndLatitude(), trip.getEndLongitude(),
+            trip.getDistanceKm(), trip.getMaxSpeed(), trip.getPointCount(),
+            trip.isInProgress() ? Status.OPEN : Status.CLOSED);
+    }
+
+    private record TripKey(Long vehicleId, LocalDateTime startTime) {}
+
+    public record Stop(LocalDateTime startTime, LocalDateTime endTime, long durationSeconds, double latitude, double longitude) {}
+
+    public record TripTimeline(List<Trip> trips, List<Stop> stops) {}
+
+    public record TripDetail(Trip trip, List<TrackPoint> points) {}
+}
@@ -0,0 +1,189 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.VehiclePurge;
+import com.gpstracking.repository.VehiclePurgeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Suppression différée des véhicules : le véhicule est masqué tout de suite, son historique purgé par lots en arrière-plan
+@Service
+public class VehiclePurgeService {
+    private static final Logger log = LoggerFactory.getLogger(VehiclePurgeService.class);
+    // Passages supplémentaires tolérés si des points arrivent encore pendant la purge
+    private static final int MAX_PASSES = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VehiclePurgeRepository vehiclePurgeRepository;
+    private final TrackingArchiveService trackingArchiveService;
+
+    @Value("${tracking.purge.chunk-size:5000}")
+    private int chunkSize;
+
+    // Pause entre deux lots pour laisser passer l'ingestion et le vacuum
+    @Value("${tracking.purge.pause-ms:50}")
+    private long pauseMs;
+
+    // Une purge à la fois : la charge imposée à la base reste bornée
+    private ExecutorService worker;
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+
+    public VehiclePurgeService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            VehiclePurgeRepository vehiclePurgeRepository,
+            TrackingArchiveService trackingArchiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vehiclePurgeRepository = vehiclePurgeRepository;
+        this.trackingArchiveService = trackingArchiveService;
+    }
+
+    @PostConstruct
+    void start() {
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "vehicle-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.shutdownNow();
+    }
+
+    // Appelée dans la transaction de suppression : la purge ne démarre qu'après validation
+    public void requestPurge(Long vehicleId, Long userId) {
+        jdbcTemplate.update("UPDATE vehicles SET deleted_at = now() WHERE id = ?", vehicleId);
+        vehiclePurgeRepository.save(new VehiclePurge(vehicleId, userId, LocalDateTime.now()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(vehicleId);
+                }
+            });
+        } else {
+            submit(vehicleId);
+        }
+    }
+
+    public List<VehiclePurge> getPurges(Long userId) {
+        return vehiclePurgeRepository.findByUserIdOrderByRequestedAtDesc(userId);
+    }
+
+    // Reprend les purges interrompues (redémarrage, erreur) ; celles déjà en file sont ignorées
+    @Scheduled(fixedDelayString = "${tracking.purge.resume-interval-ms:60000}")
+    public void resumePending() {
+        List<Long> pending = vehiclePurgeRepository.findPendingVehicleIds();
+        for (Long vehicleId : pending) {
+            submit(vehicleId);
+        }
+    }
+
+    private void submit(Long vehicleId) {
+        if (!scheduled.add(vehicleId)) {
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                purge(vehicleId);
+            } catch (DataAccessException e) {
+                log.error("Erreur lors de la purge du véhicule {}, nouvelle tentative plus tard", vehicleId, e);
+            } finally {
+                scheduled.remove(vehicleId);
+            }
+        });
+    }
+
+    private void purge(Long vehicleId) {
+        Long total = jdbcTemplate.queryForObject(
+            "SELECT total_points FROM vehicle_purges WHERE vehicle_id = ?", Long.class, vehicleId);
+        if (total == null) {
+            total = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tracking_data WHERE vehicle_id = ?", Long.class, vehicleId);
+            jdbcTemplate.update("UPDATE vehicle_purges SET total_points = ? WHERE vehicle_id = ?", total, vehicleId);
+        }
+        log.info("Purge de l'historique du véhicule {} : {} points", vehicleId, total);
+
+        for (int pass = 1; pass <= MAX_PASSES; pass++) {
+            if (!deleteTrackingData(vehicleId, total)) {
+                return; // Arrêt de l'application : reprise au prochain démarrage
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.update("DELETE FROM vehicles WHERE id = ?", vehicleId);
+                    jdbcTemplate.update("UPDATE vehicle_purges SET completed_at = now() WHERE vehicle_id = ?", vehicleId);
+                });
+                log.info("Purge du véhicule {} terminée", vehicleId);
+                removeArchive(vehicleId);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Points écrits par la file d'ingestion après le premier passage
+                log.debug("Nouveaux points pour le véhicule {} pendant la purge, passage {}", vehicleId, pass + 1);
+            }
+        }
+        log.warn("Purge du véhicule {} inachevée après {} passages, nouvelle tentative plus tard", vehicleId, MAX_PASSES);
+    }
+
+    // Un échec laisse des segments orphelins, supprimés au prochain passage de l'archivage
+    private void removeArchive(Long vehicleId) {
+        try {
+            trackingArchiveService.removeVehicle(vehicleId);
+        } catch (UncheckedIOException e) {
+            log.warn("Segments archivés du véhicule {} non supprimés : {}", vehicleId, e.getMessage());
+        }
+    }
+
+    // Lots bornés : chaque DELETE et l'avancement sont validés ensemble, sans longue transaction
+    private boolean deleteTrackingData(Long vehicleId, long total) {
+        int deleted;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            deleted = transactionTemplate.execute(status -> {
+                int count = jdbcTemplate.update(
+                    "DELETE FROM tracking_data WHERE (id, timestamp) IN (" +
+                    "SELECT id, timestamp FROM tracking_data WHERE vehicle_id = ? LIMIT ?)",
+                    vehicleId, chunkSize);
+                if (count > 0) {
+                    jdbcTemplate.update(
+                        "UPDATE vehicle_purges SET deleted_points = deleted_points + ? WHERE vehicle_id = ?",
+                        count, vehicleId);
+                }
+                return count;
+            });
+            if (deleted == chunkSize) {
+                log.debug("Purge du véhicule {} : lot de {} points supprimé (total initial {})", vehicleId, deleted, total);
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        } while (deleted == chunkSize);
+        return true;
+    }
+}
@@ -0,0 +1,419 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.model.VehicleRollup;
+import com.gpstracking.model.VehicleRollup.Granularity;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.repository.VehicleRollupRepository;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class VehicleRollupService implements TrackingDataListener {
+    private static final Logger log = LoggerFactory.getLogger(VehicleRollupService.class);
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String UPSERT =
+        "INSERT INTO vehicle_rollups (vehicle_id, granularity, bucket_start, point_count, distance_km, " +
+        "max_speed, speed_sum, speed_count, battery_drain, min_battery, max_battery, " +
+        "min_temperature, max_temperature, first_timestamp, last_timestamp) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (vehicle_id, granularity, bucket_start) DO UPDATE SET " +
+        "point_count = vehicle_rollups.point_count + EXCLUDED.point_count, " +
+        "distance_km = vehicle_rollups.distance_km + EXCLUDED.distance_km, " +
+        "max_speed = GREATEST(vehicle_rollups.max_speed, EXCLUDED.max_speed), " +
+        "speed_sum = vehicle_rollups.speed_sum + EXCLUDED.speed_sum, " +
+        "speed_count = vehicle_rollups.speed_count + EXCLUDED.speed_count, " +
+        "battery_drain = vehicle_rollups.battery_drain + EXCLUDED.battery_drain, " +
+        "min_battery = LEAST(vehicle_rollups.min_battery, EXCLUDED.min_battery), " +
+        "max_battery = GREATEST(vehicle_rollups.max_battery, EXCLUDED.max_battery), " +
+        "min_temperature = LEAST(vehicle_rollups.min_temperature, EXCLUDED.min_temperature), " +
+        "max_temperature = GREATEST(vehicle_rollups.max_temperature, EXCLUDED.max_temperature), " +
+        "first_timestamp = LEAST(vehicle_rollups.first_timestamp, EXCLUDED.first_timestamp), " +
+        "last_timestamp = GREATEST(vehicle_rollups.last_timestamp, EXCLUDED.last_timestamp)";
+
+    // Reconstruction depuis tracking_data : la distance et la décharge entre points consécutifs
+    // sont calculées par LAG, puis agrégées par tranche. La tranche est calculée une seule fois dans la CTE :
+    // deux date_trunc(?, ...) sont deux paramètres distincts pour PostgreSQL, refusés par le GROUP BY
+    private static final String BACKFILL =
+        "WITH points AS (" +
+        "  SELECT date_trunc(?, timestamp) AS bucket, timestamp, latitude, longitude, speed, battery_level, temperature, " +
+        "    LAG(latitude) OVER w AS prev_latitude, LAG(longitude) OVER w AS prev_longitude, " +
+        "    LAG(battery_level) OVER w AS prev_battery " +
+        "  FROM tracking_data WHERE vehicle_id = ? AND timestamp >= ? AND timestamp < ? " +
+        "  WINDOW w AS (ORDER BY timestamp, id)" +
+        "), steps AS (" +
+        "  SELECT *, " +
+        "    CASE WHEN latitude IS NULL OR longitude IS NULL OR prev_latitude IS NULL OR prev_longitude IS NULL THEN 0 " +
+        "    ELSE 2 * " + GeoDistance.EARTH_RADIUS_KM + " * asin(sqrt(" +
+        "      power(sin(radians(latitude - prev_latitude) / 2), 2) + " +
+        "      cos(radians(prev_latitude)) * cos(radians(latitude)) * power(sin(radians(longitude - prev_longitude) / 2), 2)" +
+        "    )) END AS distance_km, " +
+        "    GREATEST(COALESCE(prev_battery - battery_level, 0), 0) AS battery_drop " +
+        "  FROM points" +
+        ") " +
+        "INSERT INTO vehicle_rollups (vehicle_id, granularity, bucket_start, point_count, distance_km, " +
+        "max_speed, speed_sum, speed_count, battery_drain, min_battery, max_battery, " +
+        "min_temperature, max_temperature, first_timestamp, last_timestamp) " +
+        "SELECT ?, ?, bucket, COUNT(*), SUM(distance_km), " +
+        "MAX(speed), COALESCE(SUM(speed), 0), COUNT(speed), SUM(battery_drop), MIN(battery_level), MAX(battery_level), " +
+        "MIN(temperature), MAX(temperature), MIN(timestamp), MAX(timestamp) " +
+        "FROM steps GROUP BY bucket";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VehicleRepository vehicleRepository;
+    private final VehicleRollupRepository vehicleRollupRepository;
+    private final LatestPositionStore latestPositionStore;
+    private final TrackingArchiveService trackingArchiveService;
+
+    @Value("${tracking.rollups.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    // Agrégats en attente d'écriture, fusionnés par tranche
+    private final Map<BucketKey, Accumulator> pending = new ConcurrentHashMap<>();
+    // Dernier point de chaque véhicule, pour la distance et la décharge entre points consécutifs
+    private final Map<Long, LastPoint> lastPoints = new ConcurrentHashMap<>();
+
+    public VehicleRollupService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            VehicleRepository vehicleRepository,
+            VehicleRollupRepository vehicleRollupRepository,
+            LatestPositionStore latestPositionStore,
+            TrackingArchiveService trackingArchiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vehicleRepository = vehicleRepository;
+        this.vehicleRollupRepository = vehicleRollupRepository;
+        this.latestPositionStore = latestPositionStore;
+        this.trackingArchiveService = trackingArchiveService;
+    }
+
+    @PostConstruct
+    void seedLastPoints() {
+        for (LatestPosition position : latestPositionStore.snapshot()) {
+            if (position.latitude() != null && position.longitude() != null) {
+                lastPoints.put(position.vehicleId(), new LastPoint(position.timestamp(),
+                    position.latitude(), position.longitude(), position.batteryLevel()));
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (backfillOnStartup) {
+            Thread thread = new Thread(this::rebuildAll, "rollup-backfill");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void onTrackingData(Long vehicleId, TrackingData data) {
+        LocalDateTime timestamp = data.getTimestamp();
+        if (timestamp == null) {
+            return;
+        }
+        boolean located = data.getLatitude() != null && data.getLongitude() != null;
+        // Calcul atomique par véhicule : plusieurs threads d'écriture peuvent livrer le même véhicule
+        lastPoints.compute(vehicleId, (id, last) -> {
+            // Un point arrivé en retard est compté sans distance ; la reconstruction le replace dans l'ordre
+            boolean inOrder = last != null && timestamp.isAfter(last.timestamp());
+            double distance = inOrder && located
+                ? GeoDistance.haversineKm(last.latitude(), last.longitude(), data.getLatitude(), data.getLongitude())
+                : 0;
+            double batteryDrop = inOrder && last.batteryLevel() != null && data.getBatteryLevel() != null
+                ? Math.max(0, last.batteryLevel() - data.getBatteryLevel())
+                : 0;
+            for (Granularity granularity : Granularity.values()) {
+                BucketKey key = new BucketKey(vehicleId, granularity, granularity.truncate(timestamp));
+                // Ajout sous le verrou de la tranche : flush() ne peut pas la retirer pendant la mise à jour
+                pending.compute(key, (k, accumulator) -> {
+                    Accumulator target = accumulator == null ? new Accumulator() : accumulator;
+                    target.add(data, distance, batteryDrop);
+                    return target;
+                });
+            }
+            if (located && (last == null || inOrder)) {
+                return new LastPoint(timestamp, data.getLatitude(), data.getLongitude(), data.getBatteryLevel());
+            }
+            return last;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.rollups.flush-interval-ms:5000}")
+    public void flush() {
+        List<BucketKey> keys = new ArrayList<>();
+        List<Accumulator> accumulators = new ArrayList<>();
+        for (BucketKey key : pending.keySet()) {
+            Accumulator accumulator = pending.remove(key);
+            if (accumulator != null) {
+                keys.add(key);
+                accumulators.add(accumulator);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            rows.add(accumulators.get(i).toRow(keys.get(i)));
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        } catch (DataAccessException e) {
+            // Les agrégats sont remis en attente pour la prochaine écriture
+            log.error("Erreur lors de l'écriture de {} agrégats", rows.size(), e);
+            for (int i = 0; i < keys.size(); i++) {
+                pending.merge(keys.get(i), accumulators.get(i), Accumulator::merge);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    // Lecture des seuls agrégats : coût proportionnel au nombre de tranches, pas à l'historique
+    public VehicleMetrics getMetrics(
+            Long vehicleId,
+            Long userId,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            Granularity granularity) {
+        if (!vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        List<VehicleRollup> rollups = vehicleRollupRepository.findBuckets(
+            vehicleId, granularity, granularity.truncate(startDate), endDate);
+
+        List<RollupBucket> buckets = new ArrayList<>(rollups.size());
+        double distance = 0;
+        double speedSum = 0;
+        long speedCount = 0;
+        double batteryDrain = 0;
+        Double maxSpeed = null;
+        Double minTemperature = null;
+        Double maxTemperature = null;
+        for (VehicleRollup rollup : rollups) {
+            buckets.add(RollupBucket.of(rollup));
+            distance += rollup.getDistanceKm();
+            speedSum += rollup.getSpeedSum();
+            speedCount += rollup.getSpeedCount();
+            batteryDrain += rollup.getBatteryDrain();
+            maxSpeed = max(maxSpeed, rollup.getMaxSpeed());
+            minTemperature = min(minTemperature, rollup.getMinTemperature());
+            maxTemperature = max(maxTemperature, rollup.getMaxTemperature());
+        }
+
+        LatestPosition current = latestPositionStore.get(vehicleId);
+        return new VehicleMetrics(
+            current == null ? null : current.speed(),
+            current == null ? null : current.batteryLevel(),
+            current == null ? null : current.signalStrength(),
+            current == null ? null : current.temperature(),
+            current == null ? null : current.timestamp(),
+            distance,
+            maxSpeed,
+            speedCount == 0 ? null : speedSum / speedCount,
+            batteryDrain,
+            minTemperature,
+            maxTemperature,
+            granularity,
+            buckets
+        );
+    }
+
+    // Reconstruit les tranches complètes (antérieures à la tranche en cours) d'un véhicule ; les
+    // tranches des jours archivés ne sont plus recalculables depuis la base et sont conservées
+    public void rebuild(Long vehicleId) {
+        // Les agrégats en attente seraient sinon ajoutés une seconde fois aux tranches reconstruites
+        flush();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime archivedBefore = trackingArchiveService.archivedBefore(vehicleId);
+        Timestamp from = Timestamp.valueOf(archivedBefore == null ? HISTORY_START : archivedBefore);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Granularity granularity : Granularity.values()) {
+                Timestamp cutoff = Timestamp.valueOf(granularity.truncate(now));
+                jdbcTemplate.update(
+                    "DELETE FROM vehicle_rollups WHERE vehicle_id = ? AND granularity = ? " +
+                    "AND bucket_start >= ? AND bucket_start < ?",
+                    vehicleId, granularity.name(), from, cutoff);
+                jdbcTemplate.update(BACKFILL, granularity.getSqlUnit(), vehicleId, from, cutoff,
+                    vehicleId, granularity.name());
+            }
+        });
+    }
+
+    public void rebuild(Long vehicleId, Long userId) {
+        if (!vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        rebuild(vehicleId);
+    }
+
+    // Un véhicule par transaction : la reconstruction peut être interrompue et relancée
+    public void rebuildAll() {
+        List<Long> vehicleIds = jdbcTemplate.queryForList("SELECT id FROM vehicles WHERE deleted_at IS NULL ORDER BY id", Long.class);
+        log.info("Reconstruction des agrégats pour {} véhicules", vehicleIds.size());
+        for (Long vehicleId : vehicleIds) {
+            try {
+                rebuild(vehicleId);
+            } catch (DataAccessException e) {
+                log.error("Erreur lors de la reconstruction des agrégats du véhicule {}", vehicleId, e);
+            }
+        }
+        log.info("Reconstruction des agrégats terminée");
+    }
+
+    public void removeVehicle(Long vehicleId) {
+        vehicleRollupRepository.deleteByVehicleId(vehicleId);
+        lastPoints.remove(vehicleId);
+        pending.keySet().removeIf(key -> key.vehicleId().equals(vehicleId));
+    }
+
+    private static Double min(Double current, Double candidate) {
+        return candidate == null || (current != null && current <= candidate) ? current : candidate;
+    }
+
+    private static Double max(Double current, Double candidate) {
+        return candidate == null || (current != null && current >= candidate) ? current : candidate;
+    }
+
+    private record BucketKey(Long vehicleId, Granularity granularity, LocalDateTime bucketStart) {}
+
+    private record LastPoint(LocalDateTime timestamp, double latitude, double longitude, Double batteryLevel) {}
+
+    private static final class Accumulator {
+        private long pointCount;
+        private double distanceKm;
+        private Double maxSpeed;
+        private double speedSum;
+        private long speedCount;
+        private double batteryDrain;
+        private Double minBattery;
+        private Double maxBattery;
+        private Double minTemperature;
+        private Double maxTemperature;
+        private LocalDateTime firstTimestamp;
+        private LocalDateTime lastTimestamp;
+
+        synchronized void add(TrackingData data, double distance, double batteryDrop) {
+            pointCount++;
+            distanceKm += distance;
+            batteryDrain += batteryDrop;
+            if (data.getSpeed() != null) {
+                maxSpeed = max(maxSpeed, data.getSpeed());
+                speedSum += data.getSpeed();
+                speedCount++;
+            }
+            minBattery = min(minBattery, data.getBatteryLevel());
+            maxBattery = max(maxBattery, data.getBatteryLevel());
+            minTemperature = min(minTemperature, data.getTemperature());
+            maxTemperature = max(maxTemperature, data.getTemperature());
+            if (firstTimestamp == null || data.getTimestamp().isBefore(firstTimestamp)) {
+                firstTimestamp = data.getTimestamp();
+            }
+            if (lastTimestamp == null || data.getTimestamp().isAfter(lastTimestamp)) {
+                lastTimestamp = data.getTimestamp();
+            }
+        }
+
+        synchronized Accumulator merge(Accumulator other) {
+            pointCount += other.pointCount;
+            distanceKm += other.distanceKm;
+            batteryDrain += other.batteryDrain;
+            maxSpeed = max(maxSpeed, other.maxSpeed);
+            speedSum += other.speedSum;
+            speedCount += other.speedCount;
+            minBattery = min(minBattery, other.minBattery);
+            maxBattery = max(maxBattery, other.maxBattery);
+            minTemperature = min(minTemperature, other.minTemperature);
+            maxTemperature = max(maxTemperature, other.maxTemperature);
+            if (other.firstTimestamp.isBefore(firstTimestamp)) {
+                firstTimestamp = other.firstTimestamp;
+            }
+            if (other.lastTimestamp.isAfter(lastTimestamp)) {
+                lastTimestamp = other.lastTimestamp;
+            }
+            return this;
+        }
+
+        synchronized Object[] toRow(BucketKey key) {
+            return new Object[] {
+                key.vehicleId(), key.granularity().name(), Timestamp.valueOf(key.bucketStart()),
+                pointCount, distanceKm, maxSpeed, speedSum, speedCount, batteryDrain,
+                minBattery, maxBattery, minTemperature, maxTemperature,
+                Timestamp.valueOf(firstTimestamp), Timestamp.valueOf(lastTimestamp)
+            };
+        }
+    }
+
+    public record RollupBucket(
+        LocalDateTime bucketStart,
+        long pointCount,
+        double distance,
+        Double maxSpeed,
+        Double averageSpeed,
+        double batteryDrain,
+        Double minBattery,
+        Double maxBattery,
+        Double minTemperature,
+        Double maxTemperature
+    ) {
+        static RollupBucket of(VehicleRollup rollup) {
+            return new RollupBucket(
+                rollup.getBucketStart(),
+                rollup.getPointCount(),
+                rollup.getDistanceKm(),
+                rollup.getMaxSpeed(),
+                rollup.getSpeedCount() == 0 ? null : rollup.getSpeedSum() / rollup.getSpeedCount(),
+                rollup.getBatteryDrain(),
+                rollup.getMinBattery(),
+                rollup.getMaxBattery(),
+                rollup.getMinTemperature(),
+                rollup.getMaxTemperature()
+            );
+        }
+    }
+
+    // Champs courants issus de la dernière position, agrégats issus des tranches
+    public record VehicleMetrics(
+        Double currentSpeed,
+        Double batteryLevel,
+        String signalStrength,
+        Double temperature,
+        LocalDateTime lastUpdate,
+        double distance,
+        Double maxSpeed,
+        Double averageSpeed,
+        double batteryDrain,
+        Double minTemperature,
+        Double maxTemperature,
+        Granularity granularity,
+        List<RollupBucket> buckets
+    ) {}
+}
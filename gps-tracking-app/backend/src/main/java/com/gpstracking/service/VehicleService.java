@@ -1,37 +1,98 @@
 package com.gpstracking.service;
 
+import com.gpstracking.model.TrackPoint;
 import com.gpstracking.model.TrackingData;
 import com.gpstracking.model.User;
 import com.gpstracking.model.Vehicle;
+import com.gpstracking.model.VehiclePurge;
 import com.gpstracking.repository.TrackingDataRepository;
 import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.repository.VehicleRepository.VehicleOverviewRow;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class VehicleService {
+    private static final int MAX_CURSOR_PAGE_SIZE = 5000;
+    // Plafond d'une trajectoire simplifiée, renvoyée en une fois
+    private static final int MAX_SIMPLIFIED_POINTS = 10_000;
+
     private final VehicleRepository vehicleRepository;
     private final TrackingDataRepository trackingDataRepository;
+    private final TrackingIngestionService trackingIngestionService;
+    private final DeviceRegistryService deviceRegistryService;
+    private final LatestPositionStore latestPositionStore;
+    private final VehicleRollupService vehicleRollupService;
+    private final VehicleSpatialIndex vehicleSpatialIndex;
+    private final GeofenceService geofenceService;
+    private final VehiclePurgeService vehiclePurgeService;
+    private final TripService tripService;
+    private final TrackingArchiveService trackingArchiveService;
 
-    public VehicleService(VehicleRepository vehicleRepository, TrackingDataRepository trackingDataRepository) {
+    public VehicleService(
+            VehicleRepository vehicleRepository,
+            TrackingDataRepository trackingDataRepository,
+            TrackingIngestionService trackingIngestionService,
+            DeviceRegistryService deviceRegistryService,
+            LatestPositionStore latestPositionStore,
+            VehicleRollupService vehicleRollupService,
+            VehicleSpatialIndex vehicleSpatialIndex,
+            GeofenceService geofenceService,
+            VehiclePurgeService vehiclePurgeService,
+            TripService tripService,
+            TrackingArchiveService trackingArchiveService) {
         this.vehicleRepository = vehicleRepository;
         this.trackingDataRepository = trackingDataRepository;
+        this.trackingIngestionService = trackingIngestionService;
+        this.deviceRegistryService = deviceRegistryService;
+        this.latestPositionStore = latestPositionStore;
+        this.vehicleRollupService = vehicleRollupService;
+        this.vehicleSpatialIndex = vehicleSpatialIndex;
+        this.geofenceService = geofenceService;
+        this.vehiclePurgeService = vehiclePurgeService;
+        this.tripService = tripService;
+        this.trackingArchiveService = trackingArchiveService;
     }
 
     @Transactional
     public Vehicle addVehicle(Vehicle vehicle, User user) {
         vehicle.setUser(user);
-        return vehicleRepository.save(vehicle);
+        Vehicle saved = vehicleRepository.save(vehicle);
+        vehicleSpatialIndex.registerVehicle(saved.getId(), user.getId());
+        return saved;
     }
 
-    public Page<Vehicle> getUserVehicles(Long userId, Pageable pageable) {
-        return vehicleRepository.findByUserId(userId, pageable);
+    // Une requête pour la page de véhicules ; les dernières positions viennent du LatestPositionStore
+    public Page<VehicleOverview> getFleetOverview(Long userId, Pageable pageable) {
+        List<VehicleOverviewRow> rows = vehicleRepository.findOverviewRows(
+            userId, pageable.getPageSize(), pageable.getOffset());
+        long total;
+        if (!rows.isEmpty()) {
+            total = rows.get(0).getTotal();
+        } else {
+            // Page au-delà de la dernière : le total n'est pas porté par une ligne
+            total = pageable.getOffset() == 0 ? 0 : vehicleRepository.countByUserId(userId);
+        }
+        List<VehicleOverview> content = new ArrayList<>(rows.size());
+        for (VehicleOverviewRow row : rows) {
+            content.add(new VehicleOverview(row.getId(), row.getName(), latestPositionStore.get(row.getId())));
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    public List<Long> getUserVehicleIds(Long userId) {
+        return vehicleRepository.findIdsByUserId(userId);
     }
 
     public Vehicle getVehicle(Long vehicleId, Long userId) {
@@ -39,43 +100,157 @@ public class VehicleService {
                 .orElseThrow(() -> new UsernameNotFoundException("Vehicle not found"));
     }
 
+    // Le véhicule est masqué immédiatement ; son historique est purgé en arrière-plan
     @Transactional
     public void deleteVehicle(Long vehicleId, Long userId) {
         if (!vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
             throw new UsernameNotFoundException("Vehicle not found");
         }
-        vehicleRepository.deleteById(vehicleId);
+        deviceRegistryService.unregisterVehicle(vehicleId);
+        geofenceService.removeVehicle(vehicleId);
+        vehiclePurgeService.requestPurge(vehicleId, userId);
+        latestPositionStore.remove(vehicleId);
+        vehicleRollupService.removeVehicle(vehicleId);
+        tripService.removeVehicle(vehicleId);
+        vehicleSpatialIndex.removeVehicle(vehicleId);
     }
 
-    @Transactional
+    public List<VehiclePurge> getVehiclePurges(Long userId) {
+        return vehiclePurgeService.getPurges(userId);
+    }
+
+    // Le point est mis en file et écrit par lots de manière asynchrone
     public TrackingData addTrackingData(Long vehicleId, TrackingData trackingData) {
-        Vehicle vehicle = vehicleRepository.findById(vehicleId)
-                .orElseThrow(() -> new UsernameNotFoundException("Vehicle not found"));
-        
-        trackingData.setVehicle(vehicle);
-        trackingData.setTimestamp(LocalDateTime.now());
-        return trackingDataRepository.save(trackingData);
+        if (!vehicleRepository.existsById(vehicleId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+        return addResolvedTrackingData(vehicleId, trackingData);
     }
 
+    // Pour les sources dont le véhicule est déjà résolu (ex: registre des dispositifs Notecard)
+    public TrackingData addResolvedTrackingData(Long vehicleId, TrackingData trackingData) {
+        if (trackingData.getTimestamp() == null) {
+            trackingData.setTimestamp(LocalDateTime.now());
+        }
+        trackingIngestionService.enqueue(vehicleId, trackingData);
+        return trackingData;
+    }
+
+    // Base et archive confondues : voir TrackingArchiveService.findHistory
     public Page<TrackingData> getVehicleTrackingHistory(
             Long vehicleId,
+            Long userId,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            Pageable pageable) {
+        Vehicle vehicle = getVehicle(vehicleId, userId);
+        Page<TrackingData> page = trackingArchiveService.findHistory(vehicleId, startDate, endDate, pageable);
+        // Les points archivés sont présentés comme ceux de la base, avec leur véhicule
+        for (TrackingData point : page.getContent()) {
+            if (point.getVehicle() == null) {
+                point.setVehicle(vehicle);
+            }
+        }
+        return page;
+    }
+
+    public Slice<TrackPoint> getVehicleTrackPoints(
+            Long vehicleId,
+            Long userId,
             LocalDateTime startDate,
             LocalDateTime endDate,
             Pageable pageable) {
-        return trackingDataRepository.findVehicleTrackingHistory(vehicleId, startDate, endDate, pageable);
+        checkOwnership(vehicleId, userId);
+        return trackingArchiveService.findTrackPoints(vehicleId, startDate, endDate, pageable);
+    }
+
+    // Servi depuis la mémoire : coût proportionnel au nombre de véhicules demandés
+    public List<LatestPosition> getLatestTrackingData(List<Long> vehicleIds) {
+        return latestPositionStore.getAll(vehicleIds);
+    }
+
+    // Page suivante à coût constant : la clé du dernier point remplace OFFSET et COUNT
+    public CursorPage getTrackingHistoryPage(
+            Long vehicleId,
+            Long userId,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            String cursor,
+            int size) {
+        checkOwnership(vehicleId, userId);
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        HistoryCursor after = cursor == null || cursor.isBlank() ? null : HistoryCursor.decode(cursor);
+        // Un élément de plus que demandé indique s'il reste une page
+        List<TrackPoint> points = trackingArchiveService.findTrackPointsBefore(
+            vehicleId, startDate, endDate, after, pageSize + 1);
+
+        if (points.size() <= pageSize) {
+            return new CursorPage(points, null);
+        }
+        List<TrackPoint> page = points.subList(0, pageSize);
+        return new CursorPage(page, HistoryCursor.of(page.get(pageSize - 1)).encode());
     }
 
-    public List<TrackingData> getLatestTrackingData(List<Long> vehicleIds) {
-        return trackingDataRepository.findLatestTrackingDataForVehicles(vehicleIds);
+    // Trajectoire simplifiée sur toute la plage, lue en flux depuis l'archive puis la base
+    @Transactional(readOnly = true)
+    public SimplifiedHistory getSimplifiedTrackingHistory(
+            Long vehicleId,
+            Long userId,
+            LocalDateTime startDate,
+            LocalDateTime endDate,
+            Double tolerance,
+            Integer maxPoints,
+            Integer zoom) {
+        checkOwnership(vehicleId, userId);
+        if (tolerance != null && tolerance < 0) {
+            throw new IllegalArgumentException("tolerance must not be negative");
+        }
+        // La réponse n'est pas paginée : sans maxPoints (ou au-delà du plafond), le plafond s'applique
+        int cap = maxPoints == null || maxPoints <= 0 ? MAX_SIMPLIFIED_POINTS : Math.min(maxPoints, MAX_SIMPLIFIED_POINTS);
+        try (Stream<TrackPoint> points = trackingArchiveService.streamTrackPoints(vehicleId, startDate, endDate)) {
+            TrajectorySimplifier.Result result = TrajectorySimplifier.simplify(
+                points.iterator(), tolerance, cap, zoom, startDate, endDate);
+            return new SimplifiedHistory(result.points(), result.sourcePoints());
+        }
     }
 
-    public List<TrackingData> getRecentTrackingData(Long vehicleId, LocalDateTime since) {
+    public List<TrackingData> getRecentTrackingData(Long vehicleId, Long userId, LocalDateTime since) {
+        checkRecent(vehicleId, userId, since);
         return trackingDataRepository.findRecentTrackingData(vehicleId, since);
     }
 
+    public List<TrackPoint> getRecentTrackPoints(Long vehicleId, Long userId, LocalDateTime since) {
+        checkRecent(vehicleId, userId, since);
+        return trackingDataRepository.findRecentTrackPoints(vehicleId, since);
+    }
+
+    // Les points récents ne sont lus qu'en base : une plage qui remonte dans l'archive serait incomplète
+    private void checkRecent(Long vehicleId, Long userId, LocalDateTime since) {
+        checkOwnership(vehicleId, userId);
+        LocalDateTime archivedBefore = trackingArchiveService.archivedBefore(vehicleId);
+        if (archivedBefore != null && since.isBefore(archivedBefore)) {
+            throw new IllegalArgumentException(
+                "Points before " + archivedBefore + " are archived; use the tracking history instead");
+        }
+    }
+
+    // Un véhicule supprimé est exclu par sa restriction deleted_at : son historique, en cours de purge,
+    // n'est plus servi
+    private void checkOwnership(Long vehicleId, Long userId) {
+        if (!vehicleRepository.existsByIdAndUserId(vehicleId, userId)) {
+            throw new UsernameNotFoundException("Vehicle not found");
+        }
+    }
+
     // DTO pour les requêtes
     public record VehicleRequest(String name) {}
 
+    public record VehicleOverview(Long id, String name, LatestPosition lastLocation) {}
+
+    public record SimplifiedHistory(List<TrackPoint> points, long sourcePoints) {}
+
+    public record CursorPage(List<TrackPoint> content, String nextCursor) {}
+
     public record TrackingDataRequest(
         Double latitude,
         Double longitude,
@@ -83,6 +258,20 @@ public class VehicleService {
         Double altitude,
         Double batteryLevel,
         String signalStrength,
-        Double temperature
-    ) {}
+        Double temperature,
+        LocalDateTime timestamp
+    ) {
+        public TrackingData toTrackingData() {
+            TrackingData trackingData = new TrackingData();
+            trackingData.setLatitude(latitude);
+            trackingData.setLongitude(longitude);
+            trackingData.setSpeed(speed);
+            trackingData.setAltitude(altitude);
+            trackingData.setBatteryLevel(batteryLevel);
+            trackingData.setSignalStrength(signalStrength);
+            trackingData.setTemperature(temperature);
+            trackingData.setTimestamp(timestamp);
+            return trackingData;
+        }
+    }
 }
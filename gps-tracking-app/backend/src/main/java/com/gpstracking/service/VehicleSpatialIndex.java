@@ -0,0 +1,298 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.repository.VehicleRepository.VehicleOwnership;
+import com.gpstracking.service.LatestPositionStore.LatestPosition;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Index spatial des positions courantes : une grille de cellules fixes par utilisateur.
+// Les requêtes ne parcourent que les cellules couvertes, ou toute la flotte de l'utilisateur
+// quand elle est plus petite que la zone demandée. L'antiméridien n'est pas traversé.
+@Service
+public class VehicleSpatialIndex implements TrackingDataListener {
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final VehicleRepository vehicleRepository;
+    private final LatestPositionStore latestPositionStore;
+
+    @Value("${tracking.spatial.cell-degrees:0.01}")
+    private double cellDegrees;
+
+    private final Map<Long, Long> ownerByVehicle = new ConcurrentHashMap<>();
+    private final Map<Long, UserGrid> grids = new ConcurrentHashMap<>();
+
+    public VehicleSpatialIndex(VehicleRepository vehicleRepository, LatestPositionStore latestPositionStore) {
+        this.vehicleRepository = vehicleRepository;
+        this.latestPositionStore = latestPositionStore;
+    }
+
+    @PostConstruct
+    void load() {
+        for (VehicleOwnership ownership : vehicleRepository.findAllOwnerships()) {
+            ownerByVehicle.put(ownership.getVehicleId(), ownership.getUserId());
+        }
+        for (LatestPosition position : latestPositionStore.snapshot()) {
+            update(position.vehicleId(), position.latitude(), position.longitude(), position.timestamp());
+        }
+    }
+
+    @Override
+    public void onTrackingData(Long vehicleId, TrackingData trackingData) {
+        update(vehicleId, trackingData.getLatitude(), trackingData.getLongitude(), trackingData.getTimestamp());
+    }
+
+    public void registerVehicle(Long vehicleId, Long userId) {
+        ownerByVehicle.put(vehicleId, userId);
+    }
+
+    public void removeVehicle(Long vehicleId) {
+        Long userId = ownerByVehicle.remove(vehicleId);
+        UserGrid grid = userId == null ? null : grids.get(userId);
+        if (grid != null) {
+            grid.remove(vehicleId);
+        }
+    }
+
+    private void update(Long vehicleId, Double latitude, Double longitude, LocalDateTime timestamp) {
+        if (latitude == null || longitude == null || timestamp == null) {
+            return;
+        }
+        Long userId = ownerByVehicle.computeIfAbsent(vehicleId,
+            id -> vehicleRepository.findUserIdById(id).orElse(null));
+        if (userId == null) {
+            return;
+        }
+        grids.computeIfAbsent(userId, id -> new UserGrid())
+            .update(new Entry(vehicleId, latitude, longitude, timestamp, cellKey(latitude, longitude)));
+    }
+
+    // Véhicules de l'utilisateur dans le rectangle donné
+    public List<NearbyVehicle> findInBoundingBox(
+            Long userId, double minLat, double minLon, double maxLat, double maxLon, LocalDateTime freshSince) {
+        UserGrid grid = grids.get(userId);
+        List<NearbyVehicle> result = new ArrayList<>();
+        if (grid == null) {
+            return result;
+        }
+        grid.forEachCandidate(minLat, minLon, maxLat, maxLon, entry -> {
+            if (entry.latitude >= minLat && entry.latitude <= maxLat
+                    && entry.longitude >= minLon && entry.longitude <= maxLon
+                    && isFresh(entry, freshSince)) {
+                result.add(entry.toResult(null));
+            }
+        });
+        return result;
+    }
+
+    // Véhicules de l'utilisateur à moins de radiusKm du point, du plus proche au plus éloigné
+    public List<NearbyVehicle> findWithinRadius(
+            Long userId, double latitude, double longitude, double radiusKm, LocalDateTime freshSince) {
+        UserGrid grid = grids.get(userId);
+        List<NearbyVehicle> result = new ArrayList<>();
+        if (grid == null) {
+            return result;
+        }
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude) + latDelta)));
+        double lonDelta = Math.min(180, radiusKm / (KM_PER_DEGREE * cosLat));
+        grid.forEachCandidate(latitude - latDelta, longitude - lonDelta, latitude + latDelta, longitude + lonDelta, entry -> {
+            if (isFresh(entry, freshSince)) {
+                double distance = GeoDistance.haversineKm(latitude, longitude, entry.latitude, entry.longitude);
+                if (distance <= radiusKm) {
+                    result.add(entry.toResult(distance));
+                }
+            }
+        });
+        result.sort(Comparator.comparingDouble(NearbyVehicle::distanceKm));
+        return result;
+    }
+
+    // Les k véhicules les plus proches : recherche par anneaux de cellules autour du point
+    public List<NearbyVehicle> findNearest(
+            Long userId, double latitude, double longitude, int k, LocalDateTime freshSince) {
+        UserGrid grid = grids.get(userId);
+        if (grid == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        // Tas max borné à k : la racine est le candidat le plus éloigné retenu
+        PriorityQueue<NearbyVehicle> best = new PriorityQueue<>(
+            Comparator.comparingDouble(NearbyVehicle::distanceKm).reversed());
+        Consumer<Entry> offer = entry -> {
+            if (isFresh(entry, freshSince)) {
+                NearbyVehicle candidate = entry.toResult(GeoDistance.haversineKm(latitude, longitude, entry.latitude, entry.longitude));
+                if (best.size() < k) {
+                    best.add(candidate);
+                } else if (candidate.distanceKm() < best.peek().distanceKm()) {
+                    best.poll();
+                    best.add(candidate);
+                }
+            }
+        };
+
+        int centerLat = latIndex(latitude);
+        int centerLon = lonIndex(longitude);
+        int maxRing = (int) Math.ceil(180 / cellDegrees);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            long searchedCells = (long) (2 * ring + 1) * (2 * ring + 1);
+            if (searchedCells > 4L * grid.size()) {
+                // Zone plus grande que la flotte : un parcours complet est moins coûteux
+                best.clear();
+                grid.forEachEntry(offer);
+                break;
+            }
+            grid.forEachInRing(centerLat, centerLon, ring, offer);
+            if (best.size() == k) {
+                // Aucun point hors du carré parcouru n'est à moins de "ring" cellules
+                double cosLat = Math.cos(Math.toRadians(Math.min(89.9, Math.abs(latitude) + (ring + 1) * cellDegrees)));
+                double bound = ring * cellDegrees * KM_PER_DEGREE * cosLat;
+                if (best.peek().distanceKm() <= bound) {
+                    break;
+                }
+            }
+        }
+
+        List<NearbyVehicle> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(NearbyVehicle::distanceKm));
+        return result;
+    }
+
+    private static boolean isFresh(Entry entry, LocalDateTime freshSince) {
+        return freshSince == null || !entry.timestamp.isBefore(freshSince);
+    }
+
+    private int latIndex(double latitude) {
+        return (int) Math.floor((latitude + 90) / cellDegrees);
+    }
+
+    private int lonIndex(double longitude) {
+        return (int) Math.floor((longitude + 180) / cellDegrees);
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return cellKey(latIndex(latitude), lonIndex(longitude));
+    }
+
+    private static long cellKey(int latIndex, int lonIndex) {
+        return ((long) latIndex << 32) | (lonIndex & 0xFFFFFFFFL);
+    }
+
+    private final class UserGrid {
+        private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+        private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+        int size() {
+            return entries.size();
+        }
+
+        // Un point plus ancien que la position indexée est ignoré
+        void update(Entry entry) {
+            entries.compute(entry.vehicleId, (id, current) -> {
+                if (current != null && entry.timestamp.isBefore(current.timestamp)) {
+                    return current;
+                }
+                if (current == null || current.cell != entry.cell) {
+                    if (current != null) {
+                        removeFromCell(current.cell, id);
+                    }
+                    cells.compute(entry.cell, (cell, vehicles) -> {
+                        Set<Long> target = vehicles == null ? ConcurrentHashMap.newKeySet() : vehicles;
+                        target.add(id);
+                        return target;
+                    });
+                }
+                return entry;
+            });
+        }
+
+        void remove(Long vehicleId) {
+            entries.computeIfPresent(vehicleId, (id, current) -> {
+                removeFromCell(current.cell, id);
+                return null;
+            });
+        }
+
+        private void removeFromCell(long cell, Long vehicleId) {
+            cells.computeIfPresent(cell, (key, vehicles) -> {
+                vehicles.remove(vehicleId);
+                return vehicles.isEmpty() ? null : vehicles;
+            });
+        }
+
+        void forEachEntry(Consumer<Entry> action) {
+            entries.values().forEach(action);
+        }
+
+        void forEachCandidate(double minLat, double minLon, double maxLat, double maxLon,
+                              Consumer<Entry> action) {
+            int fromLat = latIndex(Math.max(-90, minLat));
+            int toLat = latIndex(Math.min(90, maxLat));
+            int fromLon = lonIndex(Math.max(-180, minLon));
+            int toLon = lonIndex(Math.min(180, maxLon));
+            long cellCount = (long) (toLat - fromLat + 1) * (toLon - fromLon + 1);
+            if (cellCount > entries.size()) {
+                forEachEntry(action);
+                return;
+            }
+            for (int lat = fromLat; lat <= toLat; lat++) {
+                for (int lon = fromLon; lon <= toLon; lon++) {
+                    visitCell(cellKey(lat, lon), action);
+                }
+            }
+        }
+
+        void forEachInRing(int centerLat, int centerLon, int ring, Consumer<Entry> action) {
+            if (ring == 0) {
+                visitCell(cellKey(centerLat, centerLon), action);
+                return;
+            }
+            for (int offset = -ring; offset <= ring; offset++) {
+                visitCell(cellKey(centerLat - ring, centerLon + offset), action);
+                visitCell(cellKey(centerLat + ring, centerLon + offset), action);
+            }
+            for (int offset = -ring + 1; offset <= ring - 1; offset++) {
+                visitCell(cellKey(centerLat + offset, centerLon - ring), action);
+                visitCell(cellKey(centerLat + offset, centerLon + ring), action);
+            }
+        }
+
+        private void visitCell(long cell, Consumer<Entry> action) {
+            Set<Long> vehicles = cells.get(cell);
+            if (vehicles == null) {
+                return;
+            }
+            for (Long vehicleId : vehicles) {
+                Entry entry = entries.get(vehicleId);
+                if (entry != null) {
+                    action.accept(entry);
+                }
+            }
+        }
+    }
+
+    private record Entry(Long vehicleId, double latitude, double longitude, LocalDateTime timestamp, long cell) {
+        NearbyVehicle toResult(Double distanceKm) {
+            return new NearbyVehicle(vehicleId, latitude, longitude, timestamp, distanceKm);
+        }
+    }
+
+    public record NearbyVehicle(
+        Long vehicleId,
+        double latitude,
+        double longitude,
+        LocalDateTime timestamp,
+        Double distanceKm
+    ) {}
+}
@@ -0,0 +1,39 @@
+-- Table de suivi partitionnée par plage sur "timestamp".
+-- Exécuté avant la mise à jour du schéma par Hibernate : si la table n'existe pas encore,
+-- elle est créée partitionnée ; Hibernate n'y ajoute ensuite que les contraintes et index manquants.
+-- Les partitions par période sont créées par TrackingPartitionService.
+DO $$
+BEGIN
+    IF to_regclass('tracking_data') IS NULL THEN
+        CREATE SEQUENCE IF NOT EXISTS tracking_data_id_seq;
+        CREATE TABLE tracking_data (
+            id bigint NOT NULL DEFAULT nextval('tracking_data_id_seq'),
+            vehicle_id bigint NOT NULL,
+            latitude double precision,
+            longitude double precision,
+            speed double precision,
+            altitude double precision,
+            timestamp timestamp(6) NOT NULL,
+            battery_level double precision,
+            signal_strength varchar(255),
+            temperature double precision,
+            event_id varchar(64),
+            PRIMARY KEY (id, timestamp)
+        ) PARTITION BY RANGE (timestamp);
+        ALTER SEQUENCE tracking_data_id_seq OWNED BY tracking_data.id;
+        -- Reçoit les points hors des partitions existantes pour ne jamais rejeter d'insertion
+        CREATE TABLE tracking_data_default PARTITION OF tracking_data DEFAULT;
+    END IF;
+END
+$$^;
+
+-- Identifiant d'événement Notehub : un événement renvoyé n'est écrit qu'une fois.
+-- Une contrainte unique sur une table partitionnée doit inclure la clé de partition ;
+-- les points sans identifiant (NULL) ne sont jamais en conflit.
+ALTER TABLE tracking_data ADD COLUMN IF NOT EXISTS event_id varchar(64)^;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_tracking_data_event ON tracking_data (vehicle_id, event_id, timestamp)^;
+
+-- Index de l'historique et de la pagination par clé (timestamp, id) ; remplace l'index (vehicle_id, timestamp)
+-- dont il est un préfixe
+CREATE INDEX IF NOT EXISTS idx_tracking_data_vehicle_timestamp_id ON tracking_data (vehicle_id, timestamp, id)^;
+DROP INDEX IF EXISTS idx_tracking_data_vehicle_timestamp^;
@@ -0,0 +1,105 @@
+package com.gpstracking;
+
+import com.gpstracking.model.SimpleUser;
+import com.gpstracking.model.User;
+import com.gpstracking.model.Vehicle;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.UUID;
+
+// Base PostgreSQL des tests d'intégration. Les options de connexion sont reprises de spring.datasource.url
+// (reWriteBatchedInserts...) : le pilote se comporte comme en production.
+// -Dtest.database.url pointe vers une base existante ; à défaut un conteneur est démarré, une fois par exécution.
+// Sans l'un ni l'autre, les classes annotées @EnabledIf("com.gpstracking.TestDatabase#available") sont ignorées.
+// La base est partagée entre les classes de test : chacune crée ses propres utilisateurs et véhicules.
+public final class TestDatabase {
+    private static final String URL_PROPERTY = "test.database.url";
+
+    private static PostgreSQLContainer<?> container;
+
+    private TestDatabase() {
+    }
+
+    public static boolean available() {
+        return System.getProperty(URL_PROPERTY) != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    public static synchronized void register(DynamicPropertyRegistry registry) {
+        String url = System.getProperty(URL_PROPERTY);
+        String username = System.getProperty("test.database.username", "postgres");
+        String password = System.getProperty("test.database.password", "postgres");
+        if (url == null) {
+            if (container == null) {
+                container = new PostgreSQLContainer<>("postgres:16-alpine");
+                container.start();
+            }
+            url = container.getJdbcUrl();
+            username = container.getUsername();
+            password = container.getPassword();
+        }
+        String jdbcUrl = withProductionOptions(url);
+        String user = username;
+        String secret = password;
+        registry.add("spring.datasource.url", () -> jdbcUrl);
+        registry.add("spring.datasource.username", () -> user);
+        registry.add("spring.datasource.password", () -> secret);
+    }
+
+    // Segments d'archive dans un répertoire temporaire propre au contexte de test
+    public static void registerArchiveDirectory(DynamicPropertyRegistry registry) {
+        String directory;
+        try {
+            directory = Files.createTempDirectory("archive").toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        registry.add("tracking.archive.directory", () -> directory);
+    }
+
+    // Suffixe aléatoire : les colonnes uniques ne se heurtent pas aux données des exécutions précédentes
+    public static User newUser(UserRepository userRepository) {
+        String suffix = UUID.randomUUID().toString();
+        SimpleUser user = new SimpleUser();
+        user.setEmail(suffix + "@example.com");
+        user.setPhoneNumber(suffix);
+        user.setPassword("not-used");
+        user.setFullName("Test User");
+        user.setIdCardNumber(suffix);
+        return userRepository.save(user);
+    }
+
+    public static Vehicle newVehicle(VehicleRepository vehicleRepository, User owner) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setName("Test vehicle");
+        vehicle.setUser(owner);
+        return vehicleRepository.save(vehicle);
+    }
+
+    public static Long newVehicle(UserRepository userRepository, VehicleRepository vehicleRepository) {
+        return newVehicle(vehicleRepository, newUser(userRepository)).getId();
+    }
+
+    private static String withProductionOptions(String url) {
+        String production;
+        try {
+            production = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"))
+                .getProperty("spring.datasource.url");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int query = production.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + production.substring(query + 1);
+    }
+}
@@ -0,0 +1,105 @@
+package com.gpstracking.service;
+
+import com.gpstracking.TestDatabase;
+import com.gpstracking.model.Geofence.Shape;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.model.User;
+import com.gpstracking.repository.GeofenceRepository;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.service.GeofenceService.GeofenceRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledIf("com.gpstracking.TestDatabase#available")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class GeofenceServiceTest {
+    @Autowired
+    private GeofenceService geofenceService;
+
+    @Autowired
+    private GeofenceEngine geofenceEngine;
+
+    @Autowired
+    private GeofenceRepository geofenceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    private User user;
+    private Long vehicleId;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+        // Les événements restent en file jusqu'à l'appel explicite de flushEvents
+        registry.add("tracking.geofence.flush-interval-ms", () -> "3600000");
+    }
+
+    @BeforeEach
+    void setUp() {
+        user = TestDatabase.newUser(userRepository);
+        vehicleId = TestDatabase.newVehicle(vehicleRepository, user).getId();
+    }
+
+    @Test
+    void deletingFenceDropsItsQueuedEvents() {
+        Long fenceId = createFence();
+        geofenceEngine.onTrackingData(vehicleId, point());
+
+        geofenceService.deleteGeofence(fenceId, user.getId());
+        geofenceEngine.flushEvents();
+
+        assertThat(eventCount(fenceId)).isZero();
+    }
+
+    // Événement détecté avec l'index antérieur à la suppression : filtré à l'écriture
+    @Test
+    void flushSkipsEventsOfFencesNoLongerIndexed() {
+        Long fenceId = createFence();
+        Long keptFenceId = createFence();
+        geofenceEngine.onTrackingData(vehicleId, point());
+
+        geofenceRepository.deleteById(fenceId);
+        geofenceEngine.reload();
+        geofenceEngine.flushEvents();
+
+        assertThat(eventCount(fenceId)).isZero();
+        assertThat(eventCount(keptFenceId)).isEqualTo(1);
+    }
+
+    private Long createFence() {
+        return geofenceService.createGeofence(user, new GeofenceRequest(
+            "Dépôt", Shape.CIRCLE, 48.0, 2.0, 500.0, null, Set.of(vehicleId))).id();
+    }
+
+    private TrackingData point() {
+        TrackingData trackingData = new TrackingData();
+        trackingData.setLatitude(48.0);
+        trackingData.setLongitude(2.0);
+        trackingData.setTimestamp(LocalDateTime.now());
+        return trackingData;
+    }
+
+    private int eventCount(Long fenceId) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM geofence_events WHERE geofence_id = ?", Integer.class, fenceId);
+    }
+}
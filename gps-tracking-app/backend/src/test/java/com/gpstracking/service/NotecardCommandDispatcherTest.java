@@ -0,0 +1,197 @@
+package com.gpstracking.service;
+
+import com.gpstracking.TestDatabase;
+import com.gpstracking.model.DeviceCommand;
+import com.gpstracking.model.User;
+import com.gpstracking.model.Vehicle;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.service.NotecardCommandDispatcher.FanOutResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@EnabledIf("com.gpstracking.TestDatabase#available")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "notecard.commands.poll-interval-ms=50",
+    "notecard.commands.initial-backoff-ms=50",
+    "notecard.commands.max-backoff-ms=100"
+})
+class NotecardCommandDispatcherTest {
+    private static final NotehubStub NOTEHUB = startNotehub();
+
+    @Autowired
+    private NotecardCommandDispatcher dispatcher;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private DeviceRegistryService deviceRegistryService;
+
+    @Value("${notecard.hub.name}")
+    private String hubName;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+        registry.add("notecard.api.url", NOTEHUB::url);
+    }
+
+    @AfterAll
+    static void stopNotehub() {
+        NOTEHUB.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        NOTEHUB.reset();
+        jdbcTemplate.update("DELETE FROM device_commands");
+    }
+
+    @Test
+    void queuedCommandIsSentOnceAndMarkedSent() throws Exception {
+        DeviceCommand command = dispatcher.enqueue("dev:sent-" + UUID.randomUUID(), "reboot", null);
+
+        assertThat(NOTEHUB.awaitRequests(1, 5000)).isTrue();
+        awaitStatus(command.getId(), "SENT");
+        Thread.sleep(300);
+        assertThat(NOTEHUB.requests()).hasSize(1);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT claimed_by IS NULL FROM device_commands WHERE id = ?", Boolean.class, command.getId())).isTrue();
+    }
+
+    @Test
+    void retryableFailureIsRetriedAfterBackoff() throws Exception {
+        NOTEHUB.respond(503, "");
+
+        DeviceCommand command = dispatcher.enqueue("dev:retry-" + UUID.randomUUID(), "ping", null);
+
+        awaitStatus(command.getId(), "SENT");
+        assertThat(NOTEHUB.requests()).hasSize(2);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT attempts FROM device_commands WHERE id = ?", Integer.class, command.getId())).isEqualTo(2);
+    }
+
+    // Une instance qui démarre ne reprend pas une commande qu'une autre instance vivante est en train d'envoyer
+    @Test
+    void bootingInstanceLeavesLiveLeasesAlone() throws Exception {
+        long id = insertSending("another-instance", "now()");
+
+        Object booting = applicationContext.getAutowireCapableBeanFactory().createBean(NotecardCommandDispatcher.class);
+        try {
+            Thread.sleep(500);
+        } finally {
+            applicationContext.getAutowireCapableBeanFactory().destroyBean(booting);
+        }
+
+        assertThat(NOTEHUB.requests()).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT status || ':' || claimed_by FROM device_commands WHERE id = ?", String.class, id))
+            .isEqualTo("SENDING:another-instance");
+    }
+
+    // Instance arrêtée pendant un envoi : la commande est reprise une fois son bail expiré
+    @Test
+    void expiredLeaseIsReclaimed() throws Exception {
+        long id = insertSending("crashed-instance", "now() - interval '10 minutes'");
+
+        awaitStatus(id, "SENT");
+        assertThat(NOTEHUB.requests()).hasSize(1);
+    }
+
+    @Test
+    void commandsAndBatchesAreOnlyVisibleToTheirOwner() {
+        User owner = TestDatabase.newUser(userRepository);
+        User stranger = TestDatabase.newUser(userRepository);
+        Vehicle vehicle = TestDatabase.newVehicle(vehicleRepository, owner);
+        String deviceUid = "dev:owned-" + UUID.randomUUID();
+        deviceRegistryService.registerDevice(vehicle.getId(), owner.getId(), deviceUid);
+
+        DeviceCommand command = dispatcher.enqueue(deviceUid, "reboot", null);
+        FanOutResult batch = dispatcher.enqueueFleet(owner.getId(), List.of(vehicle.getId()), "sync", null);
+
+        assertThat(dispatcher.getCommand(command.getId(), owner.getId()).getDeviceUid()).isEqualTo(deviceUid);
+        assertThat(dispatcher.getBatchStatus(batch.batchId(), owner.getId()).total()).isEqualTo(1);
+        assertThatThrownBy(() -> dispatcher.getCommand(command.getId(), stranger.getId()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> dispatcher.getBatchStatus(batch.batchId(), stranger.getId()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void userCanOnlyCommandDevicesOfTheirOwnVehicles() {
+        User owner = TestDatabase.newUser(userRepository);
+        User stranger = TestDatabase.newUser(userRepository);
+        Vehicle vehicle = TestDatabase.newVehicle(vehicleRepository, owner);
+        String deviceUid = "dev:owned-" + UUID.randomUUID();
+        deviceRegistryService.registerDevice(vehicle.getId(), owner.getId(), deviceUid);
+        String unregistered = "dev:unknown-" + UUID.randomUUID();
+
+        DeviceCommand command = dispatcher.enqueue(owner.getId(), deviceUid, "reboot", null);
+
+        assertThat(dispatcher.getCommand(command.getId(), owner.getId()).getDeviceUid()).isEqualTo(deviceUid);
+        assertThatThrownBy(() -> dispatcher.enqueue(stranger.getId(), deviceUid, "reboot", null))
+            .isInstanceOf(UsernameNotFoundException.class);
+        assertThatThrownBy(() -> dispatcher.enqueue(owner.getId(), unregistered, "reboot", null))
+            .isInstanceOf(UsernameNotFoundException.class);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM device_commands WHERE device_uid IN (?, ?)", Long.class, deviceUid, unregistered))
+            .isEqualTo(1);
+    }
+
+    private long insertSending(String claimedBy, String claimedAt) {
+        return jdbcTemplate.queryForObject(
+            "INSERT INTO device_commands (device_uid, hub, command, coalesce_key, status, attempts, " +
+            "next_attempt_at, created_at, updated_at, claimed_by, claimed_at) " +
+            "VALUES (?, ?, 'reboot', 'reboot', 'SENDING', 1, now(), now(), now(), ?, " + claimedAt + ") RETURNING id",
+            Long.class, "dev:lease-" + UUID.randomUUID(), hubName, claimedBy);
+    }
+
+    private void awaitStatus(long id, String status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        String current;
+        do {
+            current = jdbcTemplate.queryForObject("SELECT status FROM device_commands WHERE id = ?", String.class, id);
+            if (status.equals(current)) {
+                return;
+            }
+            Thread.sleep(20);
+        } while (System.currentTimeMillis() < deadline);
+        assertThat(current).isEqualTo(status);
+    }
+
+    private static NotehubStub startNotehub() {
+        try {
+            return NotehubStub.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
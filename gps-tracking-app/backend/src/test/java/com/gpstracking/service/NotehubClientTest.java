@@ -0,0 +1,89 @@
+package com.gpstracking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpstracking.service.NotehubClient.SendResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotehubClientTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static NotehubStub notehub;
+    private NotehubClient client;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        notehub = NotehubStub.start();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        notehub.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        notehub.reset();
+        client = new NotehubClient(OBJECT_MAPPER);
+        ReflectionTestUtils.setField(client, "notecardApiUrl", notehub.url());
+        ReflectionTestUtils.setField(client, "productUid", "com.example:fleet");
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "requestTimeoutMs", 500L);
+        client.init();
+    }
+
+    @Test
+    void sendsANoteAddRequestForTheDevice() throws Exception {
+        SendResult result = client.sendCommand("dev:864475040", "reboot now").get();
+
+        assertThat(result.sent()).isTrue();
+        JsonNode request = OBJECT_MAPPER.readTree(notehub.requests().get(0));
+        assertThat(request.get("req").asText()).isEqualTo("note.add");
+        assertThat(request.get("product").asText()).isEqualTo("com.example:fleet");
+        assertThat(request.get("device").asText()).isEqualTo("dev:864475040");
+        assertThat(request.get("body").get("command").asText()).isEqualTo("reboot now");
+    }
+
+    @Test
+    void throttlingAndServerErrorsAreRetryable() throws Exception {
+        notehub.respond(429, "");
+        notehub.respond(503, "");
+
+        assertThat(client.sendCommand("dev:1", "ping").get()).satisfies(result -> {
+            assertThat(result.sent()).isFalse();
+            assertThat(result.retryable()).isTrue();
+        });
+        assertThat(client.sendCommand("dev:1", "ping").get().retryable()).isTrue();
+    }
+
+    @Test
+    void clientErrorsAndNotehubErrorsAreFinal() throws Exception {
+        notehub.respond(400, "bad request");
+        notehub.respond(200, "{\"err\":\"device not found {not-found}\"}");
+
+        SendResult rejected = client.sendCommand("dev:1", "ping").get();
+        SendResult applicationError = client.sendCommand("dev:1", "ping").get();
+
+        assertThat(rejected.sent()).isFalse();
+        assertThat(rejected.retryable()).isFalse();
+        assertThat(applicationError.sent()).isFalse();
+        assertThat(applicationError.retryable()).isFalse();
+        assertThat(applicationError.error()).contains("device not found");
+    }
+
+    @Test
+    void timeoutsAreRetryable() throws Exception {
+        notehub.respondAfter(1500);
+
+        SendResult result = client.sendCommand("dev:1", "ping").get();
+
+        assertThat(result.sent()).isFalse();
+        assertThat(result.retryable()).isTrue();
+    }
+}
@@ -0,0 +1,94 @@
+package com.gpstracking.service;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Bouchon local de l'API Notehub : enregistre les requêtes reçues et répond selon une file de réponses
+// programmées (200 "{}" par défaut)
+final class NotehubStub implements AutoCloseable {
+    private final HttpServer server;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+
+    private NotehubStub(HttpServer server) {
+        this.server = server;
+    }
+
+    static NotehubStub start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        NotehubStub stub = new NotehubStub(server);
+        server.createContext("/", exchange -> {
+            stub.requests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            Response response = stub.responses.poll();
+            if (response == null) {
+                response = new Response(200, "{}", 0);
+            }
+            if (response.delayMs() > 0) {
+                try {
+                    Thread.sleep(response.delayMs());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(response.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return stub;
+    }
+
+    String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/req";
+    }
+
+    void respond(int status, String body) {
+        responses.add(new Response(status, body, 0));
+    }
+
+    void respondAfter(long delayMs) {
+        responses.add(new Response(200, "{}", delayMs));
+    }
+
+    List<String> requests() {
+        return requests;
+    }
+
+    // Attend au moins count requêtes ou l'expiration du délai
+    boolean awaitRequests(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (requests.size() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    void reset() {
+        requests.clear();
+        responses.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private record Response(int status, String body, long delayMs) {}
+}
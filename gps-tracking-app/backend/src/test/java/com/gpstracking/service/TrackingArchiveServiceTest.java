@@ -0,0 +1,206 @@
+package com.gpstracking.service;
+
+import com.gpstracking.TestDatabase;
+import com.gpstracking.model.TrackPoint;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Lecture au travers de l'archive : chaque chemin doit rendre exactement les points de la base seule,
+// y compris pour un jour archivé qui a encore des lignes en base (retard, suppression pas encore faite)
+@EnabledIf("com.gpstracking.TestDatabase#available")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "tracking.archive.block-size=16",
+    "tracking.archive.chunk-size=50"
+})
+class TrackingArchiveServiceTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+    private static final int DAYS = 5;
+    private static final int POINTS_PER_DAY = 120;
+
+    @Autowired
+    private TrackingArchiveService trackingArchiveService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    private Long vehicleId;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+        TestDatabase.registerArchiveDirectory(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        vehicleId = TestDatabase.newVehicle(userRepository, vehicleRepository);
+
+        // Toutes les 12 minutes, avec deux points au même instant pour départager par id
+        List<Object[]> rows = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            for (int i = 0; i < POINTS_PER_DAY; i++) {
+                LocalDateTime timestamp = FIRST_DAY.plusDays(day).atStartOfDay().plusMinutes(12L * i);
+                rows.add(row(timestamp, day * 1000 + i));
+                if (i == 60) {
+                    rows.add(row(timestamp, day * 1000 + i + 0.5));
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO tracking_data (vehicle_id, timestamp, latitude, longitude, speed) " +
+            "VALUES (?, ?, 48.8, 2.3, ?)", rows);
+    }
+
+    @Test
+    void archivedAndLiveHistoryReadLikeTheDatabaseAlone() {
+        LocalDateTime start = FIRST_DAY.atStartOfDay();
+        LocalDateTime end = FIRST_DAY.plusDays(DAYS).atStartOfDay();
+        LocalDateTime partialStart = FIRST_DAY.plusDays(1).atTime(10, 6);
+        LocalDateTime partialEnd = FIRST_DAY.plusDays(3).atTime(15, 30);
+        List<TrackPoint> all = databaseNewestFirst(start, end);
+        List<TrackPoint> partial = databaseNewestFirst(partialStart, partialEnd);
+
+        trackingArchiveService.archiveBefore(FIRST_DAY.plusDays(3));
+        assertThat(countRows()).isEqualTo(2 * (POINTS_PER_DAY + 1));
+        // Un point arrivé en retard pour un jour archivé, et une ligne archivée pas encore supprimée
+        jdbcTemplate.update("INSERT INTO tracking_data (vehicle_id, timestamp, latitude, longitude, speed) " +
+            "VALUES (?, ?, 48.8, 2.3, 9999)", vehicleId, Timestamp.valueOf(FIRST_DAY.plusDays(1).atTime(11, 0, 30)));
+        TrackPoint restored = all.stream()
+            .filter(point -> point.timestamp().equals(FIRST_DAY.plusDays(2).atTime(6, 0))).findFirst().orElseThrow();
+        jdbcTemplate.update("INSERT INTO tracking_data (id, vehicle_id, timestamp, latitude, longitude, speed) " +
+            "VALUES (?, ?, ?, 48.8, 2.3, ?)", restored.id(), vehicleId, Timestamp.valueOf(restored.timestamp()),
+            restored.speed());
+        all = databaseAndLate(start, end, all);
+        partial = databaseAndLate(partialStart, partialEnd, partial);
+
+        assertReadsMatch(start, end, all);
+        assertReadsMatch(partialStart, partialEnd, partial);
+
+        // Nouveau passage : le point en retard rejoint son segment, la ligne en double disparaît
+        trackingArchiveService.archiveBefore(FIRST_DAY.plusDays(3));
+        assertThat(countRows()).isEqualTo(2 * (POINTS_PER_DAY + 1));
+        assertReadsMatch(start, end, all);
+        assertReadsMatch(partialStart, partialEnd, partial);
+    }
+
+    @Test
+    void rangeBeforeTheArchiveIsReadFromTheDatabaseOnly() {
+        LocalDateTime start = FIRST_DAY.plusDays(3).atStartOfDay();
+        LocalDateTime end = FIRST_DAY.plusDays(DAYS).atStartOfDay();
+        List<TrackPoint> recent = databaseNewestFirst(start, end);
+
+        trackingArchiveService.archiveBefore(FIRST_DAY.plusDays(3));
+
+        assertReadsMatch(start, end, recent);
+    }
+
+    private void assertReadsMatch(LocalDateTime start, LocalDateTime end, List<TrackPoint> expected) {
+        for (int size : new int[] {1, 7, 50, 1000}) {
+            List<TrackPoint> paged = new ArrayList<>();
+            for (int page = 0; page * size < expected.size() + size; page++) {
+                Page<TrackingData> history = trackingArchiveService.findHistory(
+                    vehicleId, start, end, PageRequest.of(page, size));
+                assertThat(history.getTotalElements()).isEqualTo(expected.size());
+                history.getContent().forEach(data -> paged.add(point(data)));
+            }
+            assertThat(paged).as("history pages of %d", size).containsExactlyElementsOf(expected);
+
+            List<TrackPoint> sliced = new ArrayList<>();
+            Slice<TrackPoint> slice;
+            int page = 0;
+            do {
+                slice = trackingArchiveService.findTrackPoints(vehicleId, start, end, PageRequest.of(page++, size));
+                sliced.addAll(slice.getContent());
+            } while (slice.hasNext());
+            assertThat(sliced).as("track point slices of %d", size).containsExactlyElementsOf(expected);
+
+            List<TrackPoint> walked = new ArrayList<>();
+            HistoryCursor after = null;
+            List<TrackPoint> batch;
+            do {
+                batch = trackingArchiveService.findTrackPointsBefore(vehicleId, start, end, after, size);
+                walked.addAll(batch);
+                after = batch.isEmpty() ? null : HistoryCursor.of(batch.get(batch.size() - 1));
+            } while (batch.size() == size);
+            assertThat(walked).as("cursor pages of %d", size).containsExactlyElementsOf(expected);
+        }
+
+        List<TrackPoint> streamed = transactionTemplate.execute(status -> {
+            try (Stream<TrackPoint> points = trackingArchiveService.streamTrackPoints(vehicleId, start, end)) {
+                return points.toList();
+            }
+        });
+        List<TrackPoint> oldestFirst = new ArrayList<>(expected);
+        Collections.reverse(oldestFirst);
+        assertThat(streamed).containsExactlyElementsOf(oldestFirst);
+    }
+
+    private List<TrackPoint> databaseNewestFirst(LocalDateTime start, LocalDateTime end) {
+        return jdbcTemplate.query(
+            "SELECT id, timestamp, latitude, longitude, speed FROM tracking_data " +
+            "WHERE vehicle_id = ? AND timestamp BETWEEN ? AND ? ORDER BY timestamp DESC, id DESC",
+            (rs, rowNum) -> new TrackPoint(rs.getLong("id"), rs.getDouble("latitude"), rs.getDouble("longitude"),
+                rs.getDouble("speed"), null, rs.getTimestamp("timestamp").toLocalDateTime(), null, null, null),
+            vehicleId, Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    // Attendu après l'archivage : les points de départ plus le point en retard, s'il est dans la plage
+    private List<TrackPoint> databaseAndLate(LocalDateTime start, LocalDateTime end, List<TrackPoint> before) {
+        List<TrackPoint> expected = new ArrayList<>(before);
+        jdbcTemplate.query(
+            "SELECT id, timestamp FROM tracking_data WHERE vehicle_id = ? AND speed = 9999 AND timestamp BETWEEN ? AND ?",
+            rs -> {
+                expected.add(new TrackPoint(rs.getLong("id"), 48.8, 2.3, 9999.0, null,
+                    rs.getTimestamp("timestamp").toLocalDateTime(), null, null, null));
+            }, vehicleId, Timestamp.valueOf(start), Timestamp.valueOf(end));
+        expected.sort(Comparator.comparing(TrackPoint::timestamp).thenComparing(TrackPoint::id).reversed());
+        return expected;
+    }
+
+    private long countRows() {
+        return jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM tracking_data WHERE vehicle_id = ?", Long.class, vehicleId);
+    }
+
+    private Object[] row(LocalDateTime timestamp, double speed) {
+        return new Object[] {vehicleId, Timestamp.valueOf(timestamp), speed};
+    }
+
+    // Seules les colonnes renseignées par le test sont comparées
+    private static TrackPoint point(TrackingData data) {
+        return new TrackPoint(data.getId(), data.getLatitude(), data.getLongitude(), data.getSpeed(), null,
+            data.getTimestamp(), null, null, null);
+    }
+}
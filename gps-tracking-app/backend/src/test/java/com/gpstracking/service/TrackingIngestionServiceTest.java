@@ -0,0 +1,189 @@
+package com.gpstracking.service;
+
+import com.gpstracking.TestDatabase;
+import com.gpstracking.model.TrackingData;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.service.TrackingIngestionService.IngestionRejectedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Avec les options JDBC de production (reWriteBatchedInserts), seuls les points réellement insérés
+// doivent atteindre les listeners
+@EnabledIf("com.gpstracking.TestDatabase#available")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    // Une table verrouillée fait échouer l'écriture au lieu de la bloquer : panne passagère simulée
+    "spring.datasource.hikari.connection-init-sql=SET lock_timeout = 200",
+    "tracking.ingestion.retry-initial-backoff-ms=50",
+    "tracking.ingestion.retry-max-backoff-ms=200"
+})
+class TrackingIngestionServiceTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 2, 8, 0);
+
+    @Autowired
+    private TrackingIngestionService trackingIngestionService;
+
+    @Autowired
+    private RecordingListener listener;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Value("${spring.datasource.url}")
+    private String datasourceUrl;
+
+    private Long vehicleId;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        vehicleId = TestDatabase.newVehicle(userRepository, vehicleRepository);
+        listener.points.clear();
+    }
+
+    @Test
+    void runsWithProductionDriverOptions() {
+        assertThat(datasourceUrl).contains("reWriteBatchedInserts=true");
+    }
+
+    @Test
+    void resentEventsAreNeitherWrittenNorNotifiedAgain() {
+        assertThat(trackingIngestionService.writeNow(vehicleId, List.of(
+            point("e1", T0), point("e2", T0.plusSeconds(1))))).isEqualTo(2);
+
+        // Renvoi après redémarrage : la fenêtre en mémoire ne connaît plus e1
+        int written = trackingIngestionService.writeNow(vehicleId, List.of(
+            point("e1", T0), point("e3", T0.plusSeconds(2))));
+
+        assertThat(written).isEqualTo(1);
+        assertThat(listener.eventIds()).containsExactly("e1", "e2", "e3");
+        assertThat(rowCount()).isEqualTo(3);
+    }
+
+    @Test
+    void duplicateWithinOneBatchIsNotifiedOnce() {
+        int written = trackingIngestionService.writeNow(vehicleId, List.of(
+            point("e1", T0), point("e1", T0), point(null, T0), point(null, T0)));
+
+        assertThat(written).isEqualTo(3);
+        assertThat(listener.eventIds()).containsExactly("e1", null, null);
+        assertThat(listener.points).allSatisfy(data -> assertThat(data.getId()).isNotNull());
+        assertThat(rowCount()).isEqualTo(3);
+    }
+
+    @Test
+    void subMicrosecondTimestampsAreMatched() {
+        LocalDateTime precise = T0.plusNanos(123_456_789);
+
+        assertThat(trackingIngestionService.writeNow(vehicleId, List.of(point("e1", precise)))).isEqualTo(1);
+        assertThat(trackingIngestionService.writeNow(vehicleId, List.of(point("e1", precise)))).isZero();
+        assertThat(listener.points).hasSize(1);
+    }
+
+    @Test
+    void queuedPointSurvivesATransientDatabaseFailure() throws Exception {
+        long failedBefore = trackingIngestionService.getStats().failed();
+        try (Connection locker = dataSource.getConnection()) {
+            locker.setAutoCommit(false);
+            try (Statement statement = locker.createStatement()) {
+                statement.execute("LOCK TABLE tracking_data IN EXCLUSIVE MODE");
+            }
+            trackingIngestionService.enqueue(vehicleId, point("e1", T0));
+            // Plusieurs tentatives échouent sur le délai de verrouillage pendant ce temps
+            Thread.sleep(1000);
+            assertThat(listener.points).isEmpty();
+            locker.rollback();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.points.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(listener.eventIds()).containsExactly("e1");
+        assertThat(rowCount()).isEqualTo(1);
+        assertThat(trackingIngestionService.getStats().failed()).isEqualTo(failedBefore);
+    }
+
+    @Test
+    void enqueueIsRejectedOnceStopped() throws Exception {
+        TrackingIngestionService stopped = applicationContext.getAutowireCapableBeanFactory()
+            .createBean(TrackingIngestionService.class);
+        stopped.stop();
+
+        assertThatThrownBy(() -> stopped.enqueue(vehicleId, point("e1", T0)))
+            .isInstanceOf(IngestionRejectedException.class);
+        assertThat(stopped.getStats().accepted()).isZero();
+    }
+
+    private long rowCount() {
+        return jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM tracking_data WHERE vehicle_id = ?", Long.class, vehicleId);
+    }
+
+    private static TrackingData point(String eventId, LocalDateTime timestamp) {
+        TrackingData data = new TrackingData();
+        data.setEventId(eventId);
+        data.setTimestamp(timestamp);
+        data.setLatitude(48.85);
+        data.setLongitude(2.35);
+        data.setSpeed(30.0);
+        return data;
+    }
+
+    @TestConfiguration
+    static class ListenerConfiguration {
+        @Bean
+        RecordingListener recordingListener() {
+            return new RecordingListener();
+        }
+    }
+
+    static class RecordingListener implements TrackingDataListener {
+        private final List<TrackingData> points = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onTrackingData(Long vehicleId, TrackingData trackingData) {
+            points.add(trackingData);
+        }
+
+        List<String> eventIds() {
+            return points.stream().map(TrackingData::getEventId).toList();
+        }
+    }
+}
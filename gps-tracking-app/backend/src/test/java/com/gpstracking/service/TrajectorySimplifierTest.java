@@ -0,0 +1,91 @@
+package com.gpstracking.service;
+
+import com.gpstracking.model.TrackPoint;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class TrajectorySimplifierTest {
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 8, 0);
+
+    // Livraison urbaine : alternance de 20 s de roulage et 20 s d'arrêt pendant 10 h, un point toutes les 10 s.
+    // Chaque départ et chaque arrêt est un point forcé, bien plus nombreux que le plafond demandé
+    private static List<TrackPoint> stopAndGoTrack() {
+        List<TrackPoint> points = new ArrayList<>();
+        double latitude = 48.85;
+        for (int i = 0; i < 3600; i++) {
+            boolean moving = (i / 2) % 2 == 0;
+            if (moving) {
+                latitude += 0.0005;
+            }
+            points.add(new TrackPoint((long) i, latitude, 2.35, moving ? 30.0 + i % 7 : 0.0, null,
+                START.plusSeconds(10L * i), null, null, null));
+        }
+        return points;
+    }
+
+    @Test
+    void maxPointsIsAHardCapOnStopHeavyTracks() {
+        List<TrackPoint> track = stopAndGoTrack();
+
+        for (int maxPoints : new int[] {1, 2, 10, 100, 500}) {
+            TrajectorySimplifier.Result result = TrajectorySimplifier.simplify(
+                track.iterator(), null, maxPoints, null, START, START.plusHours(10));
+
+            assertThat(result.points()).hasSizeLessThanOrEqualTo(maxPoints);
+            assertThat(result.sourcePoints()).isEqualTo(track.size());
+        }
+    }
+
+    @Test
+    void cappedTrackKeepsEndpointsInChronologicalOrder() {
+        List<TrackPoint> track = stopAndGoTrack();
+
+        List<TrackPoint> points = TrajectorySimplifier.simplify(
+            track.iterator(), 5.0, 100, null, START, START.plusHours(10)).points();
+
+        assertThat(points).hasSize(100);
+        assertThat(points.get(0)).isEqualTo(track.get(0));
+        assertThat(points.get(points.size() - 1)).isEqualTo(track.get(track.size() - 1));
+        assertThat(points).isSortedAccordingTo((a, b) -> a.timestamp().compareTo(b.timestamp()));
+    }
+
+    // Deux semaines d'arrêts fréquents sous un petit plafond : une seule tranche reçoit des dizaines de milliers
+    // de points forcés, traités sans recherche linéaire
+    @Test
+    void largeBucketOfForcedPointsIsFlushedInLinearTime() {
+        List<TrackPoint> track = new ArrayList<>();
+        for (int day = 0; day < 14; day++) {
+            for (TrackPoint point : stopAndGoTrack()) {
+                track.add(new TrackPoint(track.size() + 0L, point.latitude(), point.longitude(), point.speed(), null,
+                    point.timestamp().plusDays(day), null, null, null));
+            }
+        }
+
+        TrajectorySimplifier.Result result = assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+            TrajectorySimplifier.simplify(track.iterator(), null, 2, null, START, START.plusDays(14)));
+        List<TrackPoint> uncapped = TrajectorySimplifier.simplify(
+            track.iterator(), null, track.size(), null, START, START.plusDays(14)).points();
+
+        assertThat(result.points()).hasSize(2);
+        assertThat(uncapped).isSortedAccordingTo((a, b) -> a.timestamp().compareTo(b.timestamp()));
+        assertThat(uncapped).doesNotHaveDuplicates();
+        assertThat(uncapped.get(uncapped.size() - 1)).isEqualTo(track.get(track.size() - 1));
+    }
+
+    @Test
+    void tracksUnderTheCapAreNotDecimated() {
+        List<TrackPoint> track = stopAndGoTrack().subList(0, 40);
+
+        List<TrackPoint> points = TrajectorySimplifier.simplify(
+            track.iterator(), null, 1000, null, START, START.plusHours(10)).points();
+
+        assertThat(points).isEqualTo(track);
+    }
+}
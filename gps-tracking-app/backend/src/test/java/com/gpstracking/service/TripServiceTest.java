@@ -0,0 +1,107 @@
+package com.gpstracking.service;
+
+import com.gpstracking.TestDatabase;
+import com.gpstracking.model.Trip;
+import com.gpstracking.repository.TripRepository;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledIf("com.gpstracking.TestDatabase#available")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class TripServiceTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 2, 1);
+
+    @Autowired
+    private TripService tripService;
+
+    @Autowired
+    private TrackingArchiveService trackingArchiveService;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    private Long vehicleId;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+        TestDatabase.registerArchiveDirectory(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        vehicleId = TestDatabase.newVehicle(userRepository, vehicleRepository);
+    }
+
+    // Un trajet à cheval sur minuit, puis un trajet le lendemain ; seule la première journée est archivée
+    @Test
+    void rebuildAfterArchiveKeepsTheTripAcrossTheBoundaryOnce() {
+        List<Object[]> rows = new ArrayList<>();
+        drive(rows, FIRST_DAY.atTime(22, 0), 240);
+        park(rows, FIRST_DAY.plusDays(1).atTime(2, 0), 30);
+        drive(rows, FIRST_DAY.plusDays(1).atTime(10, 0), 60);
+        park(rows, FIRST_DAY.plusDays(1).atTime(11, 0), 30);
+        jdbcTemplate.batchUpdate("INSERT INTO tracking_data (vehicle_id, timestamp, latitude, longitude, speed) " +
+            "VALUES (?, ?, ?, ?, ?)", rows);
+
+        tripService.rebuild(vehicleId);
+        List<TripSummary> expected = trips();
+        assertThat(expected).hasSize(2);
+        assertThat(expected.get(0).startTime()).isBefore(FIRST_DAY.plusDays(1).atStartOfDay());
+        assertThat(expected.get(0).endTime()).isAfter(FIRST_DAY.plusDays(1).atStartOfDay());
+
+        trackingArchiveService.archiveBefore(FIRST_DAY.plusDays(1));
+        tripService.rebuild(vehicleId);
+
+        assertThat(trips()).containsExactlyElementsOf(expected);
+    }
+
+    private void drive(List<Object[]> rows, LocalDateTime start, int minutes) {
+        for (int i = 0; i < minutes; i++) {
+            rows.add(new Object[] {vehicleId, Timestamp.valueOf(start.plusMinutes(i)), 48.0 + i * 0.005, 2.0, 30.0});
+        }
+    }
+
+    private void park(List<Object[]> rows, LocalDateTime start, int minutes) {
+        Object[] last = rows.get(rows.size() - 1);
+        for (int i = 0; i < minutes; i++) {
+            rows.add(new Object[] {vehicleId, Timestamp.valueOf(start.plusMinutes(i)), last[2], last[3], 0.0});
+        }
+    }
+
+    private List<TripSummary> trips() {
+        return tripRepository.findTrips(vehicleId, FIRST_DAY.atStartOfDay(), FIRST_DAY.plusDays(3).atStartOfDay())
+            .stream().map(TripSummary::of).toList();
+    }
+
+    private record TripSummary(LocalDateTime startTime, LocalDateTime endTime, int pointCount, boolean inProgress) {
+        static TripSummary of(Trip trip) {
+            return new TripSummary(trip.getStartTime(), trip.getEndTime(), trip.getPointCount(), trip.isInProgress());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.gpstracking.service;
+
+import com.gpstracking.TestDatabase;
+import com.gpstracking.model.VehicleRollup;
+import com.gpstracking.model.VehicleRollup.Granularity;
+import com.gpstracking.repository.UserRepository;
+import com.gpstracking.repository.VehicleRepository;
+import com.gpstracking.repository.VehicleRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@EnabledIf("com.gpstracking.TestDatabase#available")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class VehicleRollupServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    @Autowired
+    private VehicleRollupService vehicleRollupService;
+
+    @Autowired
+    private VehicleRollupRepository vehicleRollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    private Long vehicleId;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        TestDatabase.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        vehicleId = TestDatabase.newVehicle(userRepository, vehicleRepository);
+    }
+
+    // La distance et la décharge entre deux tranches sont comptées dans la tranche du second point
+    @Test
+    void rebuildWritesHourlyAndDailyBucketsFromTrackingData() {
+        insert(DAY.atTime(10, 0), 48.00, 10.0, 90.0);
+        insert(DAY.atTime(10, 20), 48.01, 20.0, 85.0);
+        insert(DAY.atTime(10, 40), 48.02, 30.0, 87.0);
+        insert(DAY.atTime(11, 0), 48.03, 40.0, 80.0);
+        insert(DAY.atTime(11, 30), 48.03, null, 79.0);
+        double step = GeoDistance.haversineKm(48.00, 2.0, 48.01, 2.0);
+
+        vehicleRollupService.rebuild(vehicleId);
+        // Relancer la reconstruction remplace les tranches au lieu de les cumuler
+        vehicleRollupService.rebuild(vehicleId);
+
+        List<VehicleRollup> hours = buckets(Granularity.HOUR);
+        assertThat(hours).hasSize(2);
+        assertBucket(hours.get(0), DAY.atTime(10, 0), 3, 2 * step, 30.0, 60.0, 3, 5.0, 85.0, 90.0);
+        assertBucket(hours.get(1), DAY.atTime(11, 0), 2, step, 40.0, 40.0, 1, 8.0, 79.0, 80.0);
+        assertThat(hours.get(1).getFirstTimestamp()).isEqualTo(DAY.atTime(11, 0));
+        assertThat(hours.get(1).getLastTimestamp()).isEqualTo(DAY.atTime(11, 30));
+
+        List<VehicleRollup> days = buckets(Granularity.DAY);
+        assertThat(days).hasSize(1);
+        assertBucket(days.get(0), DAY.atStartOfDay(), 5, 3 * step, 40.0, 100.0, 4, 13.0, 79.0, 90.0);
+    }
+
+    private void insert(LocalDateTime timestamp, double latitude, Double speed, double batteryLevel) {
+        jdbcTemplate.update("INSERT INTO tracking_data (vehicle_id, timestamp, latitude, longitude, speed, battery_level) " +
+            "VALUES (?, ?, ?, 2.0, ?, ?)", vehicleId, Timestamp.valueOf(timestamp), latitude, speed, batteryLevel);
+    }
+
+    private List<VehicleRollup> buckets(Granularity granularity) {
+        return vehicleRollupRepository.findBuckets(
+            vehicleId, granularity, DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay());
+    }
+
+    private static void assertBucket(VehicleRollup rollup, LocalDateTime bucketStart, long pointCount, double distanceKm,
+            double maxSpeed, double speedSum, long speedCount, double batteryDrain, double minBattery, double maxBattery) {
+        assertThat(rollup.getBucketStart()).isEqualTo(bucketStart);
+        assertThat(rollup.getPointCount()).isEqualTo(pointCount);
+        assertThat(rollup.getDistanceKm()).isCloseTo(distanceKm, within(1e-6));
+        assertThat(rollup.getMaxSpeed()).isEqualTo(maxSpeed);
+        assertThat(rollup.getSpeedSum()).isEqualTo(speedSum);
+        assertThat(rollup.getSpeedCount()).isEqualTo(speedCount);
+        assertThat(rollup.getBatteryDrain()).isCloseTo(batteryDrain, within(1e-9));
+        assertThat(rollup.getMinBattery()).isEqualTo(minBattery);
+        assertThat(rollup.getMaxBattery()).isEqualTo(maxBattery);
+    }
+}
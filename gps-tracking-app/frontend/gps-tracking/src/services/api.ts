@@ -72,6 +72,15 @@ class ApiService {
     this.token = null;
   }
 
+  // Accès au token et à l'URL de base pour les flux hors axios (SSE)
+  public getToken(): string | null {
+    return this.token;
+  }
+
+  public getBaseUrl(): string {
+    return this.api.defaults.baseURL || '';
+  }
+
   // Méthodes HTTP génériques
   public async get<T>(url: string, config?: AxiosRequestConfig): Promise<T> {
     const response: AxiosResponse<T> = await this.api.get(url, config);
@@ -0,0 +1,77 @@
+import { apiService } from './api';
+import type { LivePosition } from '@/types';
+
+type PositionsHandler = (positions: LivePosition[]) => void;
+
+class LiveService {
+  // Ouvre le flux SSE des positions ; fetch permet d'envoyer l'en-tête Authorization
+  public subscribe(onPositions: PositionsHandler, vehicleIds?: number[]): () => void {
+    let controller: AbortController | null = null;
+    let stopped = false;
+    let retryDelay = 1000;
+
+    const connect = async () => {
+      controller = new AbortController();
+      const query = vehicleIds?.length ? `?vehicleIds=${vehicleIds.join(',')}` : '';
+      try {
+        const response = await fetch(`${apiService.getBaseUrl()}/vehicles/tracking/stream${query}`, {
+          headers: {
+            Accept: 'text/event-stream',
+            Authorization: `Bearer ${apiService.getToken()}`,
+          },
+          signal: controller.signal,
+        });
+        if (!response.ok || !response.body) {
+          throw new Error(`HTTP ${response.status}`);
+        }
+        retryDelay = 1000;
+        await this.readEvents(response.body, onPositions);
+      } catch (error) {
+        if (stopped) return;
+        console.error('Flux de positions interrompu:', error);
+      }
+      // Reconnexion avec délai croissant
+      if (!stopped) {
+        window.setTimeout(connect, retryDelay);
+        retryDelay = Math.min(retryDelay * 2, 30000);
+      }
+    };
+
+    connect();
+
+    return () => {
+      stopped = true;
+      controller?.abort();
+    };
+  }
+
+  private async readEvents(body: ReadableStream<Uint8Array>, onPositions: PositionsHandler): Promise<void> {
+    const reader = body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+
+    for (;;) {
+      const { done, value } = await reader.read();
+      if (done) return;
+      buffer += decoder.decode(value, { stream: true });
+
+      let separator = buffer.indexOf('\n\n');
+      while (separator !== -1) {
+        const event = buffer.slice(0, separator);
+        buffer = buffer.slice(separator + 2);
+        const data = event
+          .split('\n')
+          .filter(line => line.startsWith('data:'))
+          .map(line => line.slice(5))
+          .join('\n');
+        if (data) {
+          onPositions(JSON.parse(data));
+        }
+        separator = buffer.indexOf('\n\n');
+      }
+    }
+  }
+}
+
+// Exporter une instance unique du service
+export const liveService = new LiveService();
@@ -1,6 +1,100 @@
 import L from 'leaflet';
 import 'leaflet/dist/leaflet.css';
-import { Vehicle, TrackingData } from '@/types';
+import { Vehicle, TrackPoint } from '@/types';
+import { apiService } from './api';
+
+export const TRACK_MEDIA_TYPE = 'application/vnd.gpstracking.track';
+
+// Décode la réponse binaire compacte de /tracking/history et /tracking/recent (voir TrackPointCodec)
+export function decodeTrackPoints(buffer: ArrayBuffer): TrackPoint[] {
+  const bytes = new Uint8Array(buffer);
+  if (bytes[0] !== 0x47 || bytes[1] !== 0x54 || bytes[2] !== 1) {
+    throw new Error('Format de trajectoire inconnu');
+  }
+  let offset = 3;
+
+  // Multiplications plutôt que décalages : les horodatages dépassent 32 bits
+  const readVarint = (): number => {
+    let result = 0;
+    let factor = 1;
+    let byte: number;
+    do {
+      byte = bytes[offset++];
+      result += (byte & 0x7f) * factor;
+      factor *= 128;
+    } while (byte & 0x80);
+    return result;
+  };
+  const readSigned = (): number => {
+    const value = readVarint();
+    return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+  };
+  const readDeltas = (count: number): number[] => {
+    const values: number[] = new Array(count);
+    let previous = 0;
+    for (let i = 0; i < count; i++) {
+      previous += readSigned();
+      values[i] = previous;
+    }
+    return values;
+  };
+  const readColumn = (count: number, scale: number): (number | null)[] => {
+    const present = bytes.subarray(offset, offset + Math.ceil(count / 8));
+    offset += present.length;
+    const values: (number | null)[] = new Array(count);
+    let previous = 0;
+    for (let i = 0; i < count; i++) {
+      if (present[i >> 3] & (1 << (i & 7))) {
+        previous += readSigned();
+        values[i] = previous / scale;
+      } else {
+        values[i] = null;
+      }
+    }
+    return values;
+  };
+
+  const count = readVarint();
+  const ids = readDeltas(count);
+  const timestamps = readDeltas(count);
+  const latitudes = readColumn(count, 1e6);
+  const longitudes = readColumn(count, 1e6);
+  const speeds = readColumn(count, 10);
+  const altitudes = readColumn(count, 10);
+  const batteryLevels = readColumn(count, 10);
+  const temperatures = readColumn(count, 10);
+
+  const points: TrackPoint[] = new Array(count);
+  for (let i = 0; i < count; i++) {
+    points[i] = {
+      id: ids[i],
+      // Même représentation que le JSON (LocalDateTime, sans fuseau)
+      timestamp: new Date(timestamps[i]).toISOString().slice(0, -1),
+      latitude: latitudes[i],
+      longitude: longitudes[i],
+      speed: speeds[i],
+      altitude: altitudes[i],
+      batteryLevel: batteryLevels[i],
+      temperature: temperatures[i],
+    };
+  }
+  return points;
+}
+
+// Charge l'historique d'un véhicule au format compact
+export async function fetchVehicleTrack(
+  vehicleId: number,
+  startDate: string,
+  endDate: string,
+  options: { maxPoints?: number; zoom?: number; page?: number; size?: number } = {}
+): Promise<TrackPoint[]> {
+  const buffer = await apiService.get<ArrayBuffer>(`/vehicles/${vehicleId}/tracking/history`, {
+    params: { startDate, endDate, ...options },
+    headers: { Accept: TRACK_MEDIA_TYPE },
+    responseType: 'arraybuffer',
+  });
+  return decodeTrackPoints(buffer);
+}
 
 class MapService {
   private map: L.Map | null = null;
@@ -73,13 +167,14 @@ class MapService {
   }
 
   // Afficher l'historique des déplacements d'un véhicule
-  public showVehicleHistory(trackingData: TrackingData[]): void {
-    if (!this.map || !this.pathLayer || trackingData.length === 0) return;
+  public showVehicleHistory(trackingData: { latitude: number | null; longitude: number | null }[]): void {
+    if (!this.map || !this.pathLayer) return;
 
     // Créer le chemin
-    const points = trackingData.map(data => 
-      L.latLng(data.latitude, data.longitude)
-    );
+    const points = trackingData
+      .filter(data => data.latitude !== null && data.longitude !== null)
+      .map(data => L.latLng(data.latitude as number, data.longitude as number));
+    if (points.length === 0) return;
 
     const path = L.polyline(points, {
       color: '#0ea5e9',
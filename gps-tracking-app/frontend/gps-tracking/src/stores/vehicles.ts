@@ -2,7 +2,7 @@ import { defineStore } from 'pinia';
 import { ref, computed } from 'vue';
 import { apiService } from '@/services/api';
 import { notificationService } from '@/services/notification';
-import type { Vehicle, TrackingData, VehicleMetrics, VehicleFilters, PaginatedResponse } from '@/types';
+import type { Vehicle, TrackingData, VehicleMetrics, VehicleFilters, PaginatedResponse, LivePosition, TripTimeline } from '@/types';
 import { VehicleStatus } from '@/types';
 
 export const useVehicleStore = defineStore('vehicles', () => {
@@ -10,6 +10,7 @@ export const useVehicleStore = defineStore('vehicles', () => {
   const vehicles = ref<Vehicle[]>([]);
   const selectedVehicle = ref<Vehicle | null>(null);
   const trackingHistory = ref<TrackingData[]>([]);
+  const tripTimeline = ref<TripTimeline>({ trips: [], stops: [] });
   const vehicleMetrics = ref<{ [key: number]: VehicleMetrics }>({});
   const loading = ref(false);
   const historyLoading = ref(false);
@@ -72,7 +73,14 @@ export const useVehicleStore = defineStore('vehicles', () => {
         }
       });
 
-      vehicles.value = response.content;
+      // La vue d'ensemble porte la dernière position connue de chaque véhicule
+      vehicles.value = response.content.map(vehicle => ({
+        ...vehicle,
+        lastPosition: vehicle.lastLocation
+          ? { lat: vehicle.lastLocation.latitude, lng: vehicle.lastLocation.longitude }
+          : undefined,
+        lastUpdate: vehicle.lastLocation?.timestamp ?? vehicle.lastUpdate
+      }));
       pagination.value = {
         currentPage: response.number + 1,
         totalPages: response.totalPages,
@@ -110,6 +118,19 @@ export const useVehicleStore = defineStore('vehicles', () => {
     }
   };
 
+  // Trajets et arrêts pré-calculés côté serveur
+  const fetchVehicleTrips = async (vehicleId: number, startDate: Date, endDate: Date) => {
+    try {
+      tripTimeline.value = await apiService.get<TripTimeline>(
+        `/vehicles/${vehicleId}/trips`,
+        { params: { startDate: startDate.toISOString(), endDate: endDate.toISOString() } }
+      );
+    } catch (error) {
+      console.error('Erreur lors du chargement des trajets:', error);
+      tripTimeline.value = { trips: [], stops: [] };
+    }
+  };
+
   const fetchVehicleMetrics = async (vehicleId: number) => {
     try {
       const metrics = await apiService.get<VehicleMetrics>(
@@ -178,6 +199,17 @@ export const useVehicleStore = defineStore('vehicles', () => {
     }
   };
 
+  // Applique les positions reçues du flux en direct
+  const applyLivePositions = (positions: LivePosition[]) => {
+    positions.forEach(position => {
+      const vehicle = vehicles.value.find(v => v.id === position.vehicleId);
+      if (vehicle) {
+        vehicle.lastPosition = { lat: position.latitude, lng: position.longitude };
+        vehicle.lastUpdate = position.timestamp;
+      }
+    });
+  };
+
   const selectVehicle = (vehicle: Vehicle | null) => {
     selectedVehicle.value = vehicle;
     if (vehicle) {
@@ -206,6 +238,7 @@ export const useVehicleStore = defineStore('vehicles', () => {
     vehicles,
     selectedVehicle,
     trackingHistory,
+    tripTimeline,
     vehicleMetrics,
     loading,
     historyLoading,
@@ -221,11 +254,13 @@ export const useVehicleStore = defineStore('vehicles', () => {
     // Actions
     fetchVehicles,
     fetchVehicleHistory,
+    fetchVehicleTrips,
     fetchVehicleMetrics,
     addVehicle,
     updateVehicle,
     deleteVehicle,
     selectVehicle,
+    applyLivePositions,
     updateFilters,
     setPage,
     initialize
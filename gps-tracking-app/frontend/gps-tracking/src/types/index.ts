@@ -93,6 +93,31 @@ export interface TrackingData {
   temperature: number;
 }
 
+// Point de trajectoire décodé depuis le format binaire compact
+export interface TrackPoint {
+  id: number;
+  timestamp: string;
+  latitude: number | null;
+  longitude: number | null;
+  speed: number | null;
+  altitude: number | null;
+  batteryLevel: number | null;
+  temperature: number | null;
+}
+
+// Position poussée par le flux SSE /vehicles/tracking/stream
+export interface LivePosition {
+  vehicleId: number;
+  latitude: number;
+  longitude: number;
+  speed: number;
+  altitude: number;
+  timestamp: string;
+  batteryLevel: number;
+  signalStrength: string;
+  temperature: number;
+}
+
 // Types pour les notifications
 export enum NotificationType {
   SUCCESS = 'success',
@@ -179,12 +204,63 @@ export enum AlertType {
 export interface VehicleMetrics {
   currentSpeed: number;
   averageSpeed: number;
+  maxSpeed: number;
   distance: number;
-  runtime: number;
+  runtime?: number;
   fuelLevel?: number;
   temperature: number;
   batteryLevel: number;
   signalStrength: number;
+  lastUpdate?: string;
+  engineStatus?: string;
+  batteryDrain: number;
+  minTemperature: number | null;
+  maxTemperature: number | null;
+  granularity: 'HOUR' | 'DAY';
+  buckets: RollupBucket[];
+}
+
+// Tranche horaire ou journalière renvoyée par /vehicles/:id/metrics
+export interface RollupBucket {
+  bucketStart: string;
+  pointCount: number;
+  distance: number;
+  maxSpeed: number | null;
+  averageSpeed: number | null;
+  batteryDrain: number;
+  minBattery: number | null;
+  maxBattery: number | null;
+  minTemperature: number | null;
+  maxTemperature: number | null;
+}
+
+// Trajet et arrêts renvoyés par /vehicles/:id/trips
+export interface Trip {
+  id: number;
+  vehicleId: number;
+  startTime: string;
+  startLatitude: number;
+  startLongitude: number;
+  endTime: string;
+  endLatitude: number;
+  endLongitude: number;
+  distanceKm: number;
+  maxSpeed: number | null;
+  pointCount: number;
+  inProgress: boolean;
+}
+
+export interface TripStop {
+  startTime: string;
+  endTime: string;
+  durationSeconds: number;
+  latitude: number;
+  longitude: number;
+}
+
+export interface TripTimeline {
+  trips: Trip[];
+  stops: TripStop[];
 }
 
 // Types pour les événements